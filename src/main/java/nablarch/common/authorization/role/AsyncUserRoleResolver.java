@@ -0,0 +1,32 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * ユーザに紐づくロールの一覧を非同期に解決するインタフェース。
+ * <p>
+ * リモートの認証基盤などからロールを取得する場合に、取得を待つ間リクエストスレッドを占有しないよう、
+ * 取得の開始と結果の参照を分離する。<br>
+ * 本インタフェースの実装は、{@link PrefetchingUserRoleResolver}を介して{@link RoleEvaluator}から使用する。
+ * </p>
+ * @see PrefetchingUserRoleResolver
+ */
+@Published(tag = "architect")
+public interface AsyncUserRoleResolver {
+
+    /**
+     * 指定されたユーザに紐づくロールの一覧の解決を開始する。
+     * <p>
+     * 本メソッドは解決の完了を待たずに復帰すること。
+     * 解決に失敗した場合は、例外で完了した{@link CompletionStage}を返すこと。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ユーザに紐づくロールの一覧(ロールが無い場合は空のコレクション)で完了する{@link CompletionStage}
+     */
+    CompletionStage<Collection<String>> resolveAsync(String userId, ExecutionContext context);
+}
@@ -3,7 +3,9 @@ package nablarch.common.authorization.role;
 import nablarch.fw.ExecutionContext;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -12,16 +14,25 @@ import java.util.Set;
  * このクラスは、{@link UserRoleResolver}を使ってユーザに紐づくロールの一覧を取得し、
  * そのロール一覧を用いて権限の有無を判定する。
  * </p>
+ * <p>
+ * {@link #setMemoizesUserRoles(boolean)}に{@code true}を設定した場合、
+ * 解決したロールの一覧を実行コンテキストのリクエストスコープにユーザIDと紐づけて保持する。
+ * 同じリクエスト内で同じユーザの判定が繰り返し行われた場合は、{@link UserRoleResolver}を呼び出さずに保持したロールの一覧を使用する。
+ * </p>
  * @author Tanaka Tomoyuki
  */
 public class BasicRoleEvaluator implements RoleEvaluator {
+    /** リクエストスコープにロールの一覧を保持する際のキー */
+    private static final String USER_ROLES_KEY = BasicRoleEvaluator.class.getName() + ".USER_ROLES";
+
     private UserRoleResolver userRoleResolver;
+    private boolean memoizesUserRoles = false;
 
     @Override
     public boolean evaluateAnyOf(String userId, Collection<String> roles, ExecutionContext context) {
         checkUserRoleResolverIsNotNull();
 
-        Set<String> userRoles = new HashSet<String>(userRoleResolver.resolve(userId, context));
+        Set<String> userRoles = resolveUserRoles(userId, context);
         for (String role : roles) {
             if (userRoles.contains(role)) {
                 return true;
@@ -34,7 +45,7 @@ public class BasicRoleEvaluator implements RoleEvaluator {
     public boolean evaluateAllOf(String userId, Collection<String> roles, ExecutionContext context) {
         checkUserRoleResolverIsNotNull();
 
-        Set<String> userRoles = new HashSet<String>(userRoleResolver.resolve(userId, context));
+        Set<String> userRoles = resolveUserRoles(userId, context);
         for (String role : roles) {
             if (!userRoles.contains(role)) {
                 return false;
@@ -43,6 +54,45 @@ public class BasicRoleEvaluator implements RoleEvaluator {
         return true;
     }
 
+    @Override
+    public Set<String> evaluateGrantedRoles(String userId, Collection<String> roles, ExecutionContext context) {
+        checkUserRoleResolverIsNotNull();
+
+        Set<String> userRoles = resolveUserRoles(userId, context);
+        Set<String> granted = new LinkedHashSet<String>();
+        for (String role : roles) {
+            if (userRoles.contains(role)) {
+                granted.add(role);
+            }
+        }
+        return Collections.unmodifiableSet(granted);
+    }
+
+    /**
+     * ユーザに紐づくロールの一覧を解決する。
+     * <p>
+     * リクエストスコープに保持する設定の場合は、保持済みのロールの一覧を返す。
+     * 保持していない場合や、保持しているロールの一覧が別のユーザのものである場合は、
+     * {@link UserRoleResolver}で解決してリクエストスコープに保持する。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ユーザに紐づくロールの一覧
+     */
+    private Set<String> resolveUserRoles(String userId, ExecutionContext context) {
+        if (!memoizesUserRoles || context == null) {
+            return new HashSet<String>(userRoleResolver.resolve(userId, context));
+        }
+
+        UserRoles memoized = context.getRequestScopedVar(USER_ROLES_KEY);
+        if (memoized != null && memoized.isOwnedBy(userId)) {
+            return memoized.roles;
+        }
+        Set<String> userRoles = new HashSet<String>(userRoleResolver.resolve(userId, context));
+        context.setRequestScopedVar(USER_ROLES_KEY, new UserRoles(userId, userRoles));
+        return userRoles;
+    }
+
     /**
      * {@link UserRoleResolver}が設定されていることを検証する。
      */
@@ -59,4 +109,44 @@ public class BasicRoleEvaluator implements RoleEvaluator {
     public void setUserRoleResolver(UserRoleResolver userRoleResolver) {
         this.userRoleResolver = userRoleResolver;
     }
+
+    /**
+     * 解決したロールの一覧をリクエストスコープに保持するか否かを設定する。
+     * <p>
+     * デフォルトは{@code false}(保持しない)。
+     * </p>
+     * @param memoizesUserRoles 保持する場合は{@code true}
+     */
+    public void setMemoizesUserRoles(boolean memoizesUserRoles) {
+        this.memoizesUserRoles = memoizesUserRoles;
+    }
+
+    /**
+     * リクエストスコープに保持する、ユーザに紐づくロールの一覧。
+     */
+    private static final class UserRoles {
+        /** ユーザID */
+        private final String userId;
+        /** ロールの一覧 */
+        private final Set<String> roles;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param roles ロールの一覧
+         */
+        private UserRoles(String userId, Set<String> roles) {
+            this.userId = userId;
+            this.roles = roles;
+        }
+
+        /**
+         * 指定されたユーザのロールの一覧か判定する。
+         * @param userId ユーザID
+         * @return 指定されたユーザのロールの一覧の場合は{@code true}
+         */
+        private boolean isOwnedBy(String userId) {
+            return this.userId == null ? userId == null : this.userId.equals(userId);
+        }
+    }
 }
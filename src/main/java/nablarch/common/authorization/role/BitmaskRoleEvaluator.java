@@ -0,0 +1,286 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.fw.ExecutionContext;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ロールをビットで表現して判定を行う{@link RoleEvaluator}の実装クラス。
+ * <p>
+ * このクラスは、システムで使用するロールの一覧に対して初期化時に1ロールずつビットを割り当てる。
+ * ユーザに紐づくロールの一覧と、判定の条件となるロールの一覧をそれぞれ{@code long}のビットマスクに変換し、
+ * ビット演算で権限の有無を判定する。<br>
+ * {@link BasicRoleEvaluator}と異なり、判定の度に{@link java.util.HashSet}を生成しない。
+ * </p>
+ * <p>
+ * 変換したユーザのビットマスクは、実行コンテキストのリクエストスコープにユーザIDと紐づけて保持する。
+ * 同じリクエスト内で同じユーザの判定が繰り返し行われた場合は、{@link UserRoleResolver}を呼び出さずに保持したビットマスクを使用する。
+ * </p>
+ * <p>
+ * 判定の条件となるロールの一覧が固定の場合は、あらかじめ{@link #compile(Collection)}でビットマスクに変換しておき、
+ * {@link #evaluateAllOf(String, long, ExecutionContext)}と{@link #evaluateAnyOf(String, long, ExecutionContext)}で判定すること。
+ * ロールの一覧を受け取るメソッドは、判定の度にロールの一覧からビットを引き当てる。
+ * </p>
+ * <p>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * </p>
+ * <dl>
+ * <dt>{@link #userRoleResolver}
+ * <dd>ユーザに紐づくロールの一覧を解決する{@link UserRoleResolver}。必須。
+ * <dt>{@link #roles}
+ * <dd>システムで使用するロールの一覧。必須。{@value #MAX_ROLES}個まで指定できる。<br>
+ *     ここに含まれないロールは、どのユーザも有していないものとして扱う。
+ * <dt>{@link #memoizesUserRoles}
+ * <dd>ユーザのビットマスクをリクエストスコープに保持するか否か。オプション。デフォルトは{@code true}(保持する)。
+ * </dl>
+ * <p>
+ * 本クラスは{@link Initializable}を実装しているため、初期化対象のコンポーネントとして設定すること。
+ * </p>
+ */
+public class BitmaskRoleEvaluator implements RoleEvaluator, Initializable {
+    /** 指定できるロール数の上限 */
+    public static final int MAX_ROLES = 63;
+
+    /**
+     * ロールの一覧に含まれないロールを表すビット。
+     * <p>
+     * どのユーザのビットマスクにも立たないため、このビットを含む条件は全て有する判定では必ず失敗し、
+     * いずれか1つを有する判定では結果に影響しない。
+     * </p>
+     */
+    private static final long UNKNOWN_ROLE_BIT = 1L << MAX_ROLES;
+
+    /** リクエストスコープにユーザのビットマスクを保持する際のキー */
+    private static final String USER_MASK_KEY = BitmaskRoleEvaluator.class.getName() + ".USER_MASK";
+
+    private UserRoleResolver userRoleResolver;
+    private List<String> roles = Collections.emptyList();
+    private boolean memoizesUserRoles = true;
+
+    /** ロールをキーとした、割り当てたビット */
+    private Map<String, Long> roleBits;
+
+    /**
+     * ロールの一覧に対してビットを割り当てる。
+     * @throws IllegalStateException ロールの一覧が{@value #MAX_ROLES}個を超える場合
+     */
+    @Override
+    public void initialize() {
+        final Map<String, Long> bits = new HashMap<String, Long>();
+        for (String role : roles) {
+            if (role == null || bits.containsKey(role)) {
+                continue;
+            }
+            if (bits.size() == MAX_ROLES) {
+                throw new IllegalStateException(
+                        "the number of roles must be less than or equal to " + MAX_ROLES + ". roles = " + roles);
+            }
+            bits.put(role, 1L << bits.size());
+        }
+        roleBits = bits;
+    }
+
+    @Override
+    public boolean evaluateAnyOf(String userId, Collection<String> roles, ExecutionContext context) {
+        final long userMask = resolveUserMask(userId, context);
+        for (String role : roles) {
+            final Long bit = roleBits.get(role);
+            if (bit != null && (userMask & bit) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean evaluateAllOf(String userId, Collection<String> roles, ExecutionContext context) {
+        final long userMask = resolveUserMask(userId, context);
+        for (String role : roles) {
+            final Long bit = roleBits.get(role);
+            if (bit == null || (userMask & bit) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<String> evaluateGrantedRoles(String userId, Collection<String> roles, ExecutionContext context) {
+        final long userMask = resolveUserMask(userId, context);
+        final Set<String> granted = new LinkedHashSet<String>();
+        for (String role : roles) {
+            final Long bit = roleBits.get(role);
+            if (bit != null && (userMask & bit) != 0L) {
+                granted.add(role);
+            }
+        }
+        return Collections.unmodifiableSet(granted);
+    }
+
+    /**
+     * 指定されたユーザが、ビットマスクで表したロールをいずれか1つでも有していることを判定する。
+     * @param userId 判定対象のユーザID
+     * @param requiredMask {@link #compile(Collection)}で変換したロールの一覧
+     * @param context 実行コンテキスト
+     * @return ロールを有する場合は {@code true}
+     */
+    public boolean evaluateAnyOf(String userId, long requiredMask, ExecutionContext context) {
+        return (resolveUserMask(userId, context) & requiredMask) != 0L;
+    }
+
+    /**
+     * 指定されたユーザが、ビットマスクで表したロールを全て有していることを判定する。
+     * @param userId 判定対象のユーザID
+     * @param requiredMask {@link #compile(Collection)}で変換したロールの一覧
+     * @param context 実行コンテキスト
+     * @return ロールを有する場合は {@code true}
+     */
+    public boolean evaluateAllOf(String userId, long requiredMask, ExecutionContext context) {
+        return (resolveUserMask(userId, context) & requiredMask) == requiredMask;
+    }
+
+    /**
+     * ロールの一覧をビットマスクに変換する。
+     * <p>
+     * システムで使用するロールの一覧に含まれないロールは、どのユーザも有していないロールとして変換する。
+     * </p>
+     * @param roles ロールの一覧
+     * @return ビットマスク
+     */
+    public long compile(Collection<String> roles) {
+        checkInitialized();
+
+        long mask = 0L;
+        for (String role : roles) {
+            final Long bit = roleBits.get(role);
+            mask |= bit == null ? UNKNOWN_ROLE_BIT : bit;
+        }
+        return mask;
+    }
+
+    /**
+     * ユーザに紐づくロールの一覧を解決し、ビットマスクに変換する。
+     * <p>
+     * システムで使用するロールの一覧に含まれないロールは無視する。<br>
+     * リクエストスコープに同じユーザのビットマスクを保持している場合は、{@link UserRoleResolver}を呼び出さずにそれを返す。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ビットマスク
+     */
+    public long resolveUserMask(String userId, ExecutionContext context) {
+        checkInitialized();
+        if (userRoleResolver == null) {
+            throw new IllegalStateException("UserRoleResolver is null.");
+        }
+        if (!memoizesUserRoles || context == null) {
+            return toUserMask(userId, context);
+        }
+
+        final UserMask memoized = context.getRequestScopedVar(USER_MASK_KEY);
+        if (memoized != null && memoized.isOwnedBy(userId, roleBits)) {
+            return memoized.mask;
+        }
+        final long mask = toUserMask(userId, context);
+        context.setRequestScopedVar(USER_MASK_KEY, new UserMask(userId, roleBits, mask));
+        return mask;
+    }
+
+    /**
+     * {@link UserRoleResolver}でユーザに紐づくロールの一覧を解決し、ビットマスクに変換する。
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ビットマスク
+     */
+    private long toUserMask(String userId, ExecutionContext context) {
+        long mask = 0L;
+        for (String role : userRoleResolver.resolve(userId, context)) {
+            final Long bit = roleBits.get(role);
+            if (bit != null) {
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 初期化済みであることを検証する。
+     */
+    private void checkInitialized() {
+        if (roleBits == null) {
+            throw new IllegalStateException("BitmaskRoleEvaluator is not initialized.");
+        }
+    }
+
+    /**
+     * {@link UserRoleResolver}を設定する。
+     * @param userRoleResolver {@link UserRoleResolver}のインスタンス
+     */
+    public void setUserRoleResolver(UserRoleResolver userRoleResolver) {
+        this.userRoleResolver = userRoleResolver;
+    }
+
+    /**
+     * システムで使用するロールの一覧を設定する。
+     * @param roles ロールの一覧
+     */
+    public void setRoles(List<String> roles) {
+        this.roles = roles;
+    }
+
+    /**
+     * ユーザのビットマスクをリクエストスコープに保持するか否かを設定する。
+     * <p>
+     * デフォルトは{@code true}(保持する)。
+     * </p>
+     * @param memoizesUserRoles 保持する場合は{@code true}
+     */
+    public void setMemoizesUserRoles(boolean memoizesUserRoles) {
+        this.memoizesUserRoles = memoizesUserRoles;
+    }
+
+    /**
+     * リクエストスコープに保持する、ユーザのビットマスク。
+     */
+    private static final class UserMask {
+        /** ユーザID */
+        private final String userId;
+        /** 変換に使用した、ロールをキーとしたビット */
+        private final Map<String, Long> roleBits;
+        /** ビットマスク */
+        private final long mask;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param roleBits 変換に使用した、ロールをキーとしたビット
+         * @param mask ビットマスク
+         */
+        private UserMask(String userId, Map<String, Long> roleBits, long mask) {
+            this.userId = userId;
+            this.roleBits = roleBits;
+            this.mask = mask;
+        }
+
+        /**
+         * 指定されたユーザのビットマスクで、かつ指定されたビットの割り当てで変換したものか判定する。
+         * <p>
+         * 初期化し直した場合やシステムリポジトリを再読み込みした場合は、ビットの割り当てが異なるため使用しない。
+         * </p>
+         * @param userId ユーザID
+         * @param roleBits 現在の、ロールをキーとしたビット
+         * @return 使用できる場合は{@code true}
+         */
+        private boolean isOwnedBy(String userId, Map<String, Long> roleBits) {
+            return this.roleBits == roleBits
+                    && (this.userId == null ? userId == null : this.userId.equals(userId));
+        }
+    }
+}
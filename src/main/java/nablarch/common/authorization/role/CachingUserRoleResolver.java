@@ -0,0 +1,261 @@
+package nablarch.common.authorization.role;
+
+import nablarch.fw.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 委譲先の{@link UserRoleResolver}が解決したロールの一覧をユーザ毎にキャッシュする{@link UserRoleResolver}。
+ * <p>
+ * {@link BasicRoleEvaluator}は権限を判定する度に{@link UserRoleResolver#resolve(String, ExecutionContext)}を呼び出すため、
+ * データベースなどからロールを取得する{@link UserRoleResolver}をそのまま使用すると、
+ * 1つの画面で複数回判定するだけで同じ取得処理が繰り返し行われる。<br>
+ * 本クラスを経由させることで、一度解決したロールの一覧をメモリ上に保持し、委譲先の呼び出しを削減する。
+ * </p>
+ * <p>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * </p>
+ * <dl>
+ * <dt>{@link #userRoleResolver}
+ * <dd>ロールの一覧を解決する委譲先の{@link UserRoleResolver}。必須。
+ * <dt>{@link #maxEntries}
+ * <dd>キャッシュするユーザ数の上限。オプション。デフォルトは1000。<br>
+ *     上限を超えた場合は、参照されていない期間が長いユーザから順に、上限の1割程度をまとめて破棄する。
+ * <dt>{@link #expireAfterWriteMillis}
+ * <dd>解決したロールの一覧の有効期間(ミリ秒)。オプション。デフォルトは300000(5分)。<br>
+ *     0以下を指定した場合は、有効期間による破棄を行わない。
+ * </dl>
+ * <p>
+ * キャッシュの参照時にはロックを取得しない。ロックはキャッシュへの格納と破棄の場合のみ取得する。
+ * </p>
+ * <p>
+ * ロールの付与や剥奪を行った場合は、{@link #invalidate(String)}または{@link #invalidateAll()}を呼び出し、
+ * キャッシュを破棄すること。
+ * </p>
+ */
+public class CachingUserRoleResolver implements UserRoleResolver {
+    /** ユーザIDが{@code null}の場合のキャッシュのキー */
+    private static final Object NULL_USER_ID_KEY = new Object();
+
+    /** 最後に参照された時点が古い順に並べる{@link Comparator} */
+    private static final Comparator<Map.Entry<Object, CacheEntry>> LEAST_RECENTLY_ACCESSED_FIRST =
+            new Comparator<Map.Entry<Object, CacheEntry>>() {
+                @Override
+                public int compare(Map.Entry<Object, CacheEntry> o1, Map.Entry<Object, CacheEntry> o2) {
+                    final long diff = o1.getValue().lastAccessedAt - o2.getValue().lastAccessedAt;
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            };
+
+    /** ロールの一覧を解決する委譲先の{@link UserRoleResolver} */
+    private UserRoleResolver userRoleResolver;
+
+    /** キャッシュするユーザ数の上限 */
+    private int maxEntries = 1000;
+
+    /** 解決したロールの一覧の有効期間(ミリ秒) */
+    private long expireAfterWriteMillis = 5 * 60 * 1000L;
+
+    /** ユーザIDをキーとしたキャッシュ(ユーザIDが{@code null}の場合は{@link #NULL_USER_ID_KEY}をキーとする) */
+    private final ConcurrentMap<Object, CacheEntry> cache = new ConcurrentHashMap<Object, CacheEntry>();
+
+    /** キャッシュへの格納と破棄を直列化するためのロック */
+    private final Object writeLock = new Object();
+
+    /**
+     * キャッシュの世代。
+     * <p>
+     * キャッシュを破棄する度に更新し、破棄前に開始した解決処理の結果がキャッシュに格納されることを防ぐ。
+     * 更新は{@link #writeLock}を取得して行う。
+     * </p>
+     */
+    private volatile long generation = 0L;
+
+    /**
+     * ロールの一覧を解決して返却する。
+     * <p>
+     * キャッシュに有効なロールの一覧が存在する場合はそれを返し、
+     * 存在しない場合は委譲先の{@link UserRoleResolver}で解決してキャッシュする。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ユーザに紐づくロールの一覧(変更不可)
+     */
+    @Override
+    public Collection<String> resolve(String userId, ExecutionContext context) {
+        checkUserRoleResolverIsNotNull();
+
+        final long now = currentTimeMillis();
+        final long startGeneration = generation;
+        final CacheEntry entry = cache.get(toCacheKey(userId));
+        if (entry != null && !entry.isExpired(now)) {
+            entry.touch();
+            return entry.roles;
+        }
+
+        final Collection<String> resolved = userRoleResolver.resolve(userId, context);
+        final Collection<String> roles = resolved == null
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<String>(resolved));
+        synchronized (writeLock) {
+            if (startGeneration == generation) {
+                cache.put(toCacheKey(userId), new CacheEntry(roles, now));
+                evictIfNecessary();
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * 指定されたユーザのキャッシュを破棄する。
+     * <p>
+     * 次にそのユーザのロールが要求された際は、委譲先の{@link UserRoleResolver}で解決する。
+     * </p>
+     * @param userId ユーザID
+     */
+    public void invalidate(String userId) {
+        synchronized (writeLock) {
+            cache.remove(toCacheKey(userId));
+            generation++;
+        }
+    }
+
+    /**
+     * 全てのユーザのキャッシュを破棄する。
+     */
+    public void invalidateAll() {
+        synchronized (writeLock) {
+            cache.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * キャッシュしているユーザ数が上限を超えている場合に、参照されていない期間が長いユーザから破棄する。
+     * <p>
+     * 破棄の度に全てのエントリを並べ替えることを避けるため、上限の1割程度をまとめて破棄する。
+     * 呼び出し元で{@link #writeLock}を取得していること。
+     * </p>
+     */
+    private void evictIfNecessary() {
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+        final List<Map.Entry<Object, CacheEntry>> entries = new ArrayList<Map.Entry<Object, CacheEntry>>(cache.entrySet());
+        Collections.sort(entries, LEAST_RECENTLY_ACCESSED_FIRST);
+        final int retained = maxEntries - maxEntries / 10;
+        for (int i = 0; i < entries.size() - retained; i++) {
+            cache.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+
+    /**
+     * キャッシュのキーに変換する。
+     * <p>
+     * {@link ConcurrentHashMap}は{@code null}をキーにできないため、ユーザIDが{@code null}の場合は専用のキーを使用する。
+     * </p>
+     * @param userId ユーザID
+     * @return キー
+     */
+    private static Object toCacheKey(String userId) {
+        return userId == null ? NULL_USER_ID_KEY : userId;
+    }
+
+    /**
+     * 現在時刻(ミリ秒)を取得する。
+     * @return 現在時刻(ミリ秒)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * {@link UserRoleResolver}が設定されていることを検証する。
+     */
+    private void checkUserRoleResolverIsNotNull() {
+        if (userRoleResolver == null) {
+            throw new IllegalStateException("UserRoleResolver is null.");
+        }
+    }
+
+    /**
+     * キャッシュのエントリ。
+     */
+    private final class CacheEntry {
+        /** ロールの一覧(変更不可) */
+        private final Collection<String> roles;
+
+        /** 解決した時刻(ミリ秒) */
+        private final long resolvedAt;
+
+        /**
+         * 最後に参照された時点の{@link System#nanoTime()}。
+         * <p>
+         * 破棄する順序の目安にのみ使用するため、参照時にロックは取得しない。
+         * </p>
+         */
+        private volatile long lastAccessedAt = System.nanoTime();
+
+        /**
+         * コンストラクタ。
+         * @param roles ロールの一覧
+         * @param resolvedAt 解決した時刻(ミリ秒)
+         */
+        private CacheEntry(Collection<String> roles, long resolvedAt) {
+            this.roles = roles;
+            this.resolvedAt = resolvedAt;
+        }
+
+        /**
+         * 参照されたことを記録する。
+         */
+        private void touch() {
+            lastAccessedAt = System.nanoTime();
+        }
+
+        /**
+         * 有効期間を過ぎているか判定する。
+         * @param now 現在時刻(ミリ秒)
+         * @return 有効期間を過ぎている場合は {@code true}
+         */
+        private boolean isExpired(long now) {
+            return expireAfterWriteMillis > 0L && now - resolvedAt >= expireAfterWriteMillis;
+        }
+    }
+
+    /**
+     * ロールの一覧を解決する委譲先の{@link UserRoleResolver}を設定する。
+     * @param userRoleResolver {@link UserRoleResolver}のインスタンス
+     */
+    public void setUserRoleResolver(UserRoleResolver userRoleResolver) {
+        this.userRoleResolver = userRoleResolver;
+    }
+
+    /**
+     * キャッシュするユーザ数の上限を設定する。
+     * @param maxEntries キャッシュするユーザ数の上限(1以上)
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0. maxEntries = [" + maxEntries + "]");
+        }
+        synchronized (writeLock) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * 解決したロールの一覧の有効期間(ミリ秒)を設定する。
+     * @param expireAfterWriteMillis 有効期間(ミリ秒)。0以下の場合は有効期間による破棄を行わない
+     */
+    public void setExpireAfterWriteMillis(long expireAfterWriteMillis) {
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+    }
+}
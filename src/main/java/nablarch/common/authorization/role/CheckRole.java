@@ -1,8 +1,6 @@
 package nablarch.common.authorization.role;
 
 import nablarch.core.ThreadContext;
-import nablarch.core.repository.SystemRepository;
-import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Interceptor;
@@ -13,8 +11,6 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * アクションのメソッドを実行するために必要なロールを、
@@ -43,9 +39,12 @@ public @interface CheckRole {
 
     /**
      * 判定の条件となるロールの一覧。
+     * <p>
+     * {@link #expression()}を指定する場合は、指定しないこと。
+     * </p>
      * @return ロールの一覧
      */
-    String[] value();
+    String[] value() default {};
 
     /**
      * ロールの一覧による判定を部分一致とするかどうかのフラグ。
@@ -62,8 +61,29 @@ public @interface CheckRole {
      */
     boolean anyOf() default false;
 
+    /**
+     * 判定の条件となるロールの条件式。
+     * <p>
+     * ロール名と演算子{@code and}、{@code or}、{@code not}、および括弧を組み合わせて記述する。
+     * 演算子の大文字と小文字は区別せず、優先順位は{@code not}、{@code and}、{@code or}の順に高い。<br>
+     * (例: {@code @CheckRole(expression = "ADMIN or (MANAGER and AUDITOR)")})
+     * </p>
+     * <p>
+     * 条件式はアノテーション毎に1回だけ解析し、結果を使い回す。
+     * アプリケーションの起動時に条件式の誤りを検出する場合は、{@link CheckRoleValidator}を使用する。<br>
+     * 条件式を指定した場合、{@link #value()}と{@link #anyOf()}は指定できない。
+     * 指定した場合は、判定時(または{@link CheckRoleValidator}による検証時)に例外をスローする。
+     * </p>
+     * @return ロールの条件式
+     */
+    String expression() default "";
+
     /**
      * {@link CheckRole}アノテーションのインターセプタ。
+     * <p>
+     * アノテーションから生成したロールの条件はアノテーション毎にキャッシュし、
+     * 2回目以降の呼び出しでは判定のみを行う。
+     * </p>
      *
      * @author Tanaka Tomoyuki
      */
@@ -71,25 +91,13 @@ public @interface CheckRole {
 
         @Override
         public Object handle(Object param, ExecutionContext context) {
-            final RoleEvaluator roleEvaluator = SystemRepository.get("roleEvaluator");
-            if (roleEvaluator == null) {
-                throw new IllegalStateException("The component of \"roleEvaluator\" is not found.");
-            }
+            final RoleEvaluator roleEvaluator = CheckRoleUtil.obtainRoleEvaluator();
 
-            final CheckRole checkRole = getInterceptor();
+            final RoleRequirement requirement = RoleRequirement.get(getInterceptor());
             final String userId = ThreadContext.getUserId();
-            final List<String> roles = Arrays.asList(checkRole.value());
-
-            boolean authorized;
-            if (checkRole.anyOf()) {
-                authorized = roleEvaluator.evaluateAnyOf(userId, roles, context);
-            } else {
-                authorized = roleEvaluator.evaluateAllOf(userId, roles, context);
-            }
 
-            if (!authorized) {
-                throw new Forbidden("User has no role. userId=[" + userId + "], " +
-                        "roles=[" + StringUtil.join(", ", roles) + "]");
+            if (!requirement.evaluate(roleEvaluator, userId, context)) {
+                throw new Forbidden(requirement.buildDeniedMessage(userId));
             }
 
             return getOriginalHandler().handle(param, context);
@@ -3,20 +3,13 @@ package nablarch.common.authorization.role;
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.repository.initialization.Initializable;
-import nablarch.core.util.ClassTraversal.ClassHandler;
-import nablarch.core.util.ResourcesUtil;
-import nablarch.core.util.ResourcesUtil.Resources;
 import nablarch.core.util.StringUtil;
 
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * アクションメソッドに設定された{@link CheckRole}アノテーションの情報をログに出力するロガー。
@@ -43,6 +36,10 @@ import java.util.regex.Pattern;
  *   <li>{@link CheckRole}アノテーションの {@code anyOf} に設定された値(未設定の場合は空)</li>
  * </ul>
  * <p>
+ * {@link CheckRole}アノテーションの {@code expression} が設定されている場合は、
+ * ロールの列に式をそのまま出力し、{@code anyOf} の列は空とする。
+ * </p>
+ * <p>
  * このクラスは{@link Initializable}を実装しており、アプリケーション起動時の初期化のタイミングで
  * ログを出力する。
  * </p>
@@ -93,17 +90,7 @@ public class CheckRoleLogger implements Initializable {
      * @return 出力対象のメソッド一覧
      */
     private List<Method> findTargetMethods() {
-        final TargetMethodFinder targetMethodFinder = new TargetMethodFinder(targetClassPattern);
-
-        for (Resources resourcesType : ResourcesUtil.getResourcesTypes(targetPackage)) {
-            try {
-                resourcesType.forEach(targetMethodFinder);
-            } finally {
-                resourcesType.close();
-            }
-        }
-
-        return targetMethodFinder.getTargetMethods();
+        return CheckRoleTargetMethodFinder.find(targetPackage, targetClassPattern);
     }
 
     /**
@@ -120,6 +107,10 @@ public class CheckRoleLogger implements Initializable {
             if (checkRole == null) {
                 final AnnotationSettings settings = new AnnotationSettings(method);
                 formattedSettings.add(settings.format());
+            } else if (checkRole.expression().length() != 0) {
+                final AnnotationSettings settings
+                    = new AnnotationSettings(method, checkRole.expression());
+                formattedSettings.add(settings.format());
             } else {
                 for (String role : checkRole.value()) {
                     final AnnotationSettings settings
@@ -152,6 +143,17 @@ public class CheckRoleLogger implements Initializable {
             this.anyOf = "";
         }
 
+        /**
+         * {@link CheckRole}に{@code expression}が設定されているメソッド用のコンストラクタ。
+         * @param method 対象のメソッド
+         * @param expression {@link CheckRole}の{@code expression}
+         */
+        private AnnotationSettings(Method method, String expression) {
+            this.method = method;
+            this.role = expression;
+            this.anyOf = "";
+        }
+
         /**
          * {@link CheckRole}が設定されているメソッド用のコンストラクタ。
          * @param method 対象のメソッド
@@ -195,66 +197,6 @@ public class CheckRoleLogger implements Initializable {
         }
     }
 
-    /**
-     * 処理対象のメソッドを抽出するための{@link ClassHandler}実装。
-     */
-    private static class TargetMethodFinder implements ClassHandler {
-        private final Pattern targetPackagePattern;
-        private final ClassLoader classLoader = this.getClass().getClassLoader();
-        private final Set<Class<?>> targetClasses = new HashSet<Class<?>>();
-
-        /**
-         * コンストラクタ。
-         * @param targetClassPattern 検索対象のパッケージ
-         */
-        private TargetMethodFinder(String targetClassPattern) {
-            this.targetPackagePattern = Pattern.compile(targetClassPattern);
-        }
-
-        @Override
-        public void process(String packageName, String className) {
-            final String fqcn = packageName + "." + className;
-            if (!targetPackagePattern.matcher(fqcn).matches()) {
-                return;
-            }
-
-            try {
-                final Class<?> clazz = classLoader.loadClass(fqcn);
-                targetClasses.add(clazz);
-            } catch (ClassNotFoundException e) {
-                // クラスパスを実際に検索した結果を用いているため、
-                // ここでクラスが見つからないということはあり得ない
-                throw new RuntimeException(e);
-            }
-        }
-
-        /**
-         * 処理対象のメソッドの一覧を取得する。
-         * @return 処理対象のメソッドの一覧
-         */
-        private List<Method> getTargetMethods() {
-            final List<Method> methods = new ArrayList<Method>();
-            for (Class<?> targetClass : targetClasses) {
-                for (Method method : targetClass.getDeclaredMethods()) {
-                    if (isTargetMethod(method)) {
-                        methods.add(method);
-                    }
-                }
-            }
-            return methods;
-        }
-
-        /**
-         * 指定されたメソッドが、ログ出力の対象となるか確認する。
-         * @param method 検査対象のメソッド
-         * @return ログ出力対象の場合は {@code true}
-         */
-        private boolean isTargetMethod(Method method) {
-            return Modifier.isPublic(method.getModifiers())
-                    && !Modifier.isStatic(method.getModifiers());
-        }
-    }
-
     /**
      * 走査対象となるパッケージの名前を設定する。
      * @param targetPackage 走査対象となるパッケージの名前
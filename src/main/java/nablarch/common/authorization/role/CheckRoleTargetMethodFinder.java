@@ -0,0 +1,99 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.util.ClassTraversal.ClassHandler;
+import nablarch.core.util.ResourcesUtil;
+import nablarch.core.util.ResourcesUtil.Resources;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * {@link CheckRole}アノテーションの設定を確認する対象のメソッドを抽出するための{@link ClassHandler}実装。
+ * <p>
+ * 指定されたパッケージ以下に存在するクラスのうち、完全修飾名が指定された正規表現に一致するクラスを対象とし、
+ * そのクラスで宣言された{@code public}かつ{@code static}でないメソッドを抽出する。
+ * </p>
+ * @see CheckRoleLogger
+ * @see CheckRoleValidator
+ */
+final class CheckRoleTargetMethodFinder implements ClassHandler {
+    private final Pattern targetClassPattern;
+    private final ClassLoader classLoader = this.getClass().getClassLoader();
+    private final Set<Class<?>> targetClasses = new HashSet<Class<?>>();
+
+    /**
+     * コンストラクタ。
+     * @param targetClassPattern 処理対象となるクラスを特定するための正規表現
+     */
+    private CheckRoleTargetMethodFinder(String targetClassPattern) {
+        this.targetClassPattern = Pattern.compile(targetClassPattern);
+    }
+
+    /**
+     * 指定されたパッケージ以下を走査し、処理対象のメソッドを抽出する。
+     * @param targetPackage 走査対象となるパッケージの名前
+     * @param targetClassPattern 処理対象となるクラスを特定するための正規表現
+     * @return 処理対象のメソッドの一覧
+     */
+    static List<Method> find(String targetPackage, String targetClassPattern) {
+        final CheckRoleTargetMethodFinder finder = new CheckRoleTargetMethodFinder(targetClassPattern);
+
+        for (Resources resourcesType : ResourcesUtil.getResourcesTypes(targetPackage)) {
+            try {
+                resourcesType.forEach(finder);
+            } finally {
+                resourcesType.close();
+            }
+        }
+
+        return finder.getTargetMethods();
+    }
+
+    @Override
+    public void process(String packageName, String className) {
+        final String fqcn = packageName + "." + className;
+        if (!targetClassPattern.matcher(fqcn).matches()) {
+            return;
+        }
+
+        try {
+            final Class<?> clazz = classLoader.loadClass(fqcn);
+            targetClasses.add(clazz);
+        } catch (ClassNotFoundException e) {
+            // クラスパスを実際に検索した結果を用いているため、
+            // ここでクラスが見つからないということはあり得ない
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 処理対象のメソッドの一覧を取得する。
+     * @return 処理対象のメソッドの一覧
+     */
+    private List<Method> getTargetMethods() {
+        final List<Method> methods = new ArrayList<Method>();
+        for (Class<?> targetClass : targetClasses) {
+            for (Method method : targetClass.getDeclaredMethods()) {
+                if (isTargetMethod(method)) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * 指定されたメソッドが、処理の対象となるか確認する。
+     * @param method 検査対象のメソッド
+     * @return 処理対象の場合は {@code true}
+     */
+    private boolean isTargetMethod(Method method) {
+        return Modifier.isPublic(method.getModifiers())
+                && !Modifier.isStatic(method.getModifiers());
+    }
+}
@@ -7,6 +7,7 @@ import nablarch.fw.ExecutionContext;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
 
 /**
  * {@link RoleEvaluator}を用いたロール管理をプログラムから利用するためのユーティリティ。
@@ -23,6 +24,9 @@ import java.util.Collections;
  */
 @Published
 public class CheckRoleUtil {
+    /** システムリポジトリに登録する{@link RoleEvaluator}の名前 */
+    private static final String ROLE_EVALUATOR_NAME = "roleEvaluator";
+
     /**
      * 現在のアクセスユーザが指定されたロールを有することを判定する。
      * @param role ロール
@@ -57,11 +61,31 @@ public class CheckRoleUtil {
     }
 
     /**
-     * {@link RoleEvaluator}を取得する。
+     * 指定されたロールのうち、現在のアクセスユーザが有しているロールの一覧を返却する。
+     * <p>
+     * メニュー項目毎に{@link #checkRole(String, ExecutionContext)}を呼び出す代わりに使用することで、
+     * ユーザに紐づくロールの解決を1回で済ませることができる。
+     * </p>
+     * @param roles 判定するロールの一覧
+     * @param context 実行コンテキスト
+     * @return 有しているロールの一覧(指定されたロールの順序を保持する。変更不可)
+     */
+    public static Set<String> getGrantedRoles(Collection<String> roles, ExecutionContext context) {
+        return obtainRoleEvaluator()
+                .evaluateGrantedRoles(ThreadContext.getUserId(), roles, context);
+    }
+
+    /**
+     * システムリポジトリから{@link RoleEvaluator}を取得する。
      * @return {@link RoleEvaluator}
+     * @throws IllegalStateException システムリポジトリに{@link RoleEvaluator}が登録されていない場合
      */
-    private static RoleEvaluator obtainRoleEvaluator() {
-        return SystemRepository.get("roleEvaluator");
+    static RoleEvaluator obtainRoleEvaluator() {
+        final RoleEvaluator roleEvaluator = SystemRepository.get(ROLE_EVALUATOR_NAME);
+        if (roleEvaluator == null) {
+            throw new IllegalStateException("The component of \"" + ROLE_EVALUATOR_NAME + "\" is not found.");
+        }
+        return roleEvaluator;
     }
 
     /**
@@ -0,0 +1,82 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.StringUtil;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * アクションメソッドに設定された{@link CheckRole}アノテーションの設定を、アプリケーションの起動時に検証するクラス。
+ * <p>
+ * このクラスは、{@link CheckRoleLogger}と同じ方法で指定されたパッケージ以下のクラスを走査し、
+ * 各メソッドに設定された{@link CheckRole}アノテーションを解析する。<br>
+ * {@code value}と{@code expression}の両方を指定している(またはどちらも指定していない)場合、
+ * {@code expression}と{@code anyOf}を同時に指定している場合や、
+ * {@code expression}の条件式に誤りがある場合は、該当する全てのメソッドを例外のメッセージに含めてスローする。
+ * </p>
+ * <p>
+ * 解析した結果は{@link CheckRole.Impl}と共有するため、リクエストの処理時に改めて解析することはない。
+ * </p>
+ * <p>
+ * このクラスは{@link Initializable}を実装しており、アプリケーション起動時の初期化のタイミングで検証を行う。
+ * </p>
+ */
+public class CheckRoleValidator implements Initializable {
+    /**
+     * 行の区切り文字。
+     */
+    private static final String LINE_SEP = System.getProperty("line.separator");
+
+    private String targetPackage;
+    private String targetClassPattern = "^.*Action$";
+
+    /**
+     * {@link CheckRole}アノテーションの設定を検証する。
+     * @throws IllegalStateException 設定に誤りがあるメソッドが存在する場合
+     */
+    @Override
+    public void initialize() {
+        final List<String> errors = new ArrayList<String>();
+
+        for (Method method : CheckRoleTargetMethodFinder.find(targetPackage, targetClassPattern)) {
+            final CheckRole checkRole = method.getAnnotation(CheckRole.class);
+            if (checkRole == null) {
+                continue;
+            }
+            try {
+                RoleRequirement.get(checkRole);
+            } catch (IllegalArgumentException e) {
+                errors.add(method.getDeclaringClass().getName() + "#" + method.getName() + ": " + e.getMessage());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            Collections.sort(errors);
+            throw new IllegalStateException("invalid CheckRole annotation settings were found." + LINE_SEP
+                    + StringUtil.join(LINE_SEP, errors));
+        }
+    }
+
+    /**
+     * 走査対象となるパッケージの名前を設定する。
+     * @param targetPackage 走査対象となるパッケージの名前
+     */
+    public void setTargetPackage(String targetPackage) {
+        this.targetPackage = targetPackage;
+    }
+
+    /**
+     * 処理対象となるクラスを特定するための正規表現を設定する。
+     * <p>
+     * この正規表現は、クラスの完全修飾名に対して適用される。<br>
+     * デフォルトは {@code ^.*Action$} が設定されている({@code "Action"}で終わるクラスが対象)。
+     * </p>
+     * @param targetClassPattern 処理対象となるクラスを特定するための正規表現
+     */
+    public void setTargetClassPattern(String targetClassPattern) {
+        this.targetClassPattern = targetClassPattern;
+    }
+}
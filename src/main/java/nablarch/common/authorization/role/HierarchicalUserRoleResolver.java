@@ -0,0 +1,148 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.fw.ExecutionContext;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ロールの階層を考慮してロールの一覧を解決する{@link UserRoleResolver}。
+ * <p>
+ * 委譲先の{@link UserRoleResolver}が解決したロールに、そのロールが包含する下位のロールを加えて返却する。<br>
+ * 例えば、{@code ADMIN}が{@code MANAGER}を、{@code MANAGER}が{@code STAFF}を包含すると定義した場合、
+ * {@code ADMIN}を持つユーザは{@code MANAGER}と{@code STAFF}も持つものとして扱われる。
+ * </p>
+ * <p>
+ * 階層の定義は初期化時に1回だけ辿り、ロール毎に包含する全てのロールを配列で保持する。
+ * そのため、解決時に階層を辿ることはない。
+ * 循環した定義は、循環に含まれるロールが互いに包含し合うものとして扱う。
+ * </p>
+ * <p>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * </p>
+ * <dl>
+ * <dt>{@link #userRoleResolver}
+ * <dd>ユーザに直接紐づくロールの一覧を解決する委譲先の{@link UserRoleResolver}。必須。
+ * <dt>{@link #hierarchy}
+ * <dd>ロールの階層の定義。必須。<br>
+ *     キーに上位のロールを、値にそのロールが直接包含する下位のロールをカンマ区切りで指定する。
+ *     (例: キー{@code ADMIN}、値{@code MANAGER}、キー{@code MANAGER}、値{@code STAFF,GUEST})
+ * </dl>
+ * <p>
+ * 本クラスは{@link Initializable}を実装しているため、初期化対象のコンポーネントとして設定すること。<br>
+ * {@link CachingUserRoleResolver}と組み合わせる場合は、本クラスを{@link CachingUserRoleResolver}の委譲先とすることで、
+ * 階層を考慮したロールの一覧をキャッシュできる。
+ * </p>
+ */
+public class HierarchicalUserRoleResolver implements UserRoleResolver, Initializable {
+    /** 空のロールの配列 */
+    private static final String[] NO_ROLES = new String[0];
+
+    private UserRoleResolver userRoleResolver;
+    private Map<String, String> hierarchy = Collections.emptyMap();
+
+    /** ロールをキーとした、そのロールが包含する全てのロール(自身を除く) */
+    private Map<String, String[]> impliedRoles;
+
+    /**
+     * ロールの階層の定義から、ロール毎に包含する全てのロールを求める。
+     */
+    @Override
+    public void initialize() {
+        final Map<String, Set<String>> directlyImplied = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, String> entry : hierarchy.entrySet()) {
+            final Set<String> roles = new LinkedHashSet<String>();
+            if (entry.getValue() != null) {
+                for (String role : entry.getValue().split(",")) {
+                    final String trimmed = role.trim();
+                    if (trimmed.length() != 0) {
+                        roles.add(trimmed);
+                    }
+                }
+            }
+            directlyImplied.put(entry.getKey().trim(), roles);
+        }
+
+        final Map<String, String[]> closure = new HashMap<String, String[]>();
+        for (String role : directlyImplied.keySet()) {
+            final Set<String> visited = new LinkedHashSet<String>();
+            collectImpliedRoles(role, directlyImplied, visited);
+            visited.remove(role);
+            closure.put(role, visited.isEmpty() ? NO_ROLES : visited.toArray(new String[visited.size()]));
+        }
+        impliedRoles = closure;
+    }
+
+    /**
+     * 指定されたロールが包含するロールを再帰的に収集する。
+     * @param role ロール
+     * @param directlyImplied ロール毎に直接包含するロール
+     * @param visited 収集済みのロール
+     */
+    private static void collectImpliedRoles(
+            String role, Map<String, Set<String>> directlyImplied, Set<String> visited) {
+        final Set<String> children = directlyImplied.get(role);
+        if (children == null) {
+            return;
+        }
+        for (String child : children) {
+            if (visited.add(child)) {
+                collectImpliedRoles(child, directlyImplied, visited);
+            }
+        }
+    }
+
+    /**
+     * ユーザに紐づくロールの一覧を、ロールの階層を考慮して解決する。
+     * <p>
+     * 委譲先が解決したロールがいずれも下位のロールを包含しない場合は、委譲先の結果をそのまま返す。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ユーザに紐づくロールの一覧
+     */
+    @Override
+    public Collection<String> resolve(String userId, ExecutionContext context) {
+        if (impliedRoles == null) {
+            throw new IllegalStateException("HierarchicalUserRoleResolver is not initialized.");
+        }
+        if (userRoleResolver == null) {
+            throw new IllegalStateException("UserRoleResolver is null.");
+        }
+
+        final Collection<String> roles = userRoleResolver.resolve(userId, context);
+        Set<String> expanded = null;
+        for (String role : roles) {
+            final String[] implied = impliedRoles.get(role);
+            if (implied == null || implied.length == 0) {
+                continue;
+            }
+            if (expanded == null) {
+                expanded = new LinkedHashSet<String>(roles);
+            }
+            Collections.addAll(expanded, implied);
+        }
+        return expanded == null ? roles : expanded;
+    }
+
+    /**
+     * ユーザに直接紐づくロールの一覧を解決する委譲先の{@link UserRoleResolver}を設定する。
+     * @param userRoleResolver {@link UserRoleResolver}のインスタンス
+     */
+    public void setUserRoleResolver(UserRoleResolver userRoleResolver) {
+        this.userRoleResolver = userRoleResolver;
+    }
+
+    /**
+     * ロールの階層の定義を設定する。
+     * @param hierarchy 上位のロールをキー、直接包含する下位のロール(カンマ区切り)を値とするマップ
+     */
+    public void setHierarchy(Map<String, String> hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+}
@@ -0,0 +1,211 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.fw.ExecutionContext;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AsyncUserRoleResolver}で先行して開始したロールの解決結果を返す{@link UserRoleResolver}。
+ * <p>
+ * {@link #prefetch(String, ExecutionContext)}でロールの解決を開始し、その{@link CompletableFuture}をリクエストスコープに保持する。
+ * {@link #resolve(String, ExecutionContext)}では保持している解決結果を待ち合わせるため、
+ * ハンドラキューの前方(例えば{@link UserRolePrefetchHandler})で解決を開始しておけば、
+ * ロールの取得と、{@link CheckRole}による判定までに行われる他の処理とを並行して行える。
+ * </p>
+ * <p>
+ * 解決が開始されていない場合や、開始したユーザと異なるユーザのロールを要求された場合は、
+ * その場で解決を開始して結果を待ち合わせる。
+ * 先行して解決を開始できなかった場合(解決の開始時に例外がスローされた場合)も、ロールを要求された時点で改めて解決を開始する。
+ * </p>
+ * <p>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * </p>
+ * <dl>
+ * <dt>{@link #asyncUserRoleResolver}
+ * <dd>ロールの一覧を非同期に解決する{@link AsyncUserRoleResolver}。必須。
+ * <dt>{@link #timeoutMillis}
+ * <dd>解決結果を待ち合わせる時間(ミリ秒)。オプション。デフォルトは10000。<br>
+ *     時間内に解決できなかった場合は、解決をキャンセルして{@link IllegalStateException}をスローする。
+ * </dl>
+ * <p>
+ * {@link BasicRoleEvaluator}などの{@link UserRoleResolver}として本クラスを設定し、
+ * 同じインスタンスを{@link UserRolePrefetchHandler}にも設定すること。
+ * </p>
+ */
+public class PrefetchingUserRoleResolver implements UserRoleResolver {
+    /** 解決を開始したロールの一覧をリクエストスコープに保持する際のキー */
+    private static final String PREFETCHED_ROLES_KEY =
+            PrefetchingUserRoleResolver.class.getName() + ".PREFETCHED_ROLES";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(PrefetchingUserRoleResolver.class);
+
+    private AsyncUserRoleResolver asyncUserRoleResolver;
+    private long timeoutMillis = 10000L;
+
+    /**
+     * 指定されたユーザに紐づくロールの一覧の解決を開始する。
+     * <p>
+     * 解決の完了は待たずに復帰する。
+     * 同じリクエストで同じユーザの解決を既に開始している場合は何もしない。
+     * 解決の開始に失敗した場合はワーニングログを出力して復帰し、ロールを要求された時点で改めて解決を開始する。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     */
+    public void prefetch(String userId, ExecutionContext context) {
+        if (userId == null || context == null) {
+            return;
+        }
+        checkAsyncUserRoleResolverIsNotNull();
+        if (findPrefetched(userId, context) != null) {
+            return;
+        }
+        try {
+            start(userId, context);
+        } catch (RuntimeException e) {
+            LOGGER.logWarn("failed to prefetch user roles. user roles will be resolved when they are required. "
+                    + "userId = [" + userId + "]", e);
+        }
+    }
+
+    /**
+     * 指定されたユーザに紐づくロールの一覧を返す。
+     * <p>
+     * 解決を開始済みの場合はその結果を、開始していない場合は解決を開始してその結果を待ち合わせる。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return ユーザに紐づくロールの一覧
+     * @throws IllegalStateException 時間内に解決できなかった場合、または待ち合わせ中に割り込まれた場合
+     */
+    @Override
+    public Collection<String> resolve(String userId, ExecutionContext context) {
+        PrefetchedRoles prefetched = context == null ? null : findPrefetched(userId, context);
+        if (prefetched == null) {
+            prefetched = start(userId, context);
+        }
+
+        final Collection<String> roles;
+        try {
+            roles = prefetched.roles.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(prefetched, context);
+            throw new IllegalStateException("failed to resolve user roles within the timeout. "
+                    + "userId = [" + userId + "], timeoutMillis = [" + timeoutMillis + "]", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while resolving user roles. userId = [" + userId + "]", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("failed to resolve user roles. userId = [" + userId + "]", cause);
+        }
+        return roles == null ? Collections.<String>emptyList() : roles;
+    }
+
+    /**
+     * リクエストスコープから、指定されたユーザの解決を開始したロールの一覧を取得する。
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return 解決を開始したロールの一覧(開始していない場合は{@code null})
+     */
+    private static PrefetchedRoles findPrefetched(String userId, ExecutionContext context) {
+        final PrefetchedRoles prefetched = context.getRequestScopedVar(PREFETCHED_ROLES_KEY);
+        if (prefetched == null || !prefetched.userId.equals(userId)) {
+            return null;
+        }
+        return prefetched;
+    }
+
+    /**
+     * 待ち合わせを打ち切った解決をキャンセルし、リクエストスコープから除去する。
+     * <p>
+     * 除去することで、同じリクエストで再度ロールを要求された場合は改めて解決を開始する。
+     * </p>
+     * @param prefetched 解決を開始したロールの一覧
+     * @param context 実行コンテキスト
+     */
+    private static void cancel(PrefetchedRoles prefetched, ExecutionContext context) {
+        prefetched.roles.cancel(true);
+        if (context != null && context.getRequestScopedVar(PREFETCHED_ROLES_KEY) == prefetched) {
+            context.setRequestScopedVar(PREFETCHED_ROLES_KEY, null);
+        }
+    }
+
+    /**
+     * ロールの一覧の解決を開始する。
+     * <p>
+     * 実行コンテキストが指定された場合は、開始したロールの一覧をリクエストスコープに保持する。
+     * </p>
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return 解決を開始したロールの一覧
+     */
+    private PrefetchedRoles start(String userId, ExecutionContext context) {
+        checkAsyncUserRoleResolverIsNotNull();
+        final PrefetchedRoles prefetched = new PrefetchedRoles(
+                userId, asyncUserRoleResolver.resolveAsync(userId, context).toCompletableFuture());
+        if (context != null && userId != null) {
+            context.setRequestScopedVar(PREFETCHED_ROLES_KEY, prefetched);
+        }
+        return prefetched;
+    }
+
+    /**
+     * {@link AsyncUserRoleResolver}が設定されていることを検証する。
+     */
+    private void checkAsyncUserRoleResolverIsNotNull() {
+        if (asyncUserRoleResolver == null) {
+            throw new IllegalStateException("AsyncUserRoleResolver is null.");
+        }
+    }
+
+    /**
+     * ロールの一覧を非同期に解決する{@link AsyncUserRoleResolver}を設定する。
+     * @param asyncUserRoleResolver {@link AsyncUserRoleResolver}のインスタンス
+     */
+    public void setAsyncUserRoleResolver(AsyncUserRoleResolver asyncUserRoleResolver) {
+        this.asyncUserRoleResolver = asyncUserRoleResolver;
+    }
+
+    /**
+     * 解決結果を待ち合わせる時間(ミリ秒)を設定する。
+     * @param timeoutMillis 解決結果を待ち合わせる時間(ミリ秒)
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 解決を開始したロールの一覧。
+     */
+    private static final class PrefetchedRoles {
+        /** ユーザID */
+        private final String userId;
+        /** ロールの一覧 */
+        private final CompletableFuture<Collection<String>> roles;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param roles ロールの一覧
+         */
+        private PrefetchedRoles(String userId, CompletableFuture<Collection<String>> roles) {
+            this.userId = userId;
+            this.roles = roles;
+        }
+    }
+}
@@ -4,6 +4,9 @@ import nablarch.core.util.annotation.Published;
 import nablarch.fw.ExecutionContext;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * ユーザにロールがあるか判定を行うインタフェース。
@@ -29,4 +32,26 @@ public interface RoleEvaluator {
      * @return ロールを有する場合は {@code true}
      */
     boolean evaluateAllOf(String userId, Collection<String> roles, ExecutionContext context);
+
+    /**
+     * 指定されたロールのうち、指定されたユーザが有しているロールの一覧を返却する。
+     * <p>
+     * メニューの表示制御などで複数のロールを判定する場合に、まとめて判定するために使用する。<br>
+     * デフォルトの実装は、ロール毎に{@link #evaluateAllOf(String, Collection, ExecutionContext)}を呼び出して判定する。
+     * 実装クラスは、ユーザに紐づくロールの解決を1回で済ませるようにオーバーライドすること。
+     * </p>
+     * @param userId 判定対象のユーザID
+     * @param roles 判定するロールの一覧
+     * @param context 実行コンテキスト
+     * @return ユーザが有しているロールの一覧(指定されたロールの順序を保持する。変更不可)
+     */
+    default Set<String> evaluateGrantedRoles(String userId, Collection<String> roles, ExecutionContext context) {
+        final Set<String> granted = new LinkedHashSet<String>();
+        for (String role : roles) {
+            if (evaluateAllOf(userId, Collections.singletonList(role), context)) {
+                granted.add(role);
+            }
+        }
+        return Collections.unmodifiableSet(granted);
+    }
 }
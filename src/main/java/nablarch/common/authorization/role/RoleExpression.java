@@ -0,0 +1,433 @@
+package nablarch.common.authorization.role;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link CheckRole#expression()}に指定されたロールの条件式を解析した結果。
+ * <p>
+ * 条件式は、ロール名と演算子{@code and}、{@code or}、{@code not}、および括弧で記述する。
+ * 演算子の大文字と小文字は区別しない。優先順位は{@code not}、{@code and}、{@code or}の順に高い。<br>
+ * (例: {@code ADMIN or (MANAGER and AUDITOR)}、{@code STAFF and not GUEST})
+ * </p>
+ * <p>
+ * 解析した条件式は木構造で保持し、{@link #evaluate(Set)}で評価する。
+ * {@code and}と{@code or}は左から順に評価し、結果が確定した時点で残りの評価を行わない。
+ * </p>
+ * <p>
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ * </p>
+ */
+final class RoleExpression {
+    /** ルートノード */
+    private final Node root;
+
+    /** 条件式に含まれるロールの一覧(出現順、重複なし。変更不可) */
+    private final List<String> roles;
+
+    /** 正規化した条件式 */
+    private final String normalized;
+
+    /**
+     * コンストラクタ。
+     * @param root ルートノード
+     */
+    private RoleExpression(Node root) {
+        this.root = root;
+        final Set<String> collected = new LinkedHashSet<String>();
+        root.collectRoles(collected);
+        this.roles = Collections.unmodifiableList(new ArrayList<String>(collected));
+        final StringBuilder sb = new StringBuilder();
+        root.format(sb);
+        this.normalized = sb.toString();
+    }
+
+    /**
+     * 条件式を解析する。
+     * @param expression 条件式
+     * @return 解析した結果
+     * @throws IllegalArgumentException 条件式が不正な場合
+     */
+    static RoleExpression parse(String expression) {
+        return new RoleExpression(new Parser(expression).parse());
+    }
+
+    /**
+     * 条件式に含まれるロールの一覧を取得する。
+     * @return ロールの一覧(出現順、重複なし。変更不可)
+     */
+    List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * 条件式を評価する。
+     * @param grantedRoles ユーザが有するロールの一覧
+     * @return 条件を満たす場合は {@code true}
+     */
+    boolean evaluate(Set<String> grantedRoles) {
+        return root.evaluate(grantedRoles);
+    }
+
+    /**
+     * 正規化した条件式を返す。
+     * <p>
+     * 演算子は小文字で出力し、優先順位の判断に必要な括弧のみ付与する。
+     * </p>
+     * @return 正規化した条件式
+     */
+    @Override
+    public String toString() {
+        return normalized;
+    }
+
+    /**
+     * 条件式を構成するノード。
+     */
+    private abstract static class Node {
+        /**
+         * ノードを評価する。
+         * @param grantedRoles ユーザが有するロールの一覧
+         * @return 条件を満たす場合は {@code true}
+         */
+        abstract boolean evaluate(Set<String> grantedRoles);
+
+        /**
+         * ノードに含まれるロールを収集する。
+         * @param roles 収集先
+         */
+        abstract void collectRoles(Set<String> roles);
+
+        /**
+         * ノードを文字列に変換する。
+         * @param sb 出力先
+         */
+        abstract void format(StringBuilder sb);
+    }
+
+    /**
+     * ロールを表すノード。
+     */
+    private static final class RoleNode extends Node {
+        private final String role;
+
+        /**
+         * コンストラクタ。
+         * @param role ロール
+         */
+        private RoleNode(String role) {
+            this.role = role;
+        }
+
+        @Override
+        boolean evaluate(Set<String> grantedRoles) {
+            return grantedRoles.contains(role);
+        }
+
+        @Override
+        void collectRoles(Set<String> roles) {
+            roles.add(role);
+        }
+
+        @Override
+        void format(StringBuilder sb) {
+            sb.append(role);
+        }
+    }
+
+    /**
+     * {@code not}を表すノード。
+     */
+    private static final class NotNode extends Node {
+        private final Node operand;
+
+        /**
+         * コンストラクタ。
+         * @param operand 否定するノード
+         */
+        private NotNode(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean evaluate(Set<String> grantedRoles) {
+            return !operand.evaluate(grantedRoles);
+        }
+
+        @Override
+        void collectRoles(Set<String> roles) {
+            operand.collectRoles(roles);
+        }
+
+        @Override
+        void format(StringBuilder sb) {
+            sb.append("not ");
+            formatOperand(sb, operand, !(operand instanceof RoleNode || operand instanceof NotNode));
+        }
+    }
+
+    /**
+     * {@code and}を表すノード。
+     */
+    private static final class AndNode extends Node {
+        private final Node[] operands;
+
+        /**
+         * コンストラクタ。
+         * @param operands 全て満たす必要があるノード
+         */
+        private AndNode(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean evaluate(Set<String> grantedRoles) {
+            for (Node operand : operands) {
+                if (!operand.evaluate(grantedRoles)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void collectRoles(Set<String> roles) {
+            for (Node operand : operands) {
+                operand.collectRoles(roles);
+            }
+        }
+
+        @Override
+        void format(StringBuilder sb) {
+            for (int i = 0; i < operands.length; i++) {
+                if (i != 0) {
+                    sb.append(" and ");
+                }
+                formatOperand(sb, operands[i], operands[i] instanceof OrNode);
+            }
+        }
+    }
+
+    /**
+     * {@code or}を表すノード。
+     */
+    private static final class OrNode extends Node {
+        private final Node[] operands;
+
+        /**
+         * コンストラクタ。
+         * @param operands いずれかを満たす必要があるノード
+         */
+        private OrNode(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean evaluate(Set<String> grantedRoles) {
+            for (Node operand : operands) {
+                if (operand.evaluate(grantedRoles)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void collectRoles(Set<String> roles) {
+            for (Node operand : operands) {
+                operand.collectRoles(roles);
+            }
+        }
+
+        @Override
+        void format(StringBuilder sb) {
+            for (int i = 0; i < operands.length; i++) {
+                if (i != 0) {
+                    sb.append(" or ");
+                }
+                operands[i].format(sb);
+            }
+        }
+    }
+
+    /**
+     * ノードを文字列に変換する。
+     * @param sb 出力先
+     * @param operand ノード
+     * @param parenthesize 括弧で囲む場合は {@code true}
+     */
+    private static void formatOperand(StringBuilder sb, Node operand, boolean parenthesize) {
+        if (parenthesize) {
+            sb.append('(');
+            operand.format(sb);
+            sb.append(')');
+        } else {
+            operand.format(sb);
+        }
+    }
+
+    /**
+     * 条件式を解析する再帰下降パーサ。
+     * <pre>
+     * expression := orExpr
+     * orExpr     := andExpr ("or" andExpr)*
+     * andExpr    := notExpr ("and" notExpr)*
+     * notExpr    := "not" notExpr | primary
+     * primary    := "(" orExpr ")" | ロール
+     * </pre>
+     */
+    private static final class Parser {
+        private final String expression;
+        private final List<String> tokens;
+        private int position;
+
+        /**
+         * コンストラクタ。
+         * @param expression 条件式
+         */
+        private Parser(String expression) {
+            this.expression = expression;
+            this.tokens = tokenize(expression);
+        }
+
+        /**
+         * 条件式を解析する。
+         * @return ルートノード
+         */
+        private Node parse() {
+            if (tokens.isEmpty()) {
+                throw error("expression is empty.");
+            }
+            final Node root = parseOr();
+            if (position < tokens.size()) {
+                throw error("unexpected token [" + tokens.get(position) + "].");
+            }
+            return root;
+        }
+
+        /**
+         * {@code or}で連結された式を解析する。
+         * @return ノード
+         */
+        private Node parseOr() {
+            final List<Node> operands = new ArrayList<Node>();
+            operands.add(parseAnd());
+            while (nextIs("or")) {
+                position++;
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new OrNode(operands.toArray(new Node[operands.size()]));
+        }
+
+        /**
+         * {@code and}で連結された式を解析する。
+         * @return ノード
+         */
+        private Node parseAnd() {
+            final List<Node> operands = new ArrayList<Node>();
+            operands.add(parseNot());
+            while (nextIs("and")) {
+                position++;
+                operands.add(parseNot());
+            }
+            return operands.size() == 1 ? operands.get(0) : new AndNode(operands.toArray(new Node[operands.size()]));
+        }
+
+        /**
+         * {@code not}が付与された式を解析する。
+         * @return ノード
+         */
+        private Node parseNot() {
+            if (nextIs("not")) {
+                position++;
+                return new NotNode(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        /**
+         * 括弧で囲まれた式、またはロールを解析する。
+         * @return ノード
+         */
+        private Node parsePrimary() {
+            if (position >= tokens.size()) {
+                throw error("unexpected end of expression.");
+            }
+            final String token = tokens.get(position++);
+            if (token.equals("(")) {
+                final Node node = parseOr();
+                if (!nextIs(")")) {
+                    throw error("')' is expected.");
+                }
+                position++;
+                return node;
+            }
+            if (token.equals(")") || isKeyword(token)) {
+                throw error("unexpected token [" + token + "].");
+            }
+            return new RoleNode(token);
+        }
+
+        /**
+         * 次のトークンが指定された文字列か判定する(大文字と小文字は区別しない)。
+         * @param expected 文字列
+         * @return 次のトークンが指定された文字列の場合は {@code true}
+         */
+        private boolean nextIs(String expected) {
+            return position < tokens.size() && tokens.get(position).equalsIgnoreCase(expected);
+        }
+
+        /**
+         * 解析に失敗したことを表す例外を生成する。
+         * @param reason 失敗した理由
+         * @return 例外
+         */
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException(
+                    "invalid role expression. " + reason + " expression = [" + expression + "]");
+        }
+
+        /**
+         * 演算子か判定する。
+         * @param token トークン
+         * @return 演算子の場合は {@code true}
+         */
+        private static boolean isKeyword(String token) {
+            return token.equalsIgnoreCase("and") || token.equalsIgnoreCase("or") || token.equalsIgnoreCase("not");
+        }
+
+        /**
+         * 条件式をトークンに分割する。
+         * <p>
+         * 括弧は1文字で1つのトークンとし、それ以外は空白文字と括弧で区切る。
+         * </p>
+         * @param expression 条件式
+         * @return トークンの一覧
+         */
+        private static List<String> tokenize(String expression) {
+            final List<String> tokens = new ArrayList<String>();
+            int start = -1;
+            for (int i = 0; i < expression.length(); i++) {
+                final char c = expression.charAt(i);
+                if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                    if (start >= 0) {
+                        tokens.add(expression.substring(start, i));
+                        start = -1;
+                    }
+                    if (c == '(' || c == ')') {
+                        tokens.add(String.valueOf(c));
+                    }
+                } else if (start < 0) {
+                    start = i;
+                }
+            }
+            if (start >= 0) {
+                tokens.add(expression.substring(start));
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.util.StringUtil;
+import nablarch.fw.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CheckRole}アノテーションから生成した、メソッドを実行するために必要なロールの条件。
+ * <p>
+ * アノテーションの値は実行中に変わらないため、重複を除いたロールの一覧と、
+ * 判定に失敗した場合のメッセージをあらかじめ組み立てて保持する。<br>
+ * {@link BitmaskRoleEvaluator}で判定する場合は、ロールの一覧を変換したビットマスクも保持する。
+ * </p>
+ * <p>
+ * {@link CheckRole#expression()}が指定されている場合は、条件式を解析した結果を保持する。
+ * 条件式に含まれるロールは{@link RoleEvaluator#evaluateGrantedRoles(String, java.util.Collection, ExecutionContext)}で
+ * まとめて判定し、その結果を用いて条件式を評価する。
+ * </p>
+ * <p>
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ * </p>
+ */
+final class RoleRequirement {
+    /**
+     * {@link CheckRole}アノテーションのインスタンスをキーとした、ロールの条件のキャッシュ。
+     * <p>
+     * アノテーションの{@code hashCode()}は呼び出しの度に全ての属性から計算されるため、インスタンスの同一性で比較する。
+     * 参照時にロックを取得しないよう、追加する場合はコピーしてから差し替える(追加はアノテーション毎に1回のみ)。
+     * </p>
+     */
+    private static volatile Map<CheckRole, RoleRequirement> requirements =
+            new IdentityHashMap<CheckRole, RoleRequirement>();
+
+    /** ロールの一覧(重複を除いたもの。変更不可) */
+    private final List<String> roles;
+
+    /** ロールの一覧を部分一致で判定するか否か */
+    private final boolean anyOf;
+
+    /** ロールの条件式(指定されていない場合は{@code null}) */
+    private final RoleExpression expression;
+
+    /** 判定に失敗した場合のメッセージのうち、ユーザIDより後ろの部分 */
+    private final String deniedMessageSuffix;
+
+    /** {@link BitmaskRoleEvaluator}で変換したビットマスク(未変換の場合は{@code null}) */
+    private volatile CompiledMask compiledMask;
+
+    /**
+     * コンストラクタ。
+     * @param checkRole {@link CheckRole}アノテーション
+     * @throws IllegalArgumentException {@code value}、{@code anyOf}、{@code expression}の指定が不正な場合
+     */
+    RoleRequirement(CheckRole checkRole) {
+        final boolean hasValue = checkRole.value().length != 0;
+        final boolean hasExpression = checkRole.expression().length() != 0;
+        if (hasValue == hasExpression) {
+            throw new IllegalArgumentException(
+                    "either value or expression of CheckRole must be specified. "
+                    + "value = " + Arrays.toString(checkRole.value())
+                    + ", expression = [" + checkRole.expression() + "]");
+        }
+        if (hasExpression && checkRole.anyOf()) {
+            throw new IllegalArgumentException(
+                    "anyOf of CheckRole cannot be specified with expression. expression = [" + checkRole.expression() + "]");
+        }
+
+        this.anyOf = checkRole.anyOf();
+        if (hasExpression) {
+            this.expression = RoleExpression.parse(checkRole.expression());
+            this.roles = expression.getRoles();
+            this.deniedMessageSuffix = "], expression=[" + expression + "]";
+        } else {
+            this.expression = null;
+            this.roles = Collections.unmodifiableList(
+                    new ArrayList<String>(new LinkedHashSet<String>(Arrays.asList(checkRole.value()))));
+            this.deniedMessageSuffix = "], roles=[" + StringUtil.join(", ", roles) + "]";
+        }
+    }
+
+    /**
+     * {@link CheckRole}アノテーションに対応するロールの条件を取得する。
+     * <p>
+     * キャッシュに存在しない場合は生成してキャッシュする。
+     * アノテーションのインスタンスはメソッド毎に同じものが返されるため、2回目以降の呼び出しではキャッシュから取得する。
+     * </p>
+     * @param checkRole {@link CheckRole}アノテーション
+     * @return ロールの条件
+     * @throws IllegalArgumentException {@code value}、{@code anyOf}、{@code expression}の指定が不正な場合
+     */
+    static RoleRequirement get(CheckRole checkRole) {
+        final RoleRequirement requirement = requirements.get(checkRole);
+        if (requirement != null) {
+            return requirement;
+        }
+        return register(checkRole);
+    }
+
+    /**
+     * ロールの条件を生成してキャッシュに追加する。
+     * @param checkRole {@link CheckRole}アノテーション
+     * @return ロールの条件
+     * @throws IllegalArgumentException {@code value}、{@code anyOf}、{@code expression}の指定が不正な場合
+     */
+    private static synchronized RoleRequirement register(CheckRole checkRole) {
+        final RoleRequirement existing = requirements.get(checkRole);
+        if (existing != null) {
+            return existing;
+        }
+        final RoleRequirement requirement = new RoleRequirement(checkRole);
+        final Map<CheckRole, RoleRequirement> copied = new IdentityHashMap<CheckRole, RoleRequirement>(requirements);
+        copied.put(checkRole, requirement);
+        requirements = copied;
+        return requirement;
+    }
+
+    /**
+     * 指定されたユーザが条件を満たすか判定する。
+     * @param roleEvaluator {@link RoleEvaluator}
+     * @param userId ユーザID
+     * @param context 実行コンテキスト
+     * @return 条件を満たす場合は {@code true}
+     */
+    boolean evaluate(RoleEvaluator roleEvaluator, String userId, ExecutionContext context) {
+        if (expression != null) {
+            return expression.evaluate(roleEvaluator.evaluateGrantedRoles(userId, roles, context));
+        }
+        if (roleEvaluator instanceof BitmaskRoleEvaluator) {
+            final BitmaskRoleEvaluator bitmaskRoleEvaluator = (BitmaskRoleEvaluator) roleEvaluator;
+            final long mask = getMask(bitmaskRoleEvaluator);
+            return anyOf
+                    ? bitmaskRoleEvaluator.evaluateAnyOf(userId, mask, context)
+                    : bitmaskRoleEvaluator.evaluateAllOf(userId, mask, context);
+        }
+        return anyOf
+                ? roleEvaluator.evaluateAnyOf(userId, roles, context)
+                : roleEvaluator.evaluateAllOf(userId, roles, context);
+    }
+
+    /**
+     * 判定に失敗した場合のメッセージを組み立てる。
+     * @param userId ユーザID
+     * @return メッセージ
+     */
+    String buildDeniedMessage(String userId) {
+        return "User has no role. userId=[" + userId + deniedMessageSuffix;
+    }
+
+    /**
+     * 指定された{@link BitmaskRoleEvaluator}で変換したビットマスクを取得する。
+     * <p>
+     * 前回と異なる{@link BitmaskRoleEvaluator}が指定された場合(システムリポジトリが再読み込みされた場合など)は、
+     * 変換し直す。
+     * </p>
+     * @param bitmaskRoleEvaluator {@link BitmaskRoleEvaluator}
+     * @return ビットマスク
+     */
+    private long getMask(BitmaskRoleEvaluator bitmaskRoleEvaluator) {
+        CompiledMask compiled = compiledMask;
+        if (compiled == null || compiled.evaluator != bitmaskRoleEvaluator) {
+            compiled = new CompiledMask(bitmaskRoleEvaluator, bitmaskRoleEvaluator.compile(roles));
+            compiledMask = compiled;
+        }
+        return compiled.mask;
+    }
+
+    /**
+     * {@link BitmaskRoleEvaluator}で変換したビットマスク。
+     */
+    private static final class CompiledMask {
+        /** 変換に使用した{@link BitmaskRoleEvaluator} */
+        private final BitmaskRoleEvaluator evaluator;
+        /** ビットマスク */
+        private final long mask;
+
+        /**
+         * コンストラクタ。
+         * @param evaluator 変換に使用した{@link BitmaskRoleEvaluator}
+         * @param mask ビットマスク
+         */
+        private CompiledMask(BitmaskRoleEvaluator evaluator, long mask) {
+            this.evaluator = evaluator;
+            this.mask = mask;
+        }
+    }
+}
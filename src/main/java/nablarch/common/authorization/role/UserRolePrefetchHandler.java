@@ -0,0 +1,52 @@
+package nablarch.common.authorization.role;
+
+import nablarch.core.ThreadContext;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+
+/**
+ * ログイン中のユーザに紐づくロールの解決を、後続のハンドラを実行する前に開始するハンドラ。
+ * <p>
+ * {@link ThreadContext#getUserId()}から取得したユーザIDで
+ * {@link PrefetchingUserRoleResolver#prefetch(String, ExecutionContext)}を呼び出し、解決の完了を待たずに後続のハンドラに処理を委譲する。<br>
+ * ユーザIDが設定されていない場合は、何もせずに後続のハンドラに処理を委譲する。
+ * </p>
+ * <p>
+ * {@link ThreadContext}にユーザIDを設定するハンドラより後ろに本ハンドラを設定すること。
+ * </p>
+ * <p>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * </p>
+ * <dl>
+ * <dt>{@link #prefetchingUserRoleResolver}
+ * <dd>ロールの解決を開始する{@link PrefetchingUserRoleResolver}。必須。<br>
+ *     {@link RoleEvaluator}に設定したものと同じインスタンスを設定すること。
+ * </dl>
+ */
+public class UserRolePrefetchHandler implements Handler<Object, Object> {
+
+    private PrefetchingUserRoleResolver prefetchingUserRoleResolver;
+
+    /**
+     * ロールの解決を開始し、後続のハンドラに処理を委譲する。
+     * @param data 処理対象データ
+     * @param context 実行コンテキスト
+     * @return 処理結果
+     */
+    @Override
+    public Object handle(Object data, ExecutionContext context) {
+        final String userId = ThreadContext.getUserId();
+        if (userId != null) {
+            prefetchingUserRoleResolver.prefetch(userId, context);
+        }
+        return context.handleNext(data);
+    }
+
+    /**
+     * ロールの解決を開始する{@link PrefetchingUserRoleResolver}を設定する。
+     * @param prefetchingUserRoleResolver {@link PrefetchingUserRoleResolver}のインスタンス
+     */
+    public void setPrefetchingUserRoleResolver(PrefetchingUserRoleResolver prefetchingUserRoleResolver) {
+        this.prefetchingUserRoleResolver = prefetchingUserRoleResolver;
+    }
+}
@@ -0,0 +1,125 @@
+package nablarch.common.availability;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.Builder;
+
+/**
+ * 指定されたファイルの作成、更新、削除をサービス提供可否状態の変更として検知する{@link ServiceAvailabilityChangeDetector}。
+ * <br>
+ * <br>
+ * {@link WatchService}でファイルが存在するディレクトリを監視し、
+ * {@link #hasChanged()}では通知済みのイベントを確認するのみとするため、ファイルの読み込みは行わない。<br>
+ * サービス提供可否状態を変更した際に、このファイルを更新(タイムスタンプの更新のみでもよい)する運用とすること。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #filePath}
+ * <dd>監視するファイルのパス。必須。<br>
+ *     ファイルが存在するディレクトリは、初期化時点で存在している必要がある。
+ * </dl>
+ * 本クラスは{@link Initializable}と{@link Disposable}を実装しているため、
+ * 初期化対象および廃棄対象のコンポーネントとして設定すること。
+ */
+public class FileServiceAvailabilityChangeDetector
+        implements ServiceAvailabilityChangeDetector, Initializable, Disposable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(FileServiceAvailabilityChangeDetector.class);
+
+    // ------------------------------------------------------------ structure
+    /** 監視するファイルのパス */
+    private String filePath;
+
+    /** 監視するファイルの名前 */
+    private Path fileName;
+
+    /** ディレクトリを監視する{@link WatchService}(初期化前と廃棄後は{@code null}) */
+    private WatchService watchService;
+
+    // ------------------------------------------ implementation of Initializable API
+    /**
+     * ファイルが存在するディレクトリの監視を開始する。
+     */
+    @Override
+    public synchronized void initialize() {
+        if (filePath == null) {
+            throw new IllegalStateException("filePath is null.");
+        }
+        final Path file = Paths.get(filePath).toAbsolutePath();
+        fileName = file.getFileName();
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new IllegalStateException(Builder.concat("failed to watch file. file = [", file, "]"), e);
+        }
+    }
+
+    // ------------------------------------------ implementation of Disposable API
+    /**
+     * ディレクトリの監視を終了する。
+     */
+    @Override
+    public synchronized void dispose() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.logWarn(Builder.concat("failed to close watch service. file = [", filePath, "]"), e);
+        }
+        watchService = null;
+    }
+
+    // ------------------------------------------ implementation of ServiceAvailabilityChangeDetector API
+    /**
+     * 前回呼び出した時点から、ファイルが作成、更新、削除されたか否かを判定する。
+     * <br>
+     * 通知されたイベントが多すぎて欠落した場合も、変更されたものとして扱う。
+     *
+     * @return ファイルが作成、更新、削除された場合は {@code true}
+     */
+    @Override
+    public synchronized boolean hasChanged() {
+        if (watchService == null) {
+            throw new IllegalStateException("FileServiceAvailabilityChangeDetector is not initialized.");
+        }
+        boolean changed = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                    changed = true;
+                }
+            }
+            key.reset();
+        }
+        return changed;
+    }
+
+    // ----------------------------------------------------------- accessors
+    /**
+     * 監視するファイルのパスを設定する。
+     *
+     * @param filePath 監視するファイルのパス
+     */
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+}
@@ -0,0 +1,143 @@
+package nablarch.common.availability;
+
+/**
+ * サービスを提供不可とする時間帯(メンテナンス時間帯)の定義。
+ * <br>
+ * <br>
+ * {@link MaintenanceWindowServiceAvailability}に設定して使用する。
+ * 時間帯は、開始日時と終了日時を指定する方法と、曜日と時刻を指定して繰り返す方法のいずれかで指定する。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #requestIdPattern}
+ * <dd>提供不可とするリクエストIDのパターン。必須。<br>
+ *     リクエストIDそのものか、末尾に{@code "*"}を付けた前方一致のパターンを指定する。({@code "*"}のみの場合は全てのリクエストID)
+ * <dt>{@link #start}、{@link #end}
+ * <dd>提供不可とする期間の開始日時と終了日時(終了日時は含まない)。<br>
+ *     {@code yyyy-MM-ddTHH:mm}(または{@code yyyy-MM-ddTHH:mm:ss})形式で指定する。(例: {@code 2026-10-17T02:00})
+ * <dt>{@link #startTime}、{@link #endTime}
+ * <dd>繰り返し提供不可とする時間帯の開始時刻と終了時刻(終了時刻は含まない)。<br>
+ *     {@code HH:mm}(または{@code HH:mm:ss})形式で指定する。終了時刻が開始時刻以前の場合は、翌日の終了時刻までとなる。
+ * <dt>{@link #daysOfWeek}
+ * <dd>繰り返し提供不可とする曜日。オプション。指定しない場合は毎日となる。<br>
+ *     時間帯を開始する曜日を、英語の曜日名(先頭3文字以上)のカンマ区切りで指定する。(例: {@code SAT,SUN})
+ * </dl>
+ * {@link #start}と{@link #end}、または{@link #startTime}と{@link #endTime}のいずれか一方の組み合わせのみを指定すること。
+ */
+public class MaintenanceWindow {
+
+    /** 提供不可とするリクエストIDのパターン */
+    private String requestIdPattern;
+
+    /** 提供不可とする期間の開始日時 */
+    private String start;
+
+    /** 提供不可とする期間の終了日時 */
+    private String end;
+
+    /** 繰り返し提供不可とする時間帯の開始時刻 */
+    private String startTime;
+
+    /** 繰り返し提供不可とする時間帯の終了時刻 */
+    private String endTime;
+
+    /** 繰り返し提供不可とする曜日 */
+    private String daysOfWeek;
+
+    /**
+     * 提供不可とするリクエストIDのパターンを取得する。
+     * @return 提供不可とするリクエストIDのパターン
+     */
+    public String getRequestIdPattern() {
+        return requestIdPattern;
+    }
+
+    /**
+     * 提供不可とするリクエストIDのパターンを設定する。
+     * @param requestIdPattern 提供不可とするリクエストIDのパターン
+     */
+    public void setRequestIdPattern(String requestIdPattern) {
+        this.requestIdPattern = requestIdPattern;
+    }
+
+    /**
+     * 提供不可とする期間の開始日時を取得する。
+     * @return 提供不可とする期間の開始日時
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * 提供不可とする期間の開始日時を設定する。
+     * @param start 提供不可とする期間の開始日時
+     */
+    public void setStart(String start) {
+        this.start = start;
+    }
+
+    /**
+     * 提供不可とする期間の終了日時を取得する。
+     * @return 提供不可とする期間の終了日時
+     */
+    public String getEnd() {
+        return end;
+    }
+
+    /**
+     * 提供不可とする期間の終了日時を設定する。
+     * @param end 提供不可とする期間の終了日時
+     */
+    public void setEnd(String end) {
+        this.end = end;
+    }
+
+    /**
+     * 繰り返し提供不可とする時間帯の開始時刻を取得する。
+     * @return 繰り返し提供不可とする時間帯の開始時刻
+     */
+    public String getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 繰り返し提供不可とする時間帯の開始時刻を設定する。
+     * @param startTime 繰り返し提供不可とする時間帯の開始時刻
+     */
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * 繰り返し提供不可とする時間帯の終了時刻を取得する。
+     * @return 繰り返し提供不可とする時間帯の終了時刻
+     */
+    public String getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * 繰り返し提供不可とする時間帯の終了時刻を設定する。
+     * @param endTime 繰り返し提供不可とする時間帯の終了時刻
+     */
+    public void setEndTime(String endTime) {
+        this.endTime = endTime;
+    }
+
+    /**
+     * 繰り返し提供不可とする曜日を取得する。
+     * @return 繰り返し提供不可とする曜日
+     */
+    public String getDaysOfWeek() {
+        return daysOfWeek;
+    }
+
+    /**
+     * 繰り返し提供不可とする曜日を設定する。
+     * @param daysOfWeek 繰り返し提供不可とする曜日(カンマ区切り)
+     */
+    public void setDaysOfWeek(String daysOfWeek) {
+        this.daysOfWeek = daysOfWeek;
+    }
+}
@@ -0,0 +1,438 @@
+package nablarch.common.availability;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * メンテナンス時間帯に、指定されたリクエストIDを提供不可とする{@link ServiceAvailability}。
+ * <br>
+ * <br>
+ * {@link MaintenanceWindow}で定義した時間帯に含まれる場合は、時間帯に指定したパターンに一致するリクエストIDを提供不可と判定する。
+ * それ以外の場合は、委譲先の{@link ServiceAvailability}で判定する。<br>
+ * 本クラスは、現在提供不可とするパターンと、次にいずれかの時間帯が開始または終了する時刻をあらかじめ求めて保持する。
+ * 判定時はその時刻と現在時刻を比較するのみとし、その時刻を過ぎた場合のみ改めて求めるため、
+ * 判定に要する時間は時間帯の数によらない。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #serviceAvailability}
+ * <dd>メンテナンス時間帯以外の判定を行う委譲先の{@link ServiceAvailability}。必須。
+ * <dt>{@link #maintenanceWindows}
+ * <dd>メンテナンス時間帯の一覧。オプション。
+ * <dt>{@link #zoneId}
+ * <dd>メンテナンス時間帯の日時を解釈するタイムゾーン。オプション。デフォルトはシステムのタイムゾーン。
+ * </dl>
+ * 本クラスは{@link Initializable}を実装しているため、初期化対象のコンポーネントとして設定すること。
+ */
+public class MaintenanceWindowServiceAvailability implements ServiceAvailability, Initializable {
+
+    // ------------------------------------------------------------ structure
+    /** メンテナンス時間帯以外の判定を行う委譲先の{@link ServiceAvailability} */
+    private ServiceAvailability serviceAvailability;
+
+    /** メンテナンス時間帯の一覧 */
+    private List<MaintenanceWindow> maintenanceWindows = Collections.emptyList();
+
+    /** メンテナンス時間帯の日時を解釈するタイムゾーン */
+    private ZoneId zoneId = ZoneId.systemDefault();
+
+    /** 解析したメンテナンス時間帯の一覧(初期化前は{@code null}) */
+    private List<Window> windows;
+
+    /** 現在の判定状態(初期化前は{@code null}) */
+    private volatile State state;
+
+    // ------------------------------------------ implementation of Initializable API
+    /**
+     * メンテナンス時間帯の定義を解析し、現在の判定状態を求める。
+     */
+    @Override
+    public synchronized void initialize() {
+        if (serviceAvailability == null) {
+            throw new IllegalStateException("ServiceAvailability is null.");
+        }
+        final List<Window> parsed = new ArrayList<Window>(maintenanceWindows.size());
+        for (MaintenanceWindow maintenanceWindow : maintenanceWindows) {
+            parsed.add(parse(maintenanceWindow));
+        }
+        windows = parsed;
+        state = computeState(currentTimeMillis());
+    }
+
+    // ------------------------------------------ implementation of ServiceAvailability API
+    /**
+     * メンテナンス時間帯を考慮して、サービス提供可否状態を判定する。
+     *
+     * @param requestId リクエストID
+     * @return サービス提供可否状態を表すboolean （提供可の場合、TRUE）
+     */
+    @Override
+    public boolean isAvailable(String requestId) {
+        State current = state;
+        if (current == null) {
+            throw new IllegalStateException("MaintenanceWindowServiceAvailability is not initialized.");
+        }
+        final long now = currentTimeMillis();
+        if (now >= current.validUntil) {
+            current = refreshState(now);
+        }
+        if (current.closedRules != null && current.closedRules.find(requestId) != null) {
+            return false;
+        }
+        return serviceAvailability.isAvailable(requestId);
+    }
+
+    // ------------------------------------------------------------- helper
+    /**
+     * 判定状態を求め直す。
+     * <br>
+     * 他のスレッドが既に求め直している場合は、その結果を返す。
+     *
+     * @param now 現在時刻(ミリ秒)
+     * @return 判定状態
+     */
+    private synchronized State refreshState(long now) {
+        if (now < state.validUntil) {
+            return state;
+        }
+        state = computeState(now);
+        return state;
+    }
+
+    /**
+     * 指定された時刻における判定状態を求める。
+     *
+     * @param now 現在時刻(ミリ秒)
+     * @return 判定状態
+     */
+    private State computeState(long now) {
+        final Map<String, Boolean> closedPatterns = new HashMap<String, Boolean>();
+        long validUntil = Long.MAX_VALUE;
+        for (Window window : windows) {
+            final long activeUntil = window.activeUntil(now);
+            if (activeUntil > now) {
+                closedPatterns.put(window.requestIdPattern, Boolean.FALSE);
+                validUntil = Math.min(validUntil, activeUntil);
+            } else {
+                validUntil = Math.min(validUntil, window.nextStart(now));
+            }
+        }
+        return new State(closedPatterns.isEmpty() ? null : new AvailabilityRuleTrie(closedPatterns), validUntil);
+    }
+
+    /**
+     * メンテナンス時間帯の定義を解析する。
+     *
+     * @param maintenanceWindow メンテナンス時間帯の定義
+     * @return 解析したメンテナンス時間帯
+     * @throws IllegalArgumentException 定義が不正な場合
+     */
+    private Window parse(MaintenanceWindow maintenanceWindow) {
+        final String pattern = maintenanceWindow.getRequestIdPattern();
+        if (pattern == null || pattern.length() == 0) {
+            throw new IllegalArgumentException("requestIdPattern of maintenance window must be specified.");
+        }
+        final int wildcardIndex = pattern.indexOf(AvailabilityRuleTrie.WILDCARD);
+        if (wildcardIndex >= 0 && wildcardIndex != pattern.length() - 1) {
+            throw new IllegalArgumentException("wildcard '" + AvailabilityRuleTrie.WILDCARD
+                    + "' is only allowed at the end of pattern. pattern = [" + pattern + "]");
+        }
+        final boolean fixed = maintenanceWindow.getStart() != null || maintenanceWindow.getEnd() != null;
+        final boolean recurring = maintenanceWindow.getStartTime() != null || maintenanceWindow.getEndTime() != null;
+        try {
+            if (fixed && !recurring) {
+                if (maintenanceWindow.getStart() != null && maintenanceWindow.getEnd() != null) {
+                    final long start = toMillis(LocalDateTime.parse(maintenanceWindow.getStart()));
+                    final long end = toMillis(LocalDateTime.parse(maintenanceWindow.getEnd()));
+                    if (start < end) {
+                        return new FixedWindow(pattern, start, end);
+                    }
+                }
+            } else if (recurring && !fixed) {
+                if (maintenanceWindow.getStartTime() != null && maintenanceWindow.getEndTime() != null) {
+                    return new RecurringWindow(pattern,
+                            LocalTime.parse(maintenanceWindow.getStartTime()),
+                            LocalTime.parse(maintenanceWindow.getEndTime()),
+                            parseDaysOfWeek(maintenanceWindow.getDaysOfWeek()));
+                }
+            }
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(invalidWindowMessage(maintenanceWindow), e);
+        }
+        throw new IllegalArgumentException(invalidWindowMessage(maintenanceWindow));
+    }
+
+    /**
+     * 不正なメンテナンス時間帯の定義を表すメッセージを組み立てる。
+     *
+     * @param maintenanceWindow メンテナンス時間帯の定義
+     * @return メッセージ
+     */
+    private static String invalidWindowMessage(MaintenanceWindow maintenanceWindow) {
+        return "invalid maintenance window. either start/end or startTime/endTime must be specified correctly."
+                + " requestIdPattern = [" + maintenanceWindow.getRequestIdPattern() + "]"
+                + ", start = [" + maintenanceWindow.getStart() + "]"
+                + ", end = [" + maintenanceWindow.getEnd() + "]"
+                + ", startTime = [" + maintenanceWindow.getStartTime() + "]"
+                + ", endTime = [" + maintenanceWindow.getEndTime() + "]"
+                + ", daysOfWeek = [" + maintenanceWindow.getDaysOfWeek() + "]";
+    }
+
+    /**
+     * 曜日の指定を解析する。
+     *
+     * @param daysOfWeek 曜日(カンマ区切り)。{@code null}の場合は全ての曜日
+     * @return 曜日の集合
+     * @throws DateTimeException 曜日名が不正な場合
+     */
+    private static Set<DayOfWeek> parseDaysOfWeek(String daysOfWeek) {
+        if (daysOfWeek == null || daysOfWeek.trim().length() == 0) {
+            return EnumSet.allOf(DayOfWeek.class);
+        }
+        final Set<DayOfWeek> parsed = EnumSet.noneOf(DayOfWeek.class);
+        for (String token : daysOfWeek.split(",")) {
+            final String name = token.trim().toUpperCase();
+            DayOfWeek found = null;
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                if (name.length() >= 3 && dayOfWeek.name().startsWith(name)) {
+                    found = dayOfWeek;
+                }
+            }
+            if (found == null) {
+                throw new DateTimeException("invalid day of week. dayOfWeek = [" + token + "]");
+            }
+            parsed.add(found);
+        }
+        return parsed;
+    }
+
+    /**
+     * 日時をミリ秒に変換する。
+     *
+     * @param dateTime 日時
+     * @return ミリ秒
+     */
+    private long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(zoneId).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 現在時刻(ミリ秒)を取得する。
+     *
+     * @return 現在時刻(ミリ秒)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // ----------------------------------------------------------- accessors
+    /**
+     * メンテナンス時間帯以外の判定を行う委譲先の{@link ServiceAvailability}を設定する。
+     *
+     * @param serviceAvailability {@link ServiceAvailability}
+     */
+    public void setServiceAvailability(ServiceAvailability serviceAvailability) {
+        this.serviceAvailability = serviceAvailability;
+    }
+
+    /**
+     * メンテナンス時間帯の一覧を設定する。
+     *
+     * @param maintenanceWindows メンテナンス時間帯の一覧
+     */
+    public void setMaintenanceWindows(List<MaintenanceWindow> maintenanceWindows) {
+        this.maintenanceWindows = maintenanceWindows;
+    }
+
+    /**
+     * メンテナンス時間帯の日時を解釈するタイムゾーンを設定する。
+     *
+     * @param zoneId タイムゾーンのID(例: {@code Asia/Tokyo})
+     */
+    public void setZoneId(String zoneId) {
+        this.zoneId = ZoneId.of(zoneId);
+    }
+
+    /**
+     * 判定状態。
+     */
+    private static final class State {
+
+        /** 提供不可とするリクエストIDのパターン(提供不可とするものが無い場合は{@code null}) */
+        private final AvailabilityRuleTrie closedRules;
+
+        /** この判定状態が有効な期限(ミリ秒、この時刻を含まない) */
+        private final long validUntil;
+
+        /**
+         * コンストラクタ。
+         * @param closedRules 提供不可とするリクエストIDのパターン
+         * @param validUntil この判定状態が有効な期限(ミリ秒)
+         */
+        private State(AvailabilityRuleTrie closedRules, long validUntil) {
+            this.closedRules = closedRules;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * 解析したメンテナンス時間帯。
+     */
+    private abstract static class Window {
+
+        /** 提供不可とするリクエストIDのパターン */
+        private final String requestIdPattern;
+
+        /**
+         * コンストラクタ。
+         * @param requestIdPattern 提供不可とするリクエストIDのパターン
+         */
+        Window(String requestIdPattern) {
+            this.requestIdPattern = requestIdPattern;
+        }
+
+        /**
+         * 指定された時刻が時間帯に含まれる場合に、その時間帯の終了時刻を求める。
+         * @param now 時刻(ミリ秒)
+         * @return 時間帯の終了時刻(ミリ秒)。時間帯に含まれない場合は{@code now}以前の値
+         */
+        abstract long activeUntil(long now);
+
+        /**
+         * 指定された時刻より後で、次に時間帯が開始する時刻を求める。
+         * @param now 時刻(ミリ秒)
+         * @return 次に時間帯が開始する時刻(ミリ秒)。開始しない場合は{@link Long#MAX_VALUE}
+         */
+        abstract long nextStart(long now);
+    }
+
+    /**
+     * 開始日時と終了日時を指定したメンテナンス時間帯。
+     */
+    private static final class FixedWindow extends Window {
+
+        /** 開始日時(ミリ秒) */
+        private final long start;
+
+        /** 終了日時(ミリ秒) */
+        private final long end;
+
+        /**
+         * コンストラクタ。
+         * @param requestIdPattern 提供不可とするリクエストIDのパターン
+         * @param start 開始日時(ミリ秒)
+         * @param end 終了日時(ミリ秒)
+         */
+        private FixedWindow(String requestIdPattern, long start, long end) {
+            super(requestIdPattern);
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        long activeUntil(long now) {
+            return start <= now ? end : now;
+        }
+
+        @Override
+        long nextStart(long now) {
+            return now < start ? start : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 曜日と時刻を指定して繰り返すメンテナンス時間帯。
+     */
+    private final class RecurringWindow extends Window {
+
+        /** 開始時刻 */
+        private final LocalTime startTime;
+
+        /** 終了時刻 */
+        private final LocalTime endTime;
+
+        /** 時間帯を開始する曜日 */
+        private final Set<DayOfWeek> daysOfWeek;
+
+        /**
+         * コンストラクタ。
+         * @param requestIdPattern 提供不可とするリクエストIDのパターン
+         * @param startTime 開始時刻
+         * @param endTime 終了時刻
+         * @param daysOfWeek 時間帯を開始する曜日
+         */
+        private RecurringWindow(String requestIdPattern, LocalTime startTime, LocalTime endTime,
+                Set<DayOfWeek> daysOfWeek) {
+            super(requestIdPattern);
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.daysOfWeek = daysOfWeek;
+        }
+
+        @Override
+        long activeUntil(long now) {
+            final LocalDate today = Instant.ofEpochMilli(now).atZone(zoneId).toLocalDate();
+            // 前日に開始した時間帯が、日付を跨いで継続している場合がある
+            for (LocalDate date = today.minusDays(1); !date.isAfter(today); date = date.plusDays(1)) {
+                if (!daysOfWeek.contains(date.getDayOfWeek())) {
+                    continue;
+                }
+                final long start = startOf(date);
+                final long end = endOf(date);
+                if (start <= now && now < end) {
+                    return end;
+                }
+            }
+            return now;
+        }
+
+        @Override
+        long nextStart(long now) {
+            final LocalDate today = Instant.ofEpochMilli(now).atZone(zoneId).toLocalDate();
+            for (LocalDate date = today; !date.isAfter(today.plusDays(7)); date = date.plusDays(1)) {
+                if (daysOfWeek.contains(date.getDayOfWeek())) {
+                    final long start = startOf(date);
+                    if (start > now) {
+                        return start;
+                    }
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * 指定された日に開始する時間帯の開始時刻を求める。
+         * @param date 日付
+         * @return 開始時刻(ミリ秒)
+         */
+        private long startOf(LocalDate date) {
+            return ZonedDateTime.of(date, startTime, zoneId).toInstant().toEpochMilli();
+        }
+
+        /**
+         * 指定された日に開始する時間帯の終了時刻を求める。
+         * @param date 日付
+         * @return 終了時刻(ミリ秒)
+         */
+        private long endOf(LocalDate date) {
+            final LocalDate endDate = endTime.isAfter(startTime) ? date : date.plusDays(1);
+            return ZonedDateTime.of(endDate, endTime, zoneId).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package nablarch.common.availability;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.Builder;
+
+/**
+ * メモリマップしたファイルを参照してサービス提供可否状態を判定する{@link ServiceAvailability}。
+ * <br>
+ * <br>
+ * 同じホストで複数のJVMを実行する場合に、JVM毎にデータベースからサービス提供可否状態を取得することを避けるため、
+ * {@link MappedFileServiceAvailabilityWriter}で作成したファイルを全てのJVMでメモリマップして共有する。<br>
+ * リクエストIDの辞書は初期化時にメモリ上に読み込み、サービス提供可否状態はマップしたファイルから直接読み込む。
+ * そのため、運用ツールや代表となるプロセスが{@link MappedFileServiceAvailabilityWriter#setAvailable(String, String, boolean)}で
+ * 状態を更新すると、各JVMは読み込み直すことなく即座に更新後の状態で判定する。<br>
+ * ファイルが{@link MappedFileServiceAvailabilityWriter#write(String, Map)}で作成し直された場合は、
+ * 次の判定時に新しいファイルをマップし直す。
+ * マップし直すことができなかった場合は、ログを出力して置き換えられる前のファイルで判定を続け、
+ * {@link #remapRetryIntervalMillis}が経過した後の判定時に再度マップし直す。<br>
+ * マップに使用したチャネルはマップした直後に閉じる。
+ * 置き換えられたファイルのマッピングは参照を破棄し、判定中のスレッドが参照しなくなった時点でガベージコレクションにより解放される。
+ * (判定中のスレッドが参照している可能性があるため、明示的なマッピングの解除は行わない)
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #filePath}
+ * <dd>サービス提供可否状態ファイルのパス。必須。
+ * <dt>{@link #defaultAvailable}
+ * <dd>ファイルに存在しないリクエストIDのサービス提供可否状態。オプション。デフォルトは{@code false}(提供不可)。
+ * <dt>{@link #remapRetryIntervalMillis}
+ * <dd>マップし直すことができなかった場合に、再度マップし直すまでの間隔(ミリ秒)。オプション。デフォルトは1000(1秒)。
+ * </dl>
+ * 本クラスは{@link Initializable}と{@link Disposable}を実装しているため、
+ * 初期化対象および廃棄対象のコンポーネントとして設定すること。
+ *
+ * @see ServiceAvailabilityFileFormat
+ */
+public class MappedFileServiceAvailability implements ServiceAvailability, Initializable, Disposable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(MappedFileServiceAvailability.class);
+
+    // ------------------------------------------------------------ structure
+    /** サービス提供可否状態ファイルのパス */
+    private String filePath;
+
+    /** ファイルに存在しないリクエストIDのサービス提供可否状態 */
+    private boolean defaultAvailable = false;
+
+    /** マップし直すことができなかった場合に、再度マップし直すまでの間隔(ミリ秒) */
+    private long remapRetryIntervalMillis = 1000L;
+
+    /** 現在マップしているファイル(初期化前と廃棄後は{@code null}) */
+    private volatile Mapping mapping;
+
+    /** 次にマップし直すことができる時刻(ミリ秒) */
+    private volatile long nextRemapAt = 0L;
+
+    // ------------------------------------------ implementation of Initializable API
+    /**
+     * サービス提供可否状態ファイルをマップする。
+     */
+    @Override
+    public synchronized void initialize() {
+        if (filePath == null) {
+            throw new IllegalStateException("filePath is null.");
+        }
+        mapping = map(Paths.get(filePath));
+        nextRemapAt = 0L;
+    }
+
+    // ------------------------------------------ implementation of Disposable API
+    /**
+     * マップしたファイルへの参照を破棄する。
+     */
+    @Override
+    public synchronized void dispose() {
+        mapping = null;
+    }
+
+    // ------------------------------------------ implementation of ServiceAvailability API
+    /**
+     * マップしたファイルを参照し、サービス提供可否状態を判定する。
+     * <br>
+     * ファイルが作成し直されていた場合は、新しいファイルをマップし直してから判定する。
+     * マップし直すことができなかった場合は、置き換えられる前のファイルで判定する。
+     *
+     * @param requestId リクエストID
+     * @return サービス提供可否状態を表すboolean （提供可の場合、TRUE）
+     */
+    @Override
+    public boolean isAvailable(String requestId) {
+        Mapping current = mapping;
+        if (current == null) {
+            throw new IllegalStateException("MappedFileServiceAvailability is not initialized.");
+        }
+        if (current.buffer.getInt(ServiceAvailabilityFileFormat.STATUS_OFFSET)
+                != ServiceAvailabilityFileFormat.STATUS_VALID
+                && currentTimeMillis() >= nextRemapAt) {
+            current = remap(current);
+        }
+        final Integer offset = current.dictionary.get(requestId);
+        if (offset == null) {
+            return defaultAvailable;
+        }
+        return current.buffer.get(offset) != ServiceAvailabilityFileFormat.UNAVAILABLE;
+    }
+
+    // ------------------------------------------------------------- helper
+    /**
+     * ファイルをマップし直す。
+     * <br>
+     * 他のスレッドが既にマップし直している場合は、その結果を返す。
+     * マップし直すことができなかった場合は、ログを出力して置き換えられたファイルのマッピングを返す。
+     *
+     * @param obsolete 置き換えられたファイルのマッピング
+     * @return 新しいファイルのマッピング(マップし直すことができなかった場合は置き換えられたファイルのマッピング)
+     */
+    private synchronized Mapping remap(Mapping obsolete) {
+        final Mapping latest = mapping;
+        if (latest != obsolete) {
+            return latest == null ? obsolete : latest;
+        }
+        final long now = currentTimeMillis();
+        if (now < nextRemapAt) {
+            return obsolete;
+        }
+        try {
+            mapping = map(obsolete.file);
+        } catch (RuntimeException e) {
+            nextRemapAt = now + remapRetryIntervalMillis;
+            LOGGER.logWarn(Builder.concat(
+                    "failed to remap service availability file. current mapping is used. file = [", obsolete.file, "]"), e);
+            return obsolete;
+        }
+        return mapping;
+    }
+
+    /**
+     * ファイルを読み取り専用でマップし、リクエストIDの辞書を読み込む。
+     *
+     * @param file ファイルのパス
+     * @return マッピング
+     */
+    private static Mapping map(Path file) {
+        final MappedByteBuffer buffer;
+        try {
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    Builder.concat("failed to map service availability file. file = [", file, "]"), e);
+        }
+        return new Mapping(file, buffer, ServiceAvailabilityFileFormat.readDictionary(buffer, file));
+    }
+
+    /**
+     * 現在時刻(ミリ秒)を取得する。
+     *
+     * @return 現在時刻(ミリ秒)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // ----------------------------------------------------------- accessors
+    /**
+     * サービス提供可否状態ファイルのパスを設定する。
+     *
+     * @param filePath サービス提供可否状態ファイルのパス
+     */
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * ファイルに存在しないリクエストIDのサービス提供可否状態を設定する。
+     *
+     * @param defaultAvailable 提供可とする場合は {@code true}
+     */
+    public void setDefaultAvailable(boolean defaultAvailable) {
+        this.defaultAvailable = defaultAvailable;
+    }
+
+    /**
+     * マップし直すことができなかった場合に、再度マップし直すまでの間隔(ミリ秒)を設定する。
+     *
+     * @param remapRetryIntervalMillis 再度マップし直すまでの間隔(ミリ秒)
+     */
+    public void setRemapRetryIntervalMillis(long remapRetryIntervalMillis) {
+        this.remapRetryIntervalMillis = remapRetryIntervalMillis;
+    }
+
+    /**
+     * マップしたファイル。
+     */
+    private static final class Mapping {
+
+        /** ファイルのパス */
+        private final Path file;
+
+        /** マップしたファイルの内容 */
+        private final MappedByteBuffer buffer;
+
+        /** リクエストIDをキー、サービス提供可否状態のオフセットを値とするマップ */
+        private final Map<String, Integer> dictionary;
+
+        /**
+         * コンストラクタ。
+         * @param file ファイルのパス
+         * @param buffer マップしたファイルの内容
+         * @param dictionary リクエストIDをキー、サービス提供可否状態のオフセットを値とするマップ
+         */
+        private Mapping(Path file, MappedByteBuffer buffer, Map<String, Integer> dictionary) {
+            this.file = file;
+            this.buffer = buffer;
+            this.dictionary = dictionary;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package nablarch.common.availability;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.util.Builder;
+
+/**
+ * {@link MappedFileServiceAvailability}が参照するサービス提供可否状態ファイルを作成、更新するクラス。
+ * <br>
+ * <br>
+ * 運用ツールや、ホスト内で代表となる1つのプロセスから使用する。
+ * 複数のプロセスから同時に更新することは想定していない。
+ *
+ * @see ServiceAvailabilityFileFormat
+ */
+public final class MappedFileServiceAvailabilityWriter {
+
+    /** 新たにファイルを作成する場合のパーミッション(全てのユーザが読み込める) */
+    private static final Set<PosixFilePermission> DEFAULT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    /**
+     * インスタンス化しない。
+     */
+    private MappedFileServiceAvailabilityWriter() {
+    }
+
+    /**
+     * 全てのリクエストIDのサービス提供可否状態からファイルを作成する。
+     * <br>
+     * 同じディレクトリに作成した一時ファイルで既存のファイルを置き換えた後、既存のファイルを置き換え済みとする。
+     * そのため、既存のファイルをマップしている{@link MappedFileServiceAvailability}は、
+     * 作成途中のファイルを参照することなく、次の判定時に新しいファイルをマップし直す。<br>
+     * POSIXのパーミッションをサポートするファイルシステムでは、既存のファイルのパーミッションを引き継ぐ。
+     * 既存のファイルが無い場合は、他のユーザで実行するプロセスからも読み込めるよう{@code rw-r--r--}とする。
+     *
+     * @param filePath ファイルのパス
+     * @param states リクエストIDをキー、サービス提供可否状態(提供可の場合は{@code true})を値とするマップ
+     */
+    public static void write(String filePath, Map<String, Boolean> states) {
+        final Path file = Paths.get(filePath).toAbsolutePath();
+        final List<byte[]> requestIds = new ArrayList<byte[]>(states.size());
+        final List<Boolean> flags = new ArrayList<Boolean>(states.size());
+        int dictionarySize = 0;
+        for (Map.Entry<String, Boolean> entry : states.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            final byte[] bytes = entry.getKey().getBytes(ServiceAvailabilityFileFormat.CHARSET);
+            if (bytes.length > ServiceAvailabilityFileFormat.MAX_REQUEST_ID_BYTES) {
+                throw new IllegalArgumentException("request id is too long. requestId = [" + entry.getKey() + "]");
+            }
+            requestIds.add(bytes);
+            flags.add(entry.getValue());
+            dictionarySize += 2 + bytes.length;
+        }
+
+        final int count = requestIds.size();
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(ServiceAvailabilityFileFormat.FLAGS_OFFSET + count + dictionarySize);
+        buffer.putInt(ServiceAvailabilityFileFormat.MAGIC);
+        buffer.putInt(ServiceAvailabilityFileFormat.FORMAT_VERSION);
+        buffer.putInt(ServiceAvailabilityFileFormat.STATUS_VALID);
+        buffer.putInt(count);
+        for (Boolean flag : flags) {
+            buffer.put(flag ? ServiceAvailabilityFileFormat.AVAILABLE : ServiceAvailabilityFileFormat.UNAVAILABLE);
+        }
+        for (byte[] bytes : requestIds) {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+        buffer.flip();
+
+        try {
+            final Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                copyPermissions(file, temporary);
+                final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                try {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                } finally {
+                    channel.close();
+                }
+                replace(temporary, file);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    Builder.concat("failed to write service availability file. file = [", file, "]"), e);
+        }
+    }
+
+    /**
+     * ファイルに含まれるリクエストIDのサービス提供可否状態を直接更新する。
+     * <br>
+     * ファイルをマップしている{@link MappedFileServiceAvailability}は、即座に更新後の状態で判定する。
+     *
+     * @param filePath ファイルのパス
+     * @param requestId リクエストID
+     * @param available 提供可とする場合は {@code true}
+     * @return 更新した場合は {@code true}(リクエストIDがファイルに含まれていない場合は {@code false})
+     */
+    public static boolean setAvailable(String filePath, String requestId, boolean available) {
+        final Path file = Paths.get(filePath).toAbsolutePath();
+        try {
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                final Integer offset = ServiceAvailabilityFileFormat.readDictionary(buffer, file).get(requestId);
+                if (offset == null) {
+                    return false;
+                }
+                buffer.put(offset,
+                        available ? ServiceAvailabilityFileFormat.AVAILABLE : ServiceAvailabilityFileFormat.UNAVAILABLE);
+                buffer.force();
+                return true;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    Builder.concat("failed to update service availability file. file = [", file, "]"), e);
+        }
+    }
+
+    /**
+     * 既存のファイルのパーミッションを一時ファイルに設定する。
+     * <br>
+     * 一時ファイルは作成したユーザのみが読み書きできるパーミッションで作成されるため、
+     * そのまま置き換えると他のユーザで実行するプロセスがファイルを開けなくなる。
+     * POSIXのパーミッションをサポートしないファイルシステムの場合は何もしない。
+     *
+     * @param file 既存のファイル
+     * @param temporary 一時ファイル
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    private static void copyPermissions(Path file, Path temporary) throws IOException {
+        if (Files.getFileAttributeView(temporary, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(file);
+        } catch (NoSuchFileException e) {
+            permissions = DEFAULT_PERMISSIONS;
+        }
+        Files.setPosixFilePermissions(temporary, permissions);
+    }
+
+    /**
+     * 一時ファイルで既存のファイルを置き換え、既存のファイルを置き換え済みとする。
+     * <br>
+     * 既存のファイルは置き換える前に開いておき、置き換えた後で状態を更新する。
+     * そのため、置き換え済みとなったファイルを参照したプロセスがパスを開き直すと、必ず新しいファイルを参照する。
+     *
+     * @param temporary 一時ファイル
+     * @param file 置き換えるファイル
+     * @throws IOException 入出力エラーが発生した場合
+     */
+    private static void replace(Path temporary, Path file) throws IOException {
+        FileChannel existing;
+        try {
+            existing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            existing = null;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (existing != null && existing.size() >= ServiceAvailabilityFileFormat.FLAGS_OFFSET) {
+                final ByteBuffer status = ByteBuffer.allocate(4);
+                status.putInt(0, ServiceAvailabilityFileFormat.STATUS_OBSOLETE);
+                existing.write(status, ServiceAvailabilityFileFormat.STATUS_OFFSET);
+                existing.force(true);
+            }
+        } finally {
+            if (existing != null) {
+                existing.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package nablarch.common.availability;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * サービス提供可否状態が変更されたことを検知するインタフェース。
+ * <p>
+ * {@link SnapshotServiceAvailability}は、定期的な読み込みのタイミングで{@link #hasChanged()}を呼び出し、
+ * 変更が検知された場合のみスナップショットを読み込み直す。<br>
+ * そのため、本インタフェースの実装は、全てのリクエストIDの状態を読み込むより十分に軽量であること。
+ * (例えば、状態を変更する度に更新されるバージョン番号のみを取得し、前回取得した値と比較する)
+ * </p>
+ * @see SnapshotServiceAvailability
+ * @see FileServiceAvailabilityChangeDetector
+ */
+@Published(tag = "architect")
+public interface ServiceAvailabilityChangeDetector {
+
+    /**
+     * 前回呼び出した時点から、サービス提供可否状態が変更されたか否かを判定する。
+     * <p>
+     * 一度{@code true}を返した変更について、次回以降の呼び出しで再度{@code true}を返す必要はない。
+     * </p>
+     *
+     * @return 変更された場合は {@code true}
+     */
+    boolean hasChanged();
+}
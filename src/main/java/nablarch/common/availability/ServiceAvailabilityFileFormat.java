@@ -0,0 +1,108 @@
+package nablarch.common.availability;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MappedFileServiceAvailability}が参照するサービス提供可否状態ファイルの形式。
+ * <p>
+ * ファイルは以下の順に構成する。数値はビッグエンディアンとする。
+ * </p>
+ * <pre>
+ * オフセット  サイズ  内容
+ *  0         4      マジックナンバー({@link #MAGIC})
+ *  4         4      形式のバージョン({@link #FORMAT_VERSION})
+ *  8         4      ファイルの状態({@link #STATUS_VALID}または{@link #STATUS_OBSOLETE})
+ * 12         4      リクエストIDの数(N)
+ * 16         N      リクエストID毎のサービス提供可否状態(提供可の場合は1、提供不可の場合は0)
+ * 16+N       可変   リクエストIDの辞書(UTF-8で符号化したバイト数(2バイト、符号なし)とバイト列をN個並べたもの)
+ * </pre>
+ * <p>
+ * サービス提供可否状態はリクエストIDの辞書における出現順に並べる。
+ * 辞書はファイルを作成し直す場合のみ変更し、サービス提供可否状態はファイルを直接更新する。<br>
+ * ファイルを作成し直す場合は、新しいファイルに置き換えた後で、古いファイルの状態を{@link #STATUS_OBSOLETE}に更新する。
+ * </p>
+ */
+final class ServiceAvailabilityFileFormat {
+
+    /** マジックナンバー("NAVL") */
+    static final int MAGIC = 0x4E41564C;
+
+    /** 形式のバージョン */
+    static final int FORMAT_VERSION = 1;
+
+    /** ファイルの状態(有効) */
+    static final int STATUS_VALID = 0;
+
+    /** ファイルの状態(新しいファイルに置き換えられた) */
+    static final int STATUS_OBSOLETE = 1;
+
+    /** ファイルの状態のオフセット */
+    static final int STATUS_OFFSET = 8;
+
+    /** リクエストIDの数のオフセット */
+    static final int COUNT_OFFSET = 12;
+
+    /** サービス提供可否状態のオフセット */
+    static final int FLAGS_OFFSET = 16;
+
+    /** 提供可を表す値 */
+    static final byte AVAILABLE = 1;
+
+    /** 提供不可を表す値 */
+    static final byte UNAVAILABLE = 0;
+
+    /** リクエストIDの符号化に使用する文字セット */
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** 辞書に格納できるリクエストIDのバイト数の上限 */
+    static final int MAX_REQUEST_ID_BYTES = 0xFFFF;
+
+    /**
+     * インスタンス化しない。
+     */
+    private ServiceAvailabilityFileFormat() {
+    }
+
+    /**
+     * ヘッダを検証し、リクエストIDの辞書を読み込む。
+     *
+     * @param buffer ファイルの内容
+     * @param file ファイルのパス(例外のメッセージに使用する)
+     * @return リクエストIDをキー、サービス提供可否状態のオフセットを値とするマップ
+     * @throws IllegalStateException ファイルの形式が不正な場合
+     */
+    static Map<String, Integer> readDictionary(ByteBuffer buffer, Object file) {
+        if (buffer.limit() < FLAGS_OFFSET || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("invalid service availability file. file = [" + file + "]");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("unsupported service availability file version. "
+                    + "file = [" + file + "], version = [" + buffer.getInt(4) + "]");
+        }
+        final int count = buffer.getInt(COUNT_OFFSET);
+        // リクエストID毎に、状態(1バイト)と辞書のバイト数(2バイト)が少なくとも必要となる
+        if (count < 0 || (long) count * 3 > buffer.limit() - FLAGS_OFFSET) {
+            throw new IllegalStateException("invalid request id count in service availability file. "
+                    + "file = [" + file + "], count = [" + count + "]");
+        }
+        final Map<String, Integer> dictionary = new HashMap<String, Integer>(count * 4 / 3 + 1);
+        try {
+            int position = FLAGS_OFFSET + count;
+            for (int i = 0; i < count; i++) {
+                final int length = buffer.getShort(position) & 0xFFFF;
+                final byte[] bytes = new byte[length];
+                for (int j = 0; j < length; j++) {
+                    bytes[j] = buffer.get(position + 2 + j);
+                }
+                dictionary.put(new String(bytes, CHARSET), FLAGS_OFFSET + i);
+                position += 2 + length;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalStateException("invalid service availability file. file = [" + file + "]", e);
+        }
+        return dictionary;
+    }
+}
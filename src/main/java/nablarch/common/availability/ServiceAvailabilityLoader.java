@@ -0,0 +1,26 @@
+package nablarch.common.availability;
+
+import nablarch.core.util.annotation.Published;
+
+import java.util.Map;
+
+/**
+ * 全てのリクエストIDのサービス提供可否状態を読み込むインタフェース。
+ * <p>
+ * {@link SnapshotServiceAvailability}がサービス提供可否状態のスナップショットを作成する際に使用する。
+ * </p>
+ * @see SnapshotServiceAvailability
+ */
+@Published(tag = "architect")
+public interface ServiceAvailabilityLoader {
+
+    /**
+     * 全てのリクエストIDのサービス提供可否状態を読み込む。
+     * <p>
+     * キーには、末尾に{@code "*"}を付けた前方一致のパターンを含めてよい。
+     * </p>
+     *
+     * @return リクエストID(またはそのパターン)をキー、サービス提供可否状態(提供可の場合は{@code true})を値とするマップ
+     */
+    Map<String, Boolean> load();
+}
@@ -0,0 +1,297 @@
+package nablarch.common.availability;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * 全てのリクエストIDのサービス提供可否状態をメモリ上のスナップショットとして保持する{@link ServiceAvailability}。
+ * <br>
+ * <br>
+ * {@link ServiceAvailabilityCheckHandler}はリクエスト毎に{@link ServiceAvailability#isAvailable(String)}を呼び出すため、
+ * データベースなどからサービス提供可否状態を取得する実装をそのまま使用すると、リクエスト毎に取得処理が行われる。<br>
+ * 本クラスは、{@link ServiceAvailabilityLoader}で読み込んだ全てのリクエストIDの状態を変更不可のスナップショットとして保持し、
+ * 判定時はスナップショットを参照するのみとする。
+ * スナップショットは定期的に読み込み直し、読み込みが完了した時点で参照先を差し替えるため、判定時にロックを取得することはない。<br>
+ * 読み込みに失敗した場合は、ログを出力して現在のスナップショットを使用し続ける。
+ * <br>
+ * <br>
+ * {@link ServiceAvailabilityLoader}が返すキーには、リクエストIDの他に、末尾に{@code "*"}を付けた前方一致のパターンを指定できる。
+ * (例えば{@code "RW2*"}に{@code false}を指定すると、{@code "RW2"}で始まる全てのリクエストIDが提供不可となる)<br>
+ * 複数のパターンに一致する場合は、リクエストIDそのものを指定したものを優先し、次に最も長い前方一致のパターンを優先する。
+ * パターンは読み込み時にトライ木に変換するため、判定に要する時間はパターン数によらず、リクエストIDの長さに比例する。
+ * <br>
+ * <br>
+ * {@link #changeDetector}を設定した場合、定期的な読み込みのタイミングでは変更の有無のみを確認し、
+ * 変更が検知された場合のみスナップショットを読み込み直す。
+ * サービス提供可否状態の変更が稀な場合は、読み込みの間隔を短くしても全件の読み込みはほとんど発生しない。<br>
+ * また、サービス提供可否状態の変更を通知する仕組みがある場合は、通知を受けた際に{@link #requestRefresh()}を呼び出すことで、
+ * 次の確認を待たずにスナップショットを読み込み直すことができる。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #serviceAvailabilityLoader}
+ * <dd>サービス提供可否状態を読み込む{@link ServiceAvailabilityLoader}。必須。
+ * <dt>{@link #refreshIntervalMillis}
+ * <dd>スナップショットを読み込み直す間隔(ミリ秒)。オプション。デフォルトは60000(1分)。<br>
+ *     {@link #changeDetector}を設定した場合は、変更の有無を確認する間隔となる。
+ *     0以下を指定した場合は、定期的な読み込みを行わない。
+ * <dt>{@link #changeDetector}
+ * <dd>サービス提供可否状態の変更を検知する{@link ServiceAvailabilityChangeDetector}。オプション。<br>
+ *     設定しない場合は、{@link #refreshIntervalMillis}毎に必ずスナップショットを読み込み直す。<br>
+ *     初期化が必要な{@link ServiceAvailabilityChangeDetector}は、本クラスより前に初期化すること。
+ *     初期化されていない場合は、本クラスの初期化時に{@link ServiceAvailabilityChangeDetector}がスローした例外をそのままスローする。
+ * <dt>{@link #defaultAvailable}
+ * <dd>スナップショットに存在しないリクエストIDのサービス提供可否状態。オプション。デフォルトは{@code false}(提供不可)。
+ * </dl>
+ * 本クラスは{@link Initializable}と{@link Disposable}を実装しているため、
+ * 初期化対象および廃棄対象のコンポーネントとして設定すること。
+ * 初期化時の読み込みに失敗した場合は、例外をスローしてアプリケーションの起動を中断する。
+ */
+public class SnapshotServiceAvailability implements ServiceAvailability, Initializable, Disposable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(SnapshotServiceAvailability.class);
+
+    // ------------------------------------------------------------ structure
+    /** サービス提供可否状態を読み込む{@link ServiceAvailabilityLoader} */
+    private ServiceAvailabilityLoader serviceAvailabilityLoader;
+
+    /** スナップショットを読み込み直す間隔(ミリ秒) */
+    private long refreshIntervalMillis = 60 * 1000L;
+
+    /** サービス提供可否状態の変更を検知する{@link ServiceAvailabilityChangeDetector}(検知しない場合は{@code null}) */
+    private ServiceAvailabilityChangeDetector changeDetector;
+
+    /** スナップショットに存在しないリクエストIDのサービス提供可否状態 */
+    private boolean defaultAvailable = false;
+
+    /** スナップショットの読み込みを直列化するためのロック */
+    private final Object refreshLock = new Object();
+
+    /** 変更の有無に関わらず、次の確認でスナップショットを読み込み直すか否か */
+    private final AtomicBoolean refreshRequested = new AtomicBoolean(false);
+
+    /** スナップショットを読み込み直す処理 */
+    private final Runnable refreshTask = new Runnable() {
+        @Override
+        public void run() {
+            refreshIfChanged();
+        }
+    };
+
+    /** 現在のスナップショット(初期化前は{@code null}) */
+    private volatile Snapshot snapshot;
+
+    /** スナップショットを定期的に読み込み直すスレッド(定期的な読み込みを行わない場合は{@code null}) */
+    private ScheduledExecutorService refreshExecutor;
+
+    // ------------------------------------------ implementation of Initializable API
+    /**
+     * スナップショットを読み込み、定期的な読み込みを開始する。
+     */
+    @Override
+    public synchronized void initialize() {
+        if (serviceAvailabilityLoader == null) {
+            throw new IllegalStateException("ServiceAvailabilityLoader is null.");
+        }
+        if (changeDetector != null) {
+            // 初期化前の変更は、これから読み込むスナップショットに反映されるため破棄する
+            changeDetector.hasChanged();
+        }
+        refresh();
+
+        if (refreshIntervalMillis > 0 && refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(new RefreshThreadFactory());
+            refreshExecutor.scheduleWithFixedDelay(
+                    refreshTask, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // ------------------------------------------ implementation of Disposable API
+    /**
+     * 定期的な読み込みを停止する。
+     */
+    @Override
+    public synchronized void dispose() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    // ------------------------------------------ implementation of ServiceAvailability API
+    /**
+     * スナップショットを参照し、サービス提供可否状態を判定する。
+     *
+     * @param requestId リクエストID
+     * @return サービス提供可否状態を表すboolean （提供可の場合、TRUE）
+     */
+    @Override
+    public boolean isAvailable(String requestId) {
+        final Boolean available = getSnapshot().rules.find(requestId);
+        return available == null ? defaultAvailable : available;
+    }
+
+    // ------------------------------------------------------------- snapshot
+    /**
+     * サービス提供可否状態を読み込み、スナップショットを差し替える。
+     * <br>
+     * 読み込みに失敗した場合や、読み込んだパターンが不正な場合は例外をスローし、スナップショットは差し替えない。
+     * 読み込みは同時に1つのみ行うため、先に開始した読み込みの結果が、後から開始した読み込みの結果を上書きすることはない。
+     */
+    public void refresh() {
+        synchronized (refreshLock) {
+            final long loadedAt = currentTimeMillis();
+            snapshot = new Snapshot(new AvailabilityRuleTrie(serviceAvailabilityLoader.load()), loadedAt);
+        }
+    }
+
+    /**
+     * 変更の有無に関わらず、スナップショットを読み込み直すよう要求する。
+     * <br>
+     * 定期的な読み込みを行っている場合は、読み込みを行うスレッドで直ちに読み込み直す。
+     * 行っていない場合は、呼び出し元のスレッドで読み込み直す。
+     * いずれの場合も、読み込みに失敗した場合はログを出力し、次の確認のタイミングで再度読み込みを試みる。
+     */
+    public void requestRefresh() {
+        refreshRequested.set(true);
+        synchronized (this) {
+            if (refreshExecutor != null) {
+                refreshExecutor.execute(refreshTask);
+                return;
+            }
+        }
+        refreshIfChanged();
+    }
+
+    /**
+     * 読み込み直すよう要求されている場合、または変更が検知された場合に、スナップショットを読み込み直す。
+     * <br>
+     * 読み込みに失敗した場合はログを出力し、次の確認のタイミングで再度読み込みを試みる。
+     */
+    private void refreshIfChanged() {
+        final boolean requested = refreshRequested.getAndSet(false);
+        try {
+            if (requested || changeDetector == null || changeDetector.hasChanged()) {
+                refresh();
+            }
+        } catch (RuntimeException e) {
+            refreshRequested.set(true);
+            LOGGER.logWarn("failed to refresh service availability snapshot. current snapshot is used.", e);
+        }
+    }
+
+    /**
+     * 現在のスナップショットを読み込んでからの経過時間(ミリ秒)を取得する。
+     *
+     * @return スナップショットを読み込んでからの経過時間(ミリ秒)
+     */
+    public long getSnapshotAgeMillis() {
+        return currentTimeMillis() - getSnapshot().loadedAt;
+    }
+
+    /**
+     * 現在のスナップショットを取得する。
+     *
+     * @return 現在のスナップショット
+     */
+    private Snapshot getSnapshot() {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("SnapshotServiceAvailability is not initialized.");
+        }
+        return current;
+    }
+
+    /**
+     * 現在時刻(ミリ秒)を取得する。
+     *
+     * @return 現在時刻(ミリ秒)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // ----------------------------------------------------------- accessors
+    /**
+     * サービス提供可否状態を読み込む{@link ServiceAvailabilityLoader}を設定する。
+     *
+     * @param serviceAvailabilityLoader {@link ServiceAvailabilityLoader}
+     */
+    public void setServiceAvailabilityLoader(ServiceAvailabilityLoader serviceAvailabilityLoader) {
+        this.serviceAvailabilityLoader = serviceAvailabilityLoader;
+    }
+
+    /**
+     * スナップショットを読み込み直す間隔(ミリ秒)を設定する。
+     *
+     * @param refreshIntervalMillis スナップショットを読み込み直す間隔(ミリ秒)
+     */
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * サービス提供可否状態の変更を検知する{@link ServiceAvailabilityChangeDetector}を設定する。
+     *
+     * @param changeDetector {@link ServiceAvailabilityChangeDetector}
+     */
+    public void setChangeDetector(ServiceAvailabilityChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+    }
+
+    /**
+     * スナップショットに存在しないリクエストIDのサービス提供可否状態を設定する。
+     *
+     * @param defaultAvailable 提供可とする場合は {@code true}
+     */
+    public void setDefaultAvailable(boolean defaultAvailable) {
+        this.defaultAvailable = defaultAvailable;
+    }
+
+    /**
+     * サービス提供可否状態のスナップショット。
+     */
+    private static final class Snapshot {
+
+        /** リクエストIDのパターン毎のサービス提供可否状態 */
+        private final AvailabilityRuleTrie rules;
+
+        /** 読み込みを開始した時刻(ミリ秒) */
+        private final long loadedAt;
+
+        /**
+         * コンストラクタ。
+         * @param rules リクエストIDのパターン毎のサービス提供可否状態
+         * @param loadedAt 読み込みを開始した時刻(ミリ秒)
+         */
+        private Snapshot(AvailabilityRuleTrie rules, long loadedAt) {
+            this.rules = rules;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * スナップショットを読み込み直すスレッドを生成する{@link ThreadFactory}。
+     * <br>
+     * アプリケーションの終了を妨げないよう、デーモンスレッドを生成する。
+     */
+    private static final class RefreshThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "service-availability-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package nablarch.common.permission;
+
+import java.util.Collection;
+import java.util.Map;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 複数ユーザの{@link Permission}を一括で生成できる{@link PermissionFactory}。
+ * <br>
+ * 認可情報の取得先が一括取得に対応している場合(1回のSQLで複数ユーザの認可情報を取得できる場合など)に
+ * 本インタフェースを実装する。{@link CachingPermissionFactory#preload(Collection)}は、
+ * 委譲先が本インタフェースを実装している場合に一括で取得する。
+ *
+ * @see PermissionCacheWarmer
+ */
+@Published(tag = "architect")
+public interface BatchPermissionFactory extends PermissionFactory {
+
+    /**
+     * 複数ユーザの{@link Permission}を一括で取得する。
+     *
+     * @param userIds ユーザIDの一覧
+     * @return ユーザIDをキーとした{@link Permission}(認可情報が存在しないユーザは含まなくてよい)
+     */
+    Map<String, Permission> getPermissions(Collection<String> userIds);
+}
@@ -0,0 +1,72 @@
+package nablarch.common.permission;
+
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * ユーザに許可されたリクエストIDをビット列で保持する{@link Permission}の実装クラス。<br>
+ * <br>
+ * リクエストIDは、全ユーザで共有する{@link RequestIdDictionary}によって連番に変換し、
+ * 連番に対応するビットで許可の有無を表す。<br>
+ * {@link BasicPermission}と比べ、ユーザ毎に必要なメモリはリクエストID1件あたり約1ビットとなり、
+ * 認可判定はリクエストIDの数によらず一定の時間で行える。<br>
+ * <br>
+ * インスタンスは{@link RequestIdDictionary#createPermission(java.util.Collection)}で生成する。
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ *
+ * @see RequestIdDictionary
+ */
+public final class BitSetPermission implements Permission {
+
+    /** リクエストIDと連番の対応を保持する辞書 */
+    private final RequestIdDictionary dictionary;
+
+    /** 許可されたリクエストIDの連番に対応するビットを立てたビット列 */
+    private final long[] words;
+
+    /**
+     * コンストラクタ。
+     * @param dictionary リクエストIDと連番の対応を保持する辞書
+     * @param words 許可されたリクエストIDの連番に対応するビットを立てたビット列
+     */
+    BitSetPermission(RequestIdDictionary dictionary, long[] words) {
+        this.dictionary = dictionary;
+        this.words = words;
+    }
+
+    /**
+     * リクエストIDを認可判定する。
+     *
+     * @param requestId リクエストID
+     * @return 認可に成功した場合は<code>true</code>、認可に失敗した場合は<code>false</code>
+     */
+    public boolean permit(String requestId) {
+        final int index = dictionary.indexOf(requestId);
+        if (index < 0) {
+            return false;
+        }
+        final int wordIndex = index >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << index)) != 0L;
+    }
+
+    /**
+     * ユーザに許可されたリクエストIDを取得する。<br>
+     * <br>
+     * 呼び出しの都度ビット列から生成するため、認可判定には{@link #permit(String)}を使用すること。
+     *
+     * @return ユーザに許可されたリクエストID(変更不可)
+     */
+    public SortedSet<String> getRequestIds() {
+        final SortedSet<String> requestIds = new TreeSet<String>();
+        for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+            long word = words[wordIndex];
+            while (word != 0L) {
+                final int bit = Long.numberOfTrailingZeros(word);
+                requestIds.add(dictionary.getRequestId((wordIndex << 6) + bit));
+                word &= word - 1;
+            }
+        }
+        return Collections.unmodifiableSortedSet(requestIds);
+    }
+}
@@ -0,0 +1,629 @@
+package nablarch.common.permission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.util.Builder;
+
+/**
+ * 委譲先の{@link PermissionFactory}が生成した{@link Permission}をユーザ毎にキャッシュする{@link PermissionFactory}。
+ * <br>
+ * <br>
+ * {@link PermissionCheckHandler}はリクエスト毎に{@link PermissionFactory#getPermission(String)}を呼び出すため、
+ * データベースなどから認可情報を取得する{@link PermissionFactory}をそのまま使用すると、
+ * リクエスト毎に認可情報の取得処理が行われる。<br>
+ * 本クラスを経由させることで、一度取得した{@link Permission}をメモリ上に保持し、委譲先の呼び出しを削減する。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #permissionFactory}
+ * <dd>{@link Permission}を生成する委譲先の{@link PermissionFactory}。必須。
+ * <dt>{@link #maxEntries}
+ * <dd>キャッシュするユーザ数の上限。オプション。デフォルトは1000。<br>
+ *     上限を超えた場合は、参照されていない期間が長いユーザから順に、上限の1割程度をまとめて破棄する。
+ * <dt>{@link #expireAfterWriteMillis}
+ * <dd>取得した{@link Permission}の有効期間(ミリ秒)。オプション。デフォルトは300000(5分)。<br>
+ *     0以下を指定した場合は、有効期間による破棄を行わない。
+ * <dt>{@link #refreshAfterWriteMillis}
+ * <dd>取得した{@link Permission}を再取得するまでの期間(ミリ秒)。オプション。デフォルトは0(再取得しない)。<br>
+ *     この期間を過ぎたユーザは、次に参照されたタイミングで委譲先から再取得する。
+ *     再取得に失敗した場合は、有効期間内であればキャッシュ済みの{@link Permission}を返す。
+ * <dt>{@link #asyncRefresh}
+ * <dd>再取得をバックグラウンドで行うか否か。オプション。デフォルトは{@code false}。<br>
+ *     {@code true}を指定した場合、再取得期間を過ぎたユーザにはキャッシュ済みの{@link Permission}をそのまま返し、
+ *     再取得はバックグラウンドのスレッドで行う。有効期間を過ぎたユーザは、従来通り呼び出し元のスレッドで取得する。
+ * <dt>{@link #refreshThreadCount}
+ * <dd>バックグラウンドで再取得を行うスレッド数。オプション。デフォルトは1。
+ * <dt>{@link #refreshQueueCapacity}
+ * <dd>再取得待ちのユーザ数の上限。オプション。デフォルトは100。<br>
+ *     上限を超えた場合、そのユーザの再取得は行わず、次に参照されたタイミングで改めて再取得を依頼する。
+ * </dl>
+ * 同一ユーザに対する取得が同時に要求された場合、委譲先の呼び出しは1回のみ行い、その結果を共有する。
+ * ただし、キャッシュの破棄後に要求された取得は、破棄前に開始した取得の結果を共有せずに改めて委譲先から取得する。
+ * <br>
+ * キャッシュの参照時にはロックを取得しないため、多数のスレッドから同時に参照しても待ち合わせは発生しない。
+ * ロックはキャッシュへの格納と破棄の場合のみ取得する。
+ * <br>
+ * アプリケーションの起動時などに、あらかじめキャッシュへ格納しておく場合は{@link #preload(Collection)}を使用する。
+ * <br>
+ * 権限の付与や剥奪を行った場合は、{@link #invalidate(String)}または{@link #invalidateAll()}を呼び出し、
+ * キャッシュを破棄すること。
+ */
+public class CachingPermissionFactory implements PermissionFactory, Disposable {
+
+    // ------------------------------------------------------------ structure
+    /** {@link Permission}を生成する委譲先の{@link PermissionFactory} */
+    private PermissionFactory permissionFactory;
+
+    /** キャッシュするユーザ数の上限 */
+    private int maxEntries = 1000;
+
+    /** 取得した{@link Permission}の有効期間(ミリ秒) */
+    private long expireAfterWriteMillis = 5 * 60 * 1000L;
+
+    /** 取得した{@link Permission}を再取得するまでの期間(ミリ秒) */
+    private long refreshAfterWriteMillis = 0L;
+
+    /** 再取得をバックグラウンドで行うか否か */
+    private boolean asyncRefresh = false;
+
+    /** バックグラウンドで再取得を行うスレッド数 */
+    private int refreshThreadCount = 1;
+
+    /** 再取得待ちのユーザ数の上限 */
+    private int refreshQueueCapacity = 100;
+
+    /** バックグラウンドで再取得を行うスレッドプール(初回の再取得時に生成する) */
+    private ThreadPoolExecutor refreshExecutor;
+
+    /** 取得中のユーザとキャッシュの世代毎の取得処理。同一ユーザの取得を1回にまとめるために使用する。 */
+    private final ConcurrentMap<LoadingKey, FutureTask<Permission>> loadings =
+            new ConcurrentHashMap<LoadingKey, FutureTask<Permission>>();
+
+    /** ユーザIDをキーとしたキャッシュ(ユーザIDが{@code null}の場合は{@link #NULL_USER_ID_KEY}をキーとする) */
+    private final ConcurrentMap<Object, CacheEntry> cache = new ConcurrentHashMap<Object, CacheEntry>();
+
+    /** キャッシュへの格納と破棄を直列化するためのロック */
+    private final Object writeLock = new Object();
+
+    /**
+     * キャッシュの世代。
+     * <br>
+     * キャッシュを破棄する度に更新し、破棄前に開始した取得処理の結果がキャッシュに格納されることを防ぐ。
+     * 更新は{@link #writeLock}を取得して行う。
+     */
+    private volatile long generation = 0L;
+
+    // ------------------------------------------ implementation of PermissionFactory API
+    /**
+     * {@link Permission}を取得する。
+     * <br>
+     * キャッシュに有効な{@link Permission}が存在する場合はそれを返し、
+     * 存在しない場合は委譲先の{@link PermissionFactory}から取得してキャッシュする。
+     *
+     * @param userId ユーザID
+     * @return {@link Permission}
+     */
+    public Permission getPermission(String userId) {
+        checkPermissionFactoryIsNotNull();
+
+        final long now = currentTimeMillis();
+        final long currentGeneration = generation;
+        final CacheEntry entry = cache.get(toCacheKey(userId));
+
+        if (entry == null || entry.isExpired(now)) {
+            return load(userId, currentGeneration, now);
+        }
+        entry.touch();
+        if (!entry.needsRefresh(now)) {
+            return entry.permission;
+        }
+        if (asyncRefresh) {
+            refreshInBackground(userId, currentGeneration, now);
+            return entry.permission;
+        }
+        try {
+            return load(userId, currentGeneration, now);
+        } catch (RuntimeException e) {
+            LOGGER.logWarn(Builder.concat(
+                    "failed to refresh permission. cached permission is used. userId = [", userId, "]"), e);
+            return entry.permission;
+        }
+    }
+
+    /**
+     * 指定されたユーザの{@link Permission}を委譲先から取得し、キャッシュに格納する。
+     * <br>
+     * 委譲先が{@link BatchPermissionFactory}を実装している場合は、一括で取得する。
+     * そうでない場合は、ユーザ毎に取得する。
+     * ユーザ毎の取得に失敗した場合は、ワーニングログを出力して残りのユーザの取得を続ける。
+     * 取得に失敗したユーザは、次に参照されたタイミングで改めて委譲先から取得する。
+     *
+     * @param userIds ユーザIDの一覧
+     */
+    public void preload(Collection<String> userIds) {
+        checkPermissionFactoryIsNotNull();
+
+        final long now = currentTimeMillis();
+        final long startGeneration = generation;
+
+        if (!(permissionFactory instanceof BatchPermissionFactory)) {
+            for (String userId : userIds) {
+                try {
+                    load(userId, startGeneration, now);
+                } catch (RuntimeException e) {
+                    LOGGER.logWarn(Builder.concat(
+                            "failed to preload permission. userId = [", userId, "]"), e);
+                }
+            }
+            return;
+        }
+
+        final Map<String, Permission> permissions =
+                ((BatchPermissionFactory) permissionFactory).getPermissions(userIds);
+        synchronized (writeLock) {
+            if (startGeneration != generation) {
+                return;
+            }
+            for (Map.Entry<String, Permission> permission : permissions.entrySet()) {
+                if (permission.getValue() != null) {
+                    cache.put(toCacheKey(permission.getKey()), new CacheEntry(permission.getValue(), now));
+                }
+            }
+            evictIfNecessary();
+        }
+    }
+
+    // ------------------------------------------ implementation of Disposable API
+    /**
+     * バックグラウンドで再取得を行うスレッドプールを停止する。
+     */
+    @Override
+    public synchronized void dispose() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    // ------------------------------------------------------------- invalidation
+    /**
+     * 指定されたユーザのキャッシュを破棄する。
+     * <br>
+     * 次にそのユーザの{@link Permission}が要求された際は、委譲先の{@link PermissionFactory}から取得する。
+     *
+     * @param userId ユーザID
+     */
+    public void invalidate(String userId) {
+        synchronized (writeLock) {
+            cache.remove(toCacheKey(userId));
+            generation++;
+        }
+    }
+
+    /**
+     * 全てのユーザのキャッシュを破棄する。
+     */
+    public void invalidateAll() {
+        synchronized (writeLock) {
+            cache.clear();
+            generation++;
+        }
+    }
+
+    // ------------------------------------------------------------- helper
+    /**
+     * 委譲先の{@link PermissionFactory}から{@link Permission}を取得し、キャッシュに格納する。
+     * <br>
+     * 同一ユーザの取得が同じ世代で既に行われている場合は、新たに取得せずにその結果を待ち合わせる。
+     *
+     * @param userId ユーザID
+     * @param startGeneration 取得開始時点のキャッシュの世代
+     * @param now 取得開始時点の時刻
+     * @return 取得した{@link Permission}
+     */
+    private Permission load(String userId, long startGeneration, long now) {
+        final LoadingKey key = new LoadingKey(userId, startGeneration);
+        final FutureTask<Permission> task = new FutureTask<Permission>(new LoadTask(userId, startGeneration, now));
+        final FutureTask<Permission> running = loadings.putIfAbsent(key, task);
+        if (running != null) {
+            return getResult(running);
+        }
+        try {
+            task.run();
+        } finally {
+            loadings.remove(key, task);
+        }
+        return getResult(task);
+    }
+
+    /**
+     * バックグラウンドのスレッドで{@link Permission}を再取得する。
+     * <br>
+     * 同一ユーザの取得が同じ世代で既に行われている場合や、再取得待ちのユーザ数が上限に達している場合は何もしない。
+     *
+     * @param userId ユーザID
+     * @param startGeneration 再取得依頼時点のキャッシュの世代
+     * @param now 再取得依頼時点の時刻
+     */
+    private void refreshInBackground(final String userId, long startGeneration, long now) {
+        final LoadingKey key = new LoadingKey(userId, startGeneration);
+        final FutureTask<Permission> task = new FutureTask<Permission>(new LoadTask(userId, startGeneration, now));
+        if (loadings.putIfAbsent(key, task) != null) {
+            return;
+        }
+        try {
+            getRefreshExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                        getResult(task);
+                    } catch (RuntimeException e) {
+                        LOGGER.logWarn(Builder.concat(
+                                "failed to refresh permission in background. userId = [", userId, "]"), e);
+                    } finally {
+                        loadings.remove(key, task);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loadings.remove(key, task);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.logDebug(Builder.concat(
+                        "refresh of permission is skipped because refresh queue is full. userId = [", userId, "]"));
+            }
+        }
+    }
+
+    /**
+     * キャッシュしているユーザ数が上限を超えている場合に、参照されていない期間が長いユーザから破棄する。
+     * <br>
+     * 破棄の度に全てのエントリを並べ替えることを避けるため、上限の1割程度をまとめて破棄する。
+     * 呼び出し元で{@link #writeLock}を取得していること。
+     */
+    private void evictIfNecessary() {
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+        final List<Map.Entry<Object, CacheEntry>> entries = new ArrayList<Map.Entry<Object, CacheEntry>>(cache.entrySet());
+        Collections.sort(entries, LEAST_RECENTLY_ACCESSED_FIRST);
+        final int retained = maxEntries - maxEntries / 10;
+        for (int i = 0; i < entries.size() - retained; i++) {
+            cache.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+
+    /**
+     * キャッシュのキーに変換する。
+     * <br>
+     * {@link ConcurrentHashMap}は{@code null}をキーにできないため、ユーザIDが{@code null}の場合は専用のキーを使用する。
+     *
+     * @param userId ユーザID
+     * @return キー
+     */
+    private static Object toCacheKey(String userId) {
+        return userId == null ? NULL_USER_ID_KEY : userId;
+    }
+
+    /**
+     * 取得処理の結果を待ち合わせて返す。
+     *
+     * @param task 取得処理
+     * @return 取得した{@link Permission}
+     */
+    private static Permission getResult(FutureTask<Permission> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for permission to be loaded.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * バックグラウンドで再取得を行うスレッドプールを取得する。
+     *
+     * @return スレッドプール
+     */
+    private synchronized ThreadPoolExecutor getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = new ThreadPoolExecutor(
+                    refreshThreadCount, refreshThreadCount, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(refreshQueueCapacity),
+                    new RefreshThreadFactory());
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * 現在時刻(ミリ秒)を取得する。
+     *
+     * @return 現在時刻(ミリ秒)
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 委譲先の{@link PermissionFactory}が設定されていることを検証する。
+     */
+    private void checkPermissionFactoryIsNotNull() {
+        if (permissionFactory == null) {
+            throw new IllegalStateException("PermissionFactory is null.");
+        }
+    }
+
+    /**
+     * 委譲先の{@link PermissionFactory}から{@link Permission}を取得し、キャッシュに格納する処理。
+     * <br>
+     * 取得中にキャッシュが破棄された場合、取得した{@link Permission}はキャッシュに格納しない。
+     */
+    private final class LoadTask implements Callable<Permission> {
+
+        /** ユーザID */
+        private final String userId;
+
+        /** 取得開始時点のキャッシュの世代 */
+        private final long startGeneration;
+
+        /** 取得開始時点の時刻(ミリ秒) */
+        private final long startedAt;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param startGeneration 取得開始時点のキャッシュの世代
+         * @param startedAt 取得開始時点の時刻(ミリ秒)
+         */
+        private LoadTask(String userId, long startGeneration, long startedAt) {
+            this.userId = userId;
+            this.startGeneration = startGeneration;
+            this.startedAt = startedAt;
+        }
+
+        @Override
+        public Permission call() {
+            final Permission permission = permissionFactory.getPermission(userId);
+            synchronized (writeLock) {
+                if (startGeneration == generation) {
+                    if (permission == null) {
+                        cache.remove(toCacheKey(userId));
+                    } else {
+                        cache.put(toCacheKey(userId), new CacheEntry(permission, startedAt));
+                        evictIfNecessary();
+                    }
+                }
+            }
+            return permission;
+        }
+    }
+
+    /**
+     * 取得中の処理を管理するためのキー。
+     * <br>
+     * 破棄前の世代で開始した取得の結果を共有しないよう、ユーザIDに加えてキャッシュの世代を比較する。
+     */
+    private static final class LoadingKey {
+
+        /** ユーザID */
+        private final String userId;
+
+        /** 取得開始時点のキャッシュの世代 */
+        private final long generation;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param generation 取得開始時点のキャッシュの世代
+         */
+        private LoadingKey(String userId, long generation) {
+            this.userId = userId;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LoadingKey)) {
+                return false;
+            }
+            final LoadingKey other = (LoadingKey) obj;
+            return generation == other.generation
+                    && (userId == null ? other.userId == null : userId.equals(other.userId));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (userId == null ? 0 : userId.hashCode()) + (int) (generation ^ (generation >>> 32));
+        }
+    }
+
+    /**
+     * バックグラウンドで再取得を行うスレッドを生成する{@link ThreadFactory}。
+     * <br>
+     * アプリケーションの終了を妨げないよう、デーモンスレッドを生成する。
+     */
+    private static final class RefreshThreadFactory implements ThreadFactory {
+
+        /** スレッドの連番 */
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "permission-refresh-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * キャッシュのエントリ。
+     */
+    private final class CacheEntry {
+
+        /** キャッシュした{@link Permission} */
+        private final Permission permission;
+
+        /** 取得した時刻(ミリ秒) */
+        private final long loadedAt;
+
+        /**
+         * 最後に参照された時点の{@link System#nanoTime()}。
+         * <br>
+         * 破棄する順序の目安にのみ使用するため、参照時にロックは取得しない。
+         */
+        private volatile long lastAccessedAt = System.nanoTime();
+
+        /**
+         * コンストラクタ。
+         * @param permission キャッシュする{@link Permission}
+         * @param loadedAt 取得した時刻(ミリ秒)
+         */
+        private CacheEntry(Permission permission, long loadedAt) {
+            this.permission = permission;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * 参照されたことを記録する。
+         */
+        private void touch() {
+            lastAccessedAt = System.nanoTime();
+        }
+
+        /**
+         * 有効期間を過ぎているか否か。
+         * @param now 現在時刻(ミリ秒)
+         * @return 有効期間を過ぎている場合は {@code true}
+         */
+        private boolean isExpired(long now) {
+            return expireAfterWriteMillis > 0 && now - loadedAt >= expireAfterWriteMillis;
+        }
+
+        /**
+         * 再取得が必要か否か。
+         * @param now 現在時刻(ミリ秒)
+         * @return 再取得が必要な場合は {@code true}
+         */
+        private boolean needsRefresh(long now) {
+            return refreshAfterWriteMillis > 0 && now - loadedAt >= refreshAfterWriteMillis;
+        }
+    }
+
+    // ------------------------------------------------------------- accessors
+    /**
+     * {@link Permission}を生成する委譲先の{@link PermissionFactory}を設定する。
+     * @param permissionFactory 委譲先の{@link PermissionFactory}
+     */
+    public void setPermissionFactory(PermissionFactory permissionFactory) {
+        this.permissionFactory = permissionFactory;
+    }
+
+    /**
+     * キャッシュするユーザ数の上限を設定する。
+     * @param maxEntries キャッシュするユーザ数の上限(1以上)
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0. maxEntries = [" + maxEntries + "]");
+        }
+        synchronized (writeLock) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * 取得した{@link Permission}の有効期間(ミリ秒)を設定する。
+     * @param expireAfterWriteMillis 有効期間(ミリ秒)。0以下の場合は有効期間による破棄を行わない
+     */
+    public void setExpireAfterWriteMillis(long expireAfterWriteMillis) {
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+    }
+
+    /**
+     * 取得した{@link Permission}を再取得するまでの期間(ミリ秒)を設定する。
+     * @param refreshAfterWriteMillis 再取得するまでの期間(ミリ秒)。0以下の場合は再取得しない
+     */
+    public void setRefreshAfterWriteMillis(long refreshAfterWriteMillis) {
+        this.refreshAfterWriteMillis = refreshAfterWriteMillis;
+    }
+
+    /**
+     * 再取得をバックグラウンドで行うか否かを設定する。
+     * @param asyncRefresh バックグラウンドで再取得を行う場合は {@code true}
+     */
+    public void setAsyncRefresh(boolean asyncRefresh) {
+        this.asyncRefresh = asyncRefresh;
+    }
+
+    /**
+     * バックグラウンドで再取得を行うスレッド数を設定する。
+     * @param refreshThreadCount スレッド数(1以上)
+     */
+    public void setRefreshThreadCount(int refreshThreadCount) {
+        if (refreshThreadCount <= 0) {
+            throw new IllegalArgumentException(
+                    "refreshThreadCount must be greater than 0. refreshThreadCount = [" + refreshThreadCount + "]");
+        }
+        this.refreshThreadCount = refreshThreadCount;
+    }
+
+    /**
+     * 再取得待ちのユーザ数の上限を設定する。
+     * @param refreshQueueCapacity 再取得待ちのユーザ数の上限(1以上)
+     */
+    public void setRefreshQueueCapacity(int refreshQueueCapacity) {
+        if (refreshQueueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "refreshQueueCapacity must be greater than 0. refreshQueueCapacity = [" + refreshQueueCapacity + "]");
+        }
+        this.refreshQueueCapacity = refreshQueueCapacity;
+    }
+
+    /** ユーザIDが{@code null}の場合のキャッシュのキー */
+    private static final Object NULL_USER_ID_KEY = new Object();
+
+    /** 最後に参照された時点が古い順に並べる{@link Comparator} */
+    private static final Comparator<Map.Entry<Object, CacheEntry>> LEAST_RECENTLY_ACCESSED_FIRST =
+            new Comparator<Map.Entry<Object, CacheEntry>>() {
+                @Override
+                public int compare(Map.Entry<Object, CacheEntry> o1, Map.Entry<Object, CacheEntry> o2) {
+                    final long diff = o1.getValue().lastAccessedAt - o2.getValue().lastAccessedAt;
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            };
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(CachingPermissionFactory.class);
+}
@@ -0,0 +1,177 @@
+package nablarch.common.permission;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 認可判定に失敗したユーザIDとリクエストIDの組み合わせを、短時間保持するキャッシュ。
+ * <br>
+ * <br>
+ * 同じ組み合わせで認可判定に失敗し続ける場合に、{@link PermissionFactory}からの取得と
+ * メッセージの組み立てを省略するために使用する。<br>
+ * 例外のインスタンスは共有できないため、認可判定に失敗した際のメッセージのみを保持する。<br>
+ * 保持する組み合わせの数が上限を超えた場合は、参照されていない期間が長い組み合わせから順に、上限の1割程度をまとめて破棄する。<br>
+ * 参照時にはロックを取得しない。ロックは格納と破棄の場合のみ取得する。
+ *
+ * @see PermissionCheckHandler
+ */
+final class DenialCache {
+
+    /** 最後に参照された時点が古い順に並べる{@link Comparator} */
+    private static final Comparator<Map.Entry<Key, Entry>> LEAST_RECENTLY_ACCESSED_FIRST =
+            new Comparator<Map.Entry<Key, Entry>>() {
+                @Override
+                public int compare(Map.Entry<Key, Entry> o1, Map.Entry<Key, Entry> o2) {
+                    final long diff = o1.getValue().lastAccessedAt - o2.getValue().lastAccessedAt;
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            };
+
+    /** 保持期間(ミリ秒) */
+    private final long expirationMillis;
+
+    /** 保持する組み合わせの数の上限 */
+    private final int maxEntries;
+
+    /** ユーザIDとリクエストIDの組み合わせをキーとした、認可判定に失敗した結果 */
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+    /** 格納と破棄を直列化するためのロック */
+    private final Object writeLock = new Object();
+
+    /**
+     * コンストラクタ。
+     * @param expirationMillis 保持期間(ミリ秒)
+     * @param maxEntries 保持する組み合わせの数の上限
+     */
+    DenialCache(long expirationMillis, int maxEntries) {
+        this.expirationMillis = expirationMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 保持期間内の、認可判定に失敗した結果を取得する。
+     *
+     * @param userId ユーザID
+     * @param requestId リクエストID
+     * @param now 現在時刻(ミリ秒)
+     * @return 認可判定に失敗した際のメッセージ。保持していない場合は{@code null}
+     */
+    String get(String userId, String requestId, long now) {
+        final Key key = new Key(userId, requestId);
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.deniedAt >= expirationMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.lastAccessedAt = System.nanoTime();
+        return entry.message;
+    }
+
+    /**
+     * 認可判定に失敗した結果を格納する。
+     *
+     * @param userId ユーザID
+     * @param requestId リクエストID
+     * @param message 認可判定に失敗した際のメッセージ
+     * @param now 現在時刻(ミリ秒)
+     */
+    void put(String userId, String requestId, String message, long now) {
+        final Entry entry = new Entry(message, now);
+        synchronized (writeLock) {
+            entries.put(new Key(userId, requestId), entry);
+            evictIfNecessary();
+        }
+    }
+
+    /**
+     * 保持する組み合わせの数が上限を超えている場合に、参照されていない期間が長い組み合わせから破棄する。
+     * <br>
+     * 破棄の度に全ての組み合わせを並べ替えることを避けるため、上限の1割程度をまとめて破棄する。
+     * 呼び出し元で{@link #writeLock}を取得していること。
+     */
+    private void evictIfNecessary() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        final List<Map.Entry<Key, Entry>> sorted = new ArrayList<Map.Entry<Key, Entry>>(entries.entrySet());
+        Collections.sort(sorted, LEAST_RECENTLY_ACCESSED_FIRST);
+        final int retained = maxEntries - maxEntries / 10;
+        for (int i = 0; i < sorted.size() - retained; i++) {
+            entries.remove(sorted.get(i).getKey(), sorted.get(i).getValue());
+        }
+    }
+
+    /**
+     * ユーザIDとリクエストIDの組み合わせ。
+     */
+    private static final class Key {
+
+        /** ユーザID */
+        private final String userId;
+
+        /** リクエストID */
+        private final String requestId;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param requestId リクエストID
+         */
+        private Key(String userId, String requestId) {
+            this.userId = userId;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return (userId == null ? other.userId == null : userId.equals(other.userId))
+                    && (requestId == null ? other.requestId == null : requestId.equals(other.requestId));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (userId == null ? 0 : userId.hashCode()) + (requestId == null ? 0 : requestId.hashCode());
+        }
+    }
+
+    /**
+     * 認可判定に失敗した結果。
+     */
+    private static final class Entry {
+
+        /** 認可判定に失敗した際のメッセージ */
+        private final String message;
+
+        /** 認可判定に失敗した時刻(ミリ秒) */
+        private final long deniedAt;
+
+        /** 最後に参照された時点の{@link System#nanoTime()}(破棄する順序の目安にのみ使用する) */
+        private volatile long lastAccessedAt = System.nanoTime();
+
+        /**
+         * コンストラクタ。
+         * @param message 認可判定に失敗した際のメッセージ
+         * @param deniedAt 認可判定に失敗した時刻(ミリ秒)
+         */
+        private Entry(String message, long deniedAt) {
+            this.message = message;
+            this.deniedAt = deniedAt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nablarch.common.permission;
+
+/**
+ * 認可判定に失敗した際のログ出力を、1秒あたりの件数で制限するクラス。
+ * <br>
+ * <br>
+ * 1秒ごとの区間で出力できる件数を制限し、上限を超えたログは出力せずに件数のみ数える。
+ * 数えた件数は、次の区間で最初に出力するログに付加して出力する。
+ *
+ * @see PermissionCheckHandler
+ */
+final class DenialLogLimiter {
+
+    /** 区間の長さ(ミリ秒) */
+    private static final long WINDOW_MILLIS = 1000L;
+
+    /** 1区間で出力できるログの件数 */
+    private final int maxLogsPerSecond;
+
+    /** 現在の区間の開始時刻(ミリ秒) */
+    private long windowStartedAt;
+
+    /** 区間を開始済みか否か */
+    private boolean started;
+
+    /** 現在の区間で出力したログの件数 */
+    private int loggedCount;
+
+    /** 出力を抑止したログの件数(まだ報告していないもの) */
+    private long suppressedCount;
+
+    /**
+     * コンストラクタ。
+     * @param maxLogsPerSecond 1秒あたりに出力できるログの件数
+     */
+    DenialLogLimiter(int maxLogsPerSecond) {
+        this.maxLogsPerSecond = maxLogsPerSecond;
+    }
+
+    /**
+     * ログを出力してよいか判定する。
+     *
+     * @param now 現在時刻(ミリ秒)
+     * @return 出力してよい場合は、それまでに抑止したログの件数(0以上)。出力してはいけない場合は-1
+     */
+    synchronized long tryAcquire(long now) {
+        if (!started || now - windowStartedAt >= WINDOW_MILLIS) {
+            started = true;
+            windowStartedAt = now;
+            loggedCount = 0;
+        }
+        if (loggedCount >= maxLogsPerSecond) {
+            suppressedCount++;
+            return -1L;
+        }
+        loggedCount++;
+        final long suppressed = suppressedCount;
+        suppressedCount = 0L;
+        return suppressed;
+    }
+}
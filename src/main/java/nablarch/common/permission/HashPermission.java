@@ -0,0 +1,119 @@
+package nablarch.common.permission;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * ユーザに許可されたリクエストIDをハッシュ表で保持する{@link Permission}の実装クラス。<br>
+ * <br>
+ * {@link BasicPermission}は{@link SortedSet}を用いて認可判定を行うため、
+ * {@link TreeSet}の場合はリクエストIDの数に応じて文字列の比較回数が増える。<br>
+ * 本クラスは生成時にオープンアドレス法のハッシュ表を構築しておき、
+ * 認可判定をリクエストIDの数によらず一定の時間で行う。<br>
+ * {@link #getRequestIds()}が返す{@link SortedSet}は、初めて呼び出された時に生成する。<br>
+ * <br>
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ */
+public final class HashPermission implements Permission {
+
+    /** 許可されたリクエストIDを格納したハッシュ表(要素数は2のべき乗) */
+    private final String[] table;
+
+    /** ハッシュ値から格納位置を求めるためのマスク */
+    private final int mask;
+
+    /** ユーザに許可されたリクエストID(初めて参照された時に生成する) */
+    private volatile SortedSet<String> requestIds;
+
+    /**
+     * コンストラクタ。
+     * @param requestIds ユーザに許可されたリクエストID
+     */
+    public HashPermission(Collection<String> requestIds) {
+        final int size = requestIds == null ? 0 : requestIds.size();
+        // 使用率を50%以下に抑え、探索が必ず空きの位置で終わるようにする
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        table = new String[capacity];
+        mask = capacity - 1;
+        if (requestIds != null) {
+            for (String requestId : requestIds) {
+                if (requestId != null) {
+                    add(requestId);
+                }
+            }
+        }
+    }
+
+    /**
+     * ハッシュ表にリクエストIDを格納する。
+     * @param requestId リクエストID
+     */
+    private void add(String requestId) {
+        int index = spread(requestId.hashCode()) & mask;
+        while (table[index] != null) {
+            if (table[index].equals(requestId)) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = requestId;
+    }
+
+    /**
+     * リクエストIDを認可判定する。
+     *
+     * @param requestId リクエストID
+     * @return 認可に成功した場合は<code>true</code>、認可に失敗した場合は<code>false</code>
+     */
+    public boolean permit(String requestId) {
+        if (requestId == null) {
+            return false;
+        }
+        int index = spread(requestId.hashCode()) & mask;
+        String stored;
+        while ((stored = table[index]) != null) {
+            if (stored.equals(requestId)) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * ユーザに許可されたリクエストIDを取得する。
+     *
+     * @return ユーザに許可されたリクエストID(変更不可)
+     */
+    public SortedSet<String> getRequestIds() {
+        SortedSet<String> result = requestIds;
+        if (result == null) {
+            final SortedSet<String> sorted = new TreeSet<String>();
+            for (String requestId : table) {
+                if (requestId != null) {
+                    sorted.add(requestId);
+                }
+            }
+            result = Collections.unmodifiableSortedSet(sorted);
+            requestIds = result;
+        }
+        return result;
+    }
+
+    /**
+     * ハッシュ値の上位ビットを下位ビットに拡散する。
+     * <br>
+     * 格納位置はハッシュ値の下位ビットのみで決まるため、偏りを抑える目的で行う。
+     *
+     * @param hash ハッシュ値
+     * @return 拡散したハッシュ値
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,187 @@
+package nablarch.common.permission;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 許可されたリクエストIDが同一の{@link Permission}を、ユーザ間で共有する{@link PermissionFactory}。
+ * <br>
+ * <br>
+ * 多くのユーザは少数の権限パターンのいずれかに該当するが、
+ * 通常の{@link PermissionFactory}はユーザ毎に別の{@link Permission}を生成する。<br>
+ * 本クラスは、委譲先が生成した{@link Permission}のクラスと許可されたリクエストIDを内容で比較し、
+ * 同じ内容であれば共有の{@link Permission}を返す。
+ * これにより、{@link CachingPermissionFactory}などで保持する認可情報のメモリ量が、
+ * ログインユーザ数ではなく権限パターン数に比例するようになる。
+ * <br>
+ * <br>
+ * 委譲先が{@link BasicPermission}を返した場合、共有する{@link Permission}は変更できない{@link BasicPermission}として生成する。
+ * 生成方法を変更する場合は{@link #createPermission(SortedSet)}をオーバーライドすること。<br>
+ * それ以外の{@link Permission}(例えば{@link WildcardPermission})を返した場合は、
+ * 最初に取得したインスタンスをそのまま共有するため、{@link Permission#permit(String)}の判定方法は維持される。
+ * そのため、委譲先が返す{@link Permission}の判定結果は、クラスと許可されたリクエストIDのみで決まること。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #permissionFactory}
+ * <dd>{@link Permission}を生成する委譲先の{@link PermissionFactory}。必須。
+ * <dt>{@link #maxProfiles}
+ * <dd>共有する権限パターン数の上限。オプション。デフォルトは1000。<br>
+ *     上限を超えた場合は、最も長い間参照されていない権限パターンから破棄する。
+ * </dl>
+ */
+public class InterningPermissionFactory implements PermissionFactory {
+
+    // ------------------------------------------------------------ structure
+    /** {@link Permission}を生成する委譲先の{@link PermissionFactory} */
+    private PermissionFactory permissionFactory;
+
+    /** 共有する権限パターン数の上限 */
+    private int maxProfiles = 1000;
+
+    /** {@link Permission}のクラスと許可されたリクエストIDをキーとした共有の{@link Permission}(参照順に並ぶ) */
+    private final Map<ProfileKey, Permission> profiles = new LinkedHashMap<ProfileKey, Permission>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ProfileKey, Permission> eldest) {
+            return size() > maxProfiles;
+        }
+    };
+
+    // ------------------------------------------ implementation of PermissionFactory API
+    /**
+     * {@link Permission}を取得する。
+     * <br>
+     * 委譲先から取得した{@link Permission}とクラスおよび許可されたリクエストIDが同一の共有{@link Permission}を返す。
+     * 委譲先が{@code null}を返した場合や、許可されたリクエストIDが{@code null}の場合は、委譲先の結果をそのまま返す。
+     *
+     * @param userId ユーザID
+     * @return {@link Permission}
+     */
+    public Permission getPermission(String userId) {
+        checkPermissionFactoryIsNotNull();
+
+        final Permission permission = permissionFactory.getPermission(userId);
+        if (permission == null) {
+            return null;
+        }
+        final SortedSet<String> requestIds = permission.getRequestIds();
+        if (requestIds == null) {
+            return permission;
+        }
+
+        final Class<?> type = permission.getClass();
+        synchronized (profiles) {
+            final Permission shared = profiles.get(new ProfileKey(type, requestIds));
+            if (shared != null) {
+                return shared;
+            }
+        }
+
+        final SortedSet<String> copied = new TreeSet<String>();
+        copied.addAll(requestIds);
+        final SortedSet<String> unmodifiable = Collections.unmodifiableSortedSet(copied);
+        final Permission created = type == BasicPermission.class ? createPermission(unmodifiable) : permission;
+        final ProfileKey key = new ProfileKey(type, unmodifiable);
+        synchronized (profiles) {
+            final Permission registered = profiles.get(key);
+            if (registered != null) {
+                return registered;
+            }
+            profiles.put(key, created);
+        }
+        return created;
+    }
+
+    /**
+     * 保持している権限パターンを全て破棄する。
+     */
+    public void clear() {
+        synchronized (profiles) {
+            profiles.clear();
+        }
+    }
+
+    /**
+     * 委譲先が返した{@link BasicPermission}の代わりに共有する{@link Permission}を生成する。
+     *
+     * @param requestIds 許可されたリクエストID(変更不可)
+     * @return 共有する{@link Permission}
+     */
+    protected Permission createPermission(SortedSet<String> requestIds) {
+        return new BasicPermission(requestIds);
+    }
+
+    /**
+     * 委譲先の{@link PermissionFactory}が設定されていることを検証する。
+     */
+    private void checkPermissionFactoryIsNotNull() {
+        if (permissionFactory == null) {
+            throw new IllegalStateException("PermissionFactory is null.");
+        }
+    }
+
+    // ------------------------------------------------------------- accessors
+    /**
+     * {@link Permission}を生成する委譲先の{@link PermissionFactory}を設定する。
+     * @param permissionFactory 委譲先の{@link PermissionFactory}
+     */
+    public void setPermissionFactory(PermissionFactory permissionFactory) {
+        this.permissionFactory = permissionFactory;
+    }
+
+    /**
+     * 共有する権限パターン数の上限を設定する。
+     * @param maxProfiles 共有する権限パターン数の上限(1以上)
+     */
+    public void setMaxProfiles(int maxProfiles) {
+        if (maxProfiles <= 0) {
+            throw new IllegalArgumentException("maxProfiles must be greater than 0. maxProfiles = [" + maxProfiles + "]");
+        }
+        this.maxProfiles = maxProfiles;
+    }
+
+    /**
+     * 権限パターンのキー。
+     * <br>
+     * 判定方法が異なる{@link Permission}を共有しないよう、許可されたリクエストIDに加えて{@link Permission}のクラスを比較する。
+     */
+    private static final class ProfileKey {
+
+        /** {@link Permission}のクラス */
+        private final Class<?> type;
+
+        /** 許可されたリクエストID */
+        private final SortedSet<String> requestIds;
+
+        /**
+         * コンストラクタ。
+         * @param type {@link Permission}のクラス
+         * @param requestIds 許可されたリクエストID
+         */
+        private ProfileKey(Class<?> type, SortedSet<String> requestIds) {
+            this.type = type;
+            this.requestIds = requestIds;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ProfileKey)) {
+                return false;
+            }
+            final ProfileKey other = (ProfileKey) obj;
+            return type == other.type && requestIds.equals(other.requestIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + requestIds.hashCode();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package nablarch.common.permission;
+
+import nablarch.fw.results.Forbidden;
+
+/**
+ * スタックトレースを取得しない{@link Forbidden}。
+ * <br>
+ * 認可判定の失敗が大量に発生した場合に、スタックトレースの取得に要する負荷を抑えるために使用する。
+ * 上位のハンドラで例外が追加(suppressed)される可能性があるため、インスタンスは共有せずスローする度に生成すること。
+ *
+ * @see PermissionCheckHandler
+ */
+final class LightweightForbidden extends Forbidden {
+
+    /**
+     * コンストラクタ。
+     * @param message メッセージ
+     */
+    LightweightForbidden(String message) {
+        super(message);
+    }
+
+    /**
+     * スタックトレースを取得せずに自身を返す。
+     *
+     * @return 自身のインスタンス
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,179 @@
+package nablarch.common.permission;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.Builder;
+
+/**
+ * アプリケーションの起動時に、{@link CachingPermissionFactory}へ{@link Permission}をあらかじめ格納するクラス。
+ * <br>
+ * <br>
+ * デプロイ直後はキャッシュが空のため、アクセスが集中すると認可情報の取得処理が大量に発生する。
+ * 本クラスは、指定されたユーザの{@link Permission}をバッチ単位に分割し、複数のスレッドで並行して取得する。
+ * 委譲先の{@link PermissionFactory}が{@link BatchPermissionFactory}を実装している場合は、
+ * バッチ単位で一括して取得する。<br>
+ * 取得に失敗したバッチはログを出力して読み飛ばす(アプリケーションの起動は継続する)。
+ * <br>
+ * <br>
+ * このクラスを使用する場合は、下記プロパティを設定する。
+ * <dl>
+ * <dt>{@link #cachingPermissionFactory}
+ * <dd>{@link Permission}を格納する{@link CachingPermissionFactory}。必須。
+ * <dt>{@link #userIds}
+ * <dd>{@link Permission}を取得するユーザIDの一覧。必須。
+ * <dt>{@link #batchSize}
+ * <dd>1回に取得するユーザ数。オプション。デフォルトは100。
+ * <dt>{@link #threadCount}
+ * <dd>並行して取得するスレッド数。オプション。デフォルトは4。
+ * <dt>{@link #timeoutMillis}
+ * <dd>全てのバッチの完了を待ち合わせる時間(ミリ秒)。オプション。デフォルトは60000(1分)。<br>
+ *     時間内に完了しなかった場合は、ログを出力して待ち合わせを終了する。
+ * </dl>
+ * 本クラスは{@link Initializable}を実装しているため、初期化対象のコンポーネントとして設定すること。
+ */
+public class PermissionCacheWarmer implements Initializable {
+
+    // ------------------------------------------------------------ structure
+    /** {@link Permission}を格納する{@link CachingPermissionFactory} */
+    private CachingPermissionFactory cachingPermissionFactory;
+
+    /** {@link Permission}を取得するユーザIDの一覧 */
+    private List<String> userIds = Collections.emptyList();
+
+    /** 1回に取得するユーザ数 */
+    private int batchSize = 100;
+
+    /** 並行して取得するスレッド数 */
+    private int threadCount = 4;
+
+    /** 全てのバッチの完了を待ち合わせる時間(ミリ秒) */
+    private long timeoutMillis = 60 * 1000L;
+
+    // ------------------------------------------ implementation of Initializable API
+    /**
+     * 指定されたユーザの{@link Permission}を取得し、{@link CachingPermissionFactory}に格納する。
+     */
+    @Override
+    public void initialize() {
+        if (cachingPermissionFactory == null) {
+            throw new IllegalStateException("CachingPermissionFactory is null.");
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WarmUpThreadFactory());
+        try {
+            for (int from = 0; from < userIds.size(); from += batchSize) {
+                final List<String> batch =
+                        new ArrayList<String>(userIds.subList(from, Math.min(from + batchSize, userIds.size())));
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        preload(batch);
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.logWarn(Builder.concat(
+                        "permission cache warm-up did not complete within ", timeoutMillis, " ms."));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.logWarn("permission cache warm-up was interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 1バッチ分のユーザの{@link Permission}を取得する。
+     *
+     * @param batch ユーザIDの一覧
+     */
+    private void preload(List<String> batch) {
+        try {
+            cachingPermissionFactory.preload(batch);
+        } catch (RuntimeException e) {
+            LOGGER.logWarn(Builder.concat(
+                    "failed to warm up permission cache. userIds = ", batch), e);
+        }
+    }
+
+    /**
+     * {@link Permission}を取得するスレッドを生成する{@link ThreadFactory}。
+     */
+    private static final class WarmUpThreadFactory implements ThreadFactory {
+
+        /** スレッドの連番 */
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "permission-warm-up-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    // ------------------------------------------------------------- accessors
+    /**
+     * {@link Permission}を格納する{@link CachingPermissionFactory}を設定する。
+     * @param cachingPermissionFactory {@link CachingPermissionFactory}
+     */
+    public void setCachingPermissionFactory(CachingPermissionFactory cachingPermissionFactory) {
+        this.cachingPermissionFactory = cachingPermissionFactory;
+    }
+
+    /**
+     * {@link Permission}を取得するユーザIDの一覧を設定する。
+     * @param userIds ユーザIDの一覧
+     */
+    public void setUserIds(List<String> userIds) {
+        this.userIds = userIds;
+    }
+
+    /**
+     * 1回に取得するユーザ数を設定する。
+     * @param batchSize 1回に取得するユーザ数(1以上)
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize = [" + batchSize + "]");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 並行して取得するスレッド数を設定する。
+     * @param threadCount スレッド数(1以上)
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be greater than 0. threadCount = [" + threadCount + "]");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 全てのバッチの完了を待ち合わせる時間(ミリ秒)を設定する。
+     * @param timeoutMillis 待ち合わせる時間(ミリ秒)
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(PermissionCacheWarmer.class);
+}
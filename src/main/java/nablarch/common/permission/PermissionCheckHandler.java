@@ -1,8 +1,9 @@
 // MOVE: commonをモジュール分割したので、nablarch.common.handlerから移動
 package nablarch.common.permission;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import nablarch.common.permission.Permission;
@@ -26,7 +27,27 @@ import nablarch.fw.results.Forbidden;
  * <dd>{@link Permission}を生成する{@link PermissionFactory}。必須。
  * <dt>{@link #ignoreRequestIds}
  * <dd>認可判定を行わないリクエストID。オプション。<br>
- *     複数指定する場合はカンマ区切り。
+ *     複数指定する場合はカンマ区切り。<br>
+ *     末尾に{@code "*"}を付けると前方一致となる。(例えば{@code "PUBLIC*"}は{@code "PUBLIC"}で始まる全てのリクエストIDに一致する)
+ * <dt>{@link #reusesPermission}
+ * <dd>{@link ThreadContext}に設定済みの{@link Permission}を再利用するか否か。オプション。デフォルトは{@code false}。<br>
+ *     {@code true}を指定した場合、内部フォワードなどで同一リクエスト内に本ハンドラが再度実行された際、
+ *     同じユーザに対して本ハンドラが設定した{@link Permission}が{@link ThreadContext}に存在すれば、
+ *     {@link PermissionFactory}から取得せずにそれを使用して認可判定を行う。<br>
+ *     {@link ThreadContext}がリクエスト毎に初期化されることを前提とするため、
+ *     スレッドコンテキスト変数設定ハンドラより後ろに本ハンドラを設定すること。
+ * <dt>{@link #denialCacheExpirationMillis}
+ * <dd>認可判定に失敗したユーザIDとリクエストIDの組み合わせを保持する期間(ミリ秒)。オプション。デフォルトは0(保持しない)。<br>
+ *     保持期間内に同じ組み合わせでアクセスされた場合は、{@link PermissionFactory}から取得せずに認可判定の失敗とする。
+ *     権限の付与が即座に反映されなくなるため、数秒程度の短い期間を指定すること。
+ * <dt>{@link #denialCacheMaxEntries}
+ * <dd>認可判定に失敗した組み合わせを保持する数の上限。オプション。デフォルトは10000。<br>
+ *     上限を超えた場合は、最も長い間参照されていない組み合わせから破棄する。
+ * <dt>{@link #maxDenialLogsPerSecond}
+ * <dd>認可判定に失敗した際に出力するログの、1秒あたりの件数の上限。オプション。デフォルトは0(制限しない)。<br>
+ *     上限を超えたログは出力せず、抑止した件数を次に出力するログに付加する。
+ * <dt>{@link #usesLightweightForbidden}
+ * <dd>スタックトレースを取得しない{@link Forbidden}をスローするか否か。オプション。デフォルトは{@code false}。
  * </dl>
  * 
  * @author Kiyohito Itoh
@@ -39,9 +60,36 @@ public class PermissionCheckHandler implements Handler<Object, Object> {
     
     /** 認可判定を行わないリクエストID */
     private Set<String> ignoreRequestIds = new HashSet<String>();
+
+    /** 認可判定を行わないリクエストIDの前方一致パターン */
+    private List<String> ignoreRequestIdPatterns = new ArrayList<String>();
+
+    /** 認可判定を行わないリクエストIDの前方一致パターンを保持するトライ木(パターンが無い場合は{@code null}) */
+    private RequestIdTrie ignoreRequestIdMatcher;
     
     /** サービス提供可否判定を行う際に内部リクエストIDを使用するかどうか */
     private boolean usesInternalRequestId = false;
+
+    /** {@link ThreadContext}に設定済みの{@link Permission}を再利用するかどうか */
+    private boolean reusesPermission = false;
+
+    /** 認可判定に失敗したユーザIDとリクエストIDの組み合わせを保持する期間(ミリ秒) */
+    private long denialCacheExpirationMillis = 0L;
+
+    /** 認可判定に失敗した組み合わせを保持する数の上限 */
+    private int denialCacheMaxEntries = 10000;
+
+    /** 認可判定に失敗した組み合わせを保持するキャッシュ(保持しない場合は{@code null}) */
+    private DenialCache denialCache;
+
+    /** 認可判定に失敗した際に出力するログの、1秒あたりの件数の上限 */
+    private int maxDenialLogsPerSecond = 0;
+
+    /** 認可判定に失敗した際のログ出力を制限するクラス(制限しない場合は{@code null}) */
+    private DenialLogLimiter denialLogLimiter;
+
+    /** スタックトレースを取得しない{@link Forbidden}をスローするかどうか */
+    private boolean usesLightweightForbidden = false;
         
     // ----------------------------------------- implementation of Handler API
     /**
@@ -68,26 +116,136 @@ public class PermissionCheckHandler implements Handler<Object, Object> {
                          ? ThreadContext.getInternalRequestId()
                          : ThreadContext.getRequestId();
                          
-        if (ignoreRequestIds.contains(requestId)) {
+        if (isIgnoreRequestId(requestId)) {
             return context.handleNext(inputData);
         }
         
         String userId = ThreadContext.getUserId();
-        Permission permission = permissionFactory.getPermission(userId);
+        if (denialCache != null) {
+            String deniedMessage = denialCache.get(userId, requestId, System.currentTimeMillis());
+            if (deniedMessage != null) {
+                logDenial(deniedMessage);
+                throw createForbidden(deniedMessage);
+            }
+        }
+        
+        Permission permission = reusesPermission ? findReusablePermission(userId) : null;
+        if (permission == null) {
+            permission = permissionFactory.getPermission(userId);
+        }
         
         if (permission.permit(requestId)) {
             PermissionUtil.setPermission(permission);
+            if (reusesPermission) {
+                ThreadContext.setObject(PERMISSION_OWNER_KEY, new PermissionOwner(userId, permission));
+            }
             return context.handleNext(inputData);
         } else {
             String message = Builder.concat(
                 "permission denied. userId = [", userId, "], "
               , "requestId = [", requestId, "]"
             );
+            logDenial(message);
+            if (denialCache != null) {
+                denialCache.put(userId, requestId, message, System.currentTimeMillis());
+            }
+            throw createForbidden(message);
+        }
+    }
+    
+    /**
+     * 認可判定に失敗した際にスローする{@link Forbidden}を生成する。
+     * 
+     * @param message メッセージ
+     * @return {@link Forbidden}
+     */
+    private Forbidden createForbidden(String message) {
+        return usesLightweightForbidden ? new LightweightForbidden(message) : new Forbidden(message);
+    }
+    
+    /**
+     * 認可判定に失敗したことをログに出力する。
+     * <br>
+     * ログの件数を制限している場合、上限を超えたログは出力しない。
+     * 
+     * @param message メッセージ
+     */
+    private void logDenial(String message) {
+        if (denialLogLimiter == null) {
             LOGGER.logInfo(message);
-            throw new Forbidden(message);
+            return;
+        }
+        long suppressed = denialLogLimiter.tryAcquire(System.currentTimeMillis());
+        if (suppressed == 0L) {
+            LOGGER.logInfo(message);
+        } else if (suppressed > 0L) {
+            LOGGER.logInfo(Builder.concat(
+                message, " (", suppressed, " permission denied logs were suppressed.)"
+            ));
         }
     }
     
+    /**
+     * 認可判定を行わないリクエストIDか否かを判定する。
+     * @param requestId リクエストID
+     * @return 認可判定を行わないリクエストIDの場合は {@code true}
+     */
+    private boolean isIgnoreRequestId(String requestId) {
+        if (ignoreRequestIds.contains(requestId)) {
+            return true;
+        }
+        return ignoreRequestIdMatcher != null && ignoreRequestIdMatcher.matches(requestId);
+    }
+
+    /**
+     * {@link ThreadContext}から再利用可能な{@link Permission}を取得する。
+     * <br>
+     * 本ハンドラが指定されたユーザに対して設定した{@link Permission}が、
+     * {@link PermissionUtil#getPermission()}で取得できる場合のみ再利用可能とする。
+     *
+     * @param userId ユーザID
+     * @return 再利用可能な{@link Permission}。存在しない場合は{@code null}
+     */
+    private static Permission findReusablePermission(String userId) {
+        final PermissionOwner owner = (PermissionOwner) ThreadContext.getObject(PERMISSION_OWNER_KEY);
+        if (owner == null || !owner.isOwnedBy(userId)) {
+            return null;
+        }
+        final Permission current = PermissionUtil.getPermission();
+        return current == owner.permission ? current : null;
+    }
+
+    /**
+     * 本ハンドラが{@link ThreadContext}に設定した{@link Permission}と、その取得対象のユーザ。
+     */
+    private static final class PermissionOwner {
+
+        /** ユーザID */
+        private final String userId;
+
+        /** ユーザの{@link Permission} */
+        private final Permission permission;
+
+        /**
+         * コンストラクタ。
+         * @param userId ユーザID
+         * @param permission ユーザの{@link Permission}
+         */
+        private PermissionOwner(String userId, Permission permission) {
+            this.userId = userId;
+            this.permission = permission;
+        }
+
+        /**
+         * 指定されたユーザの{@link Permission}か否か。
+         * @param userId ユーザID
+         * @return 指定されたユーザの{@link Permission}の場合は {@code true}
+         */
+        private boolean isOwnedBy(String userId) {
+            return this.userId == null ? userId == null : this.userId.equals(userId);
+        }
+    }
+
     // ------------------------------------------------------------- accessors
     /**
      * {@link Permission}を生成する{@link PermissionFactory}を設定する。
@@ -101,11 +259,27 @@ public class PermissionCheckHandler implements Handler<Object, Object> {
     
     /**
      * 認可判定を行わないリクエストIDを設定する。
+     * <br>
+     * 末尾に{@code "*"}を付けたリクエストIDは前方一致のパターンとして扱う。
+     * パターンは設定時にトライ木に変換するため、判定に要する時間はパターン数によらない。
+     *
      * @param requestIds 認可判定を行わないリクエストID
      * @return 自身のインスタンス
+     * @throws IllegalArgumentException 末尾以外に{@code "*"}を含むリクエストIDが指定された場合
      */
     public PermissionCheckHandler setIgnoreRequestIds(String... requestIds) {
-        this.ignoreRequestIds.addAll(Arrays.asList(requestIds));
+        boolean patternAdded = false;
+        for (String requestId : requestIds) {
+            if (requestId != null && requestId.indexOf(RequestIdTrie.WILDCARD) >= 0) {
+                ignoreRequestIdPatterns.add(requestId);
+                patternAdded = true;
+            } else {
+                ignoreRequestIds.add(requestId);
+            }
+        }
+        if (patternAdded) {
+            ignoreRequestIdMatcher = new RequestIdTrie(ignoreRequestIdPatterns);
+        }
         return this;
     }
     
@@ -123,6 +297,91 @@ public class PermissionCheckHandler implements Handler<Object, Object> {
         return this;
     }
     
+    /**
+     * {@link ThreadContext}に設定済みの{@link Permission}を再利用するか否かを設定する。
+     * 
+     * 明示的に設定しなかった場合のデフォルトは false (常に{@link PermissionFactory}から取得する。)
+     * 
+     * @param reusesPermission 同一ユーザの{@link Permission}が設定済みの場合に再利用する場合は true
+     * @return 自身のインスタンス
+     */
+    public PermissionCheckHandler setReusesPermission(boolean reusesPermission) {
+        this.reusesPermission = reusesPermission;
+        return this;
+    }
+    
+    /**
+     * 認可判定に失敗したユーザIDとリクエストIDの組み合わせを保持する期間(ミリ秒)を設定する。
+     * 
+     * 明示的に設定しなかった場合のデフォルトは 0 (保持しない。)
+     * 
+     * @param denialCacheExpirationMillis 保持する期間(ミリ秒)。0以下の場合は保持しない
+     * @return 自身のインスタンス
+     */
+    public PermissionCheckHandler setDenialCacheExpirationMillis(long denialCacheExpirationMillis) {
+        this.denialCacheExpirationMillis = denialCacheExpirationMillis;
+        this.denialCache = createDenialCache();
+        return this;
+    }
+    
+    /**
+     * 認可判定に失敗した組み合わせを保持する数の上限を設定する。
+     * 
+     * @param denialCacheMaxEntries 保持する数の上限(1以上)
+     * @return 自身のインスタンス
+     */
+    public PermissionCheckHandler setDenialCacheMaxEntries(int denialCacheMaxEntries) {
+        if (denialCacheMaxEntries <= 0) {
+            throw new IllegalArgumentException(
+                "denialCacheMaxEntries must be greater than 0. denialCacheMaxEntries = [" + denialCacheMaxEntries + "]");
+        }
+        this.denialCacheMaxEntries = denialCacheMaxEntries;
+        this.denialCache = createDenialCache();
+        return this;
+    }
+    
+    /**
+     * 認可判定に失敗した組み合わせを保持するキャッシュを生成する。
+     * @return キャッシュ。保持しない場合は{@code null}
+     */
+    private DenialCache createDenialCache() {
+        return denialCacheExpirationMillis > 0L
+             ? new DenialCache(denialCacheExpirationMillis, denialCacheMaxEntries)
+             : null;
+    }
+    
+    /**
+     * 認可判定に失敗した際に出力するログの、1秒あたりの件数の上限を設定する。
+     * 
+     * 明示的に設定しなかった場合のデフォルトは 0 (制限しない。)
+     * 
+     * @param maxDenialLogsPerSecond 1秒あたりの件数の上限。0以下の場合は制限しない
+     * @return 自身のインスタンス
+     */
+    public PermissionCheckHandler setMaxDenialLogsPerSecond(int maxDenialLogsPerSecond) {
+        this.maxDenialLogsPerSecond = maxDenialLogsPerSecond;
+        this.denialLogLimiter = maxDenialLogsPerSecond > 0
+                              ? new DenialLogLimiter(maxDenialLogsPerSecond)
+                              : null;
+        return this;
+    }
+    
+    /**
+     * スタックトレースを取得しない{@link Forbidden}をスローするか否かを設定する。
+     * 
+     * 明示的に設定しなかった場合のデフォルトは false (通常の{@link Forbidden}をスローする。)
+     * 
+     * @param usesLightweightForbidden スタックトレースを取得しない{@link Forbidden}をスローする場合は true
+     * @return 自身のインスタンス
+     */
+    public PermissionCheckHandler setUsesLightweightForbidden(boolean usesLightweightForbidden) {
+        this.usesLightweightForbidden = usesLightweightForbidden;
+        return this;
+    }
+    
+    /** {@link ThreadContext}に本ハンドラが設定した{@link Permission}の取得対象のユーザを格納するキー */
+    private static final String PERMISSION_OWNER_KEY = PermissionCheckHandler.class.getName() + ".PERMISSION_OWNER";
+
     /** ロガー */
     private static final Logger LOGGER = LoggerManager.get(PermissionCheckHandler.class);
 }
@@ -0,0 +1,113 @@
+package nablarch.common.permission;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * リクエストIDと連番を対応付ける辞書。<br>
+ * <br>
+ * システムで使用する全てのリクエストIDを昇順に並べ、0から始まる連番を割り当てる。<br>
+ * 生成後は変更できないため、複数のユーザの{@link BitSetPermission}で共有して使用する。
+ *
+ * @see BitSetPermission
+ */
+public final class RequestIdDictionary {
+
+    /** 連番順に並べたリクエストID */
+    private final String[] requestIds;
+
+    /** リクエストIDと連番の対応 */
+    private final Map<String, Integer> indexes;
+
+    /**
+     * コンストラクタ。
+     * @param requestIds システムで使用する全てのリクエストID
+     */
+    public RequestIdDictionary(Collection<String> requestIds) {
+        final SortedSet<String> sorted = new TreeSet<String>();
+        for (String requestId : requestIds) {
+            if (requestId != null) {
+                sorted.add(requestId);
+            }
+        }
+        this.requestIds = sorted.toArray(new String[sorted.size()]);
+        this.indexes = new HashMap<String, Integer>(this.requestIds.length * 4 / 3 + 1);
+        for (int i = 0; i < this.requestIds.length; i++) {
+            indexes.put(this.requestIds[i], i);
+        }
+    }
+
+    /**
+     * リクエストIDに割り当てた連番を取得する。
+     *
+     * @param requestId リクエストID
+     * @return 連番。辞書に存在しないリクエストIDの場合は-1
+     */
+    public int indexOf(String requestId) {
+        if (requestId == null) {
+            return -1;
+        }
+        final Integer index = indexes.get(requestId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 連番に対応するリクエストIDを取得する。
+     *
+     * @param index 連番
+     * @return リクエストID
+     */
+    public String getRequestId(int index) {
+        return requestIds[index];
+    }
+
+    /**
+     * 辞書に登録されたリクエストIDの数を取得する。
+     *
+     * @return リクエストIDの数
+     */
+    public int size() {
+        return requestIds.length;
+    }
+
+    /**
+     * ユーザに許可されたリクエストIDから、この辞書を使用する{@link BitSetPermission}を生成する。<br>
+     * <br>
+     * 辞書に存在しないリクエストIDは無視する(認可されない)。
+     *
+     * @param grantedRequestIds ユーザに許可されたリクエストID
+     * @return {@link BitSetPermission}
+     */
+    public BitSetPermission createPermission(Collection<String> grantedRequestIds) {
+        final long[] words = new long[(requestIds.length + 63) >>> 6];
+        for (String requestId : grantedRequestIds) {
+            final int index = indexOf(requestId);
+            if (index >= 0) {
+                words[index >>> 6] |= 1L << index;
+            }
+        }
+        return new BitSetPermission(this, trim(words));
+    }
+
+    /**
+     * 末尾の未使用要素を取り除いた配列を返す。
+     *
+     * @param words ビット列
+     * @return 末尾の未使用要素を取り除いた配列
+     */
+    private static long[] trim(long[] words) {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0L) {
+            length--;
+        }
+        if (length == words.length) {
+            return words;
+        }
+        final long[] trimmed = new long[length];
+        System.arraycopy(words, 0, trimmed, 0, length);
+        return trimmed;
+    }
+}
@@ -0,0 +1,144 @@
+package nablarch.common.permission;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * リクエストIDのパターンを保持し、リクエストIDが一致するかを判定するトライ木。
+ * <br>
+ * <br>
+ * パターンには、リクエストIDそのもの(完全一致)か、末尾に{@value #WILDCARD}を付けた前方一致のパターンを指定する。
+ * 例えば{@code "RW11*"}は{@code "RW11"}で始まる全てのリクエストIDに一致し、{@code "*"}は全てのリクエストIDに一致する。<br>
+ * 判定に要する時間はパターン数によらず、リクエストIDの長さに比例する。<br>
+ * <br>
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ */
+final class RequestIdTrie {
+
+    /** 前方一致を表すワイルドカード */
+    static final char WILDCARD = '*';
+
+    /** ルートノード */
+    private final Node root = new Node();
+
+    /**
+     * コンストラクタ。
+     * @param patterns リクエストIDのパターン
+     * @throws IllegalArgumentException 末尾以外にワイルドカードを含むパターンが指定された場合
+     */
+    RequestIdTrie(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            if (pattern != null) {
+                add(pattern);
+            }
+        }
+    }
+
+    /**
+     * パターンを追加する。
+     * @param pattern リクエストIDのパターン
+     */
+    private void add(String pattern) {
+        final int wildcardIndex = pattern.indexOf(WILDCARD);
+        final boolean prefix = wildcardIndex >= 0;
+        if (prefix && wildcardIndex != pattern.length() - 1) {
+            throw new IllegalArgumentException(
+                    "wildcard '" + WILDCARD + "' is only allowed at the end of pattern. pattern = [" + pattern + "]");
+        }
+        final int length = prefix ? pattern.length() - 1 : pattern.length();
+
+        Node node = root;
+        for (int i = 0; i < length; i++) {
+            node = node.getOrAddChild(pattern.charAt(i));
+        }
+        if (prefix) {
+            node.prefix = true;
+        } else {
+            node.exact = true;
+        }
+    }
+
+    /**
+     * リクエストIDがいずれかのパターンに一致するか判定する。
+     *
+     * @param requestId リクエストID
+     * @return 一致する場合は {@code true}
+     */
+    boolean matches(String requestId) {
+        if (requestId == null) {
+            return false;
+        }
+        Node node = root;
+        for (int i = 0, length = requestId.length(); i < length; i++) {
+            if (node.prefix) {
+                return true;
+            }
+            node = node.getChild(requestId.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.exact || node.prefix;
+    }
+
+    /**
+     * トライ木のノード。
+     * <br>
+     * 子ノードは文字の昇順に並べた配列で保持し、二分探索で検索する。
+     */
+    private static final class Node {
+
+        /** 空の文字配列 */
+        private static final char[] NO_LABELS = new char[0];
+
+        /** 空のノード配列 */
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /** 子ノードへ遷移する文字(昇順) */
+        private char[] labels = NO_LABELS;
+
+        /** 子ノード({@link #labels}と同じ順序) */
+        private Node[] children = NO_CHILDREN;
+
+        /** このノードまでの文字列に完全一致するパターンが存在するか否か */
+        private boolean exact;
+
+        /** このノードまでの文字列で始まるリクエストIDに一致するパターンが存在するか否か */
+        private boolean prefix;
+
+        /**
+         * 子ノードを取得する。
+         * @param c 遷移する文字
+         * @return 子ノード。存在しない場合は{@code null}
+         */
+        private Node getChild(char c) {
+            final int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * 子ノードを取得する。存在しない場合は追加する。
+         * @param c 遷移する文字
+         * @return 子ノード
+         */
+        private Node getOrAddChild(char c) {
+            final int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            final int insertionPoint = -(index + 1);
+            final char[] newLabels = new char[labels.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertionPoint);
+            System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+            System.arraycopy(labels, insertionPoint, newLabels, insertionPoint + 1, labels.length - insertionPoint);
+            System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, children.length - insertionPoint);
+            final Node child = new Node();
+            newLabels[insertionPoint] = c;
+            newChildren[insertionPoint] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package nablarch.common.permission;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 前方一致のパターンによる許可をサポートする{@link Permission}の実装クラス。<br>
+ * <br>
+ * 許可するリクエストIDには、リクエストIDそのものに加え、末尾に{@code "*"}を付けた前方一致のパターンを指定できる。
+ * 例えば{@code "RW11*"}を指定すると、{@code "RW11"}で始まる全てのリクエストIDが許可される。<br>
+ * 機能単位で画面をまとめて許可する場合でも、画面数分のリクエストIDを保持する必要がないため、
+ * ユーザ毎に必要なメモリを抑えられる。
+ * 認可判定に要する時間は、パターン数によらずリクエストIDの長さに比例する。<br>
+ * <br>
+ * 生成後は変更できないため、複数のスレッドから参照してよい。
+ */
+public final class WildcardPermission implements Permission {
+
+    /** 許可するリクエストIDのパターン */
+    private final SortedSet<String> patterns;
+
+    /** パターンを保持するトライ木 */
+    private final RequestIdTrie trie;
+
+    /**
+     * コンストラクタ。
+     * @param patterns 許可するリクエストIDのパターン
+     * @throws IllegalArgumentException 末尾以外に{@code "*"}を含むパターンが指定された場合
+     */
+    public WildcardPermission(Collection<String> patterns) {
+        final SortedSet<String> sorted = new TreeSet<String>();
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                if (pattern != null) {
+                    sorted.add(pattern);
+                }
+            }
+        }
+        this.patterns = Collections.unmodifiableSortedSet(sorted);
+        this.trie = new RequestIdTrie(sorted);
+    }
+
+    /**
+     * リクエストIDを認可判定する。
+     *
+     * @param requestId リクエストID
+     * @return 認可に成功した場合は<code>true</code>、認可に失敗した場合は<code>false</code>
+     */
+    public boolean permit(String requestId) {
+        return trie.matches(requestId);
+    }
+
+    /**
+     * ユーザに許可されたリクエストIDを取得する。<br>
+     * <br>
+     * 前方一致のパターンは展開せず、指定された形式({@code "RW11*"}など)のまま返す。
+     *
+     * @return ユーザに許可されたリクエストIDのパターン(変更不可)
+     */
+    public SortedSet<String> getRequestIds() {
+        return patterns;
+    }
+}
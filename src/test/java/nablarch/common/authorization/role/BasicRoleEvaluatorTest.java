@@ -8,10 +8,12 @@ import org.junit.function.ThrowingRunnable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.junit.Assert.assertThrows;
 
 /**
@@ -136,6 +138,64 @@ public class BasicRoleEvaluatorTest {
         assertThat(exception.getMessage(), is("UserRoleResolver is null."));
     }
 
+    /**
+     * evaluateGrantedRolesメソッドのテスト(指定されたロールのうちユーザが有するものを、指定された順序で返すこと)。
+     */
+    @Test
+    public void testEvaluateGrantedRoles() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FIZZ", "FOO", "BAR");
+
+        Set<String> actual = sut.evaluateGrantedRoles(TEST_USER_ID, Arrays.asList("BAR", "BUZZ", "FOO"), context);
+
+        assertThat(actual, contains("BAR", "FOO"));
+        assertThat(mockUserRoleResolver.count, is(1));
+    }
+
+    /**
+     * ロールの一覧をリクエストスコープに保持する場合のテスト(同じリクエスト内では{@link UserRoleResolver}を1回しか呼び出さないこと)。
+     */
+    @Test
+    public void testResolveOnceInSameRequestIfMemoizesUserRoles() {
+        sut.setMemoizesUserRoles(true);
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(true));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(false));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO"), context), is(true));
+
+        assertThat(mockUserRoleResolver.count, is(1));
+    }
+
+    /**
+     * ロールの一覧をリクエストスコープに保持する場合のテスト(別のユーザや別のリクエストでは再度解決すること)。
+     */
+    @Test
+    public void testResolveAgainForOtherUserOrRequestIfMemoizesUserRoles() {
+        sut.setMemoizesUserRoles(true);
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+        sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("BAR");
+        assertThat(sut.evaluateAnyOf("other-user", Arrays.asList("FOO"), context), is(false));
+        assertThat(mockUserRoleResolver.userId, is("other-user"));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("BAR"), new ExecutionContext()), is(true));
+
+        assertThat(mockUserRoleResolver.count, is(3));
+    }
+
+    /**
+     * ロールの一覧をリクエストスコープに保持しない場合のテスト(判定の度に{@link UserRoleResolver}を呼び出すこと)。
+     */
+    @Test
+    public void testResolveEveryTimeIfNotMemoizesUserRoles() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+
+        sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+        sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+
+        assertThat(mockUserRoleResolver.count, is(2));
+    }
+
     /**
      * {@link UserRoleResolver}のモック。
      */
@@ -143,9 +203,11 @@ public class BasicRoleEvaluatorTest {
         private String userId;
         private ExecutionContext context;
         private Collection<String> resolvedRoles;
+        private int count;
 
         @Override
         public Collection<String> resolve(String userId, ExecutionContext context) {
+            this.count++;
             this.userId = userId;
             this.context = context;
             return resolvedRoles;
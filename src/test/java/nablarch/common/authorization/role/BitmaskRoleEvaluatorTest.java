@@ -0,0 +1,253 @@
+package nablarch.common.authorization.role;
+
+import nablarch.fw.ExecutionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link BitmaskRoleEvaluator}の単体テスト。
+ */
+public class BitmaskRoleEvaluatorTest {
+    private static final String TEST_USER_ID = "test-user";
+
+    private final BitmaskRoleEvaluator sut = new BitmaskRoleEvaluator();
+    private final MockUserRoleResolver mockUserRoleResolver = new MockUserRoleResolver();
+    private final ExecutionContext context = new ExecutionContext();
+
+    @Before
+    public void setUp() {
+        mockUserRoleResolver.resolvedRoles = Collections.emptyList();
+        sut.setUserRoleResolver(mockUserRoleResolver);
+        sut.setRoles(Arrays.asList("FOO", "BAR", "FIZZ", "BUZZ"));
+        sut.initialize();
+    }
+
+    /**
+     * ユーザIDと実行コンテキストが{@link UserRoleResolver}に渡せていること。
+     */
+    @Test
+    public void testPassUserIdAndContextToResolver() {
+        sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+
+        assertThat(mockUserRoleResolver.userId, is(TEST_USER_ID));
+        assertThat(mockUserRoleResolver.context, is(sameInstance(context)));
+    }
+
+    /**
+     * allOfメソッドのテスト(指定されたロールを全て有する場合のみtrueを返すこと)。
+     */
+    @Test
+    public void testEvaluateAllOf() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FIZZ", "FOO", "BAR");
+
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(true));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO", "BUZZ"), context), is(false));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Collections.<String>emptyList(), context), is(true));
+    }
+
+    /**
+     * anyOfメソッドのテスト(指定されたロールを1つでも有する場合にtrueを返すこと)。
+     */
+    @Test
+    public void testEvaluateAnyOf() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("BAR");
+
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(true));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO", "BUZZ"), context), is(false));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Collections.<String>emptyList(), context), is(false));
+    }
+
+    /**
+     * ロールの一覧に含まれないロールは、どのユーザも有していないものとして判定すること。
+     */
+    @Test
+    public void testUnknownRole() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO", "UNKNOWN");
+
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO", "UNKNOWN"), context), is(false));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("UNKNOWN"), context), is(false));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO", "UNKNOWN"), context), is(true));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("UNKNOWN"), context), is(false));
+    }
+
+    /**
+     * 指定されたロールのうちユーザが有するものを、指定された順序で返すこと。
+     */
+    @Test
+    public void testEvaluateGrantedRoles() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FIZZ", "FOO", "BAR", "UNKNOWN");
+
+        Set<String> actual = sut.evaluateGrantedRoles(
+                TEST_USER_ID, Arrays.asList("BAR", "BUZZ", "UNKNOWN", "FOO"), context);
+
+        assertThat(actual, contains("BAR", "FOO"));
+    }
+
+    /**
+     * 変換済みのビットマスクで判定できること。
+     */
+    @Test
+    public void testEvaluateWithCompiledMask() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO", "BAR");
+        long required = sut.compile(Arrays.asList("BAR", "FOO"));
+
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, required, context), is(true));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, required, context), is(true));
+        assertThat(sut.resolveUserMask(TEST_USER_ID, context), is(required));
+    }
+
+    /**
+     * 同じリクエスト内で同じユーザの判定を繰り返した場合は、{@link UserRoleResolver}を1回のみ呼び出すこと。
+     */
+    @Test
+    public void testResolveOnceInSameRequest() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+        long required = sut.compile(Arrays.asList("FOO"));
+
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(true));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO", "BAR"), context), is(false));
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, required, context), is(true));
+        assertThat(sut.evaluateGrantedRoles(TEST_USER_ID, Arrays.asList("FOO"), context), contains("FOO"));
+
+        assertThat(mockUserRoleResolver.count, is(1));
+    }
+
+    /**
+     * 別のユーザ、別のリクエスト、または初期化し直した後の判定では、再度解決すること。
+     */
+    @Test
+    public void testResolveAgainForOtherUserOrRequest() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+        sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("BAR");
+        assertThat(sut.evaluateAnyOf("other-user", Arrays.asList("FOO"), context), is(false));
+        assertThat(mockUserRoleResolver.userId, is("other-user"));
+        assertThat(sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("BAR"), new ExecutionContext()), is(true));
+
+        sut.setRoles(Arrays.asList("BAR", "FOO"));
+        sut.initialize();
+        assertThat(sut.evaluateAnyOf("other-user", Arrays.asList("BAR"), context), is(true));
+
+        assertThat(mockUserRoleResolver.count, is(4));
+    }
+
+    /**
+     * ビットマスクを保持しない設定の場合は、判定の度に{@link UserRoleResolver}を呼び出すこと。
+     */
+    @Test
+    public void testResolveEveryTimeIfNotMemoizesUserRoles() {
+        sut.setMemoizesUserRoles(false);
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("FOO");
+
+        sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+        sut.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+
+        assertThat(mockUserRoleResolver.count, is(2));
+    }
+
+    /**
+     * {@value BitmaskRoleEvaluator#MAX_ROLES}個のロールまで判定できること。
+     */
+    @Test
+    public void testMaxRoles() {
+        List<String> roles = new ArrayList<String>();
+        for (int i = 0; i < BitmaskRoleEvaluator.MAX_ROLES; i++) {
+            roles.add("ROLE" + i);
+        }
+        sut.setRoles(roles);
+        sut.initialize();
+        mockUserRoleResolver.resolvedRoles = roles;
+
+        assertThat(sut.evaluateAllOf(TEST_USER_ID, roles, context), is(true));
+        assertThat(sut.resolveUserMask(TEST_USER_ID, context), is(Long.MAX_VALUE));
+    }
+
+    /**
+     * ロールが多すぎる場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfTooManyRoles() {
+        List<String> roles = new ArrayList<String>();
+        for (int i = 0; i <= BitmaskRoleEvaluator.MAX_ROLES; i++) {
+            roles.add("ROLE" + i);
+        }
+        sut.setRoles(roles);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+
+        assertThat(exception.getMessage().startsWith("the number of roles must be less than or equal to 63."), is(true));
+    }
+
+    /**
+     * 初期化していない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfNotInitialized() {
+        final BitmaskRoleEvaluator notInitialized = new BitmaskRoleEvaluator();
+        notInitialized.setUserRoleResolver(mockUserRoleResolver);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                notInitialized.evaluateAllOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("BitmaskRoleEvaluator is not initialized."));
+    }
+
+    /**
+     * {@link UserRoleResolver}が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfUserRoleResolverIsNull() {
+        sut.setUserRoleResolver(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.evaluateAnyOf(TEST_USER_ID, Arrays.asList("FOO"), context);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("UserRoleResolver is null."));
+    }
+
+    /**
+     * {@link UserRoleResolver}のモック。
+     */
+    private static class MockUserRoleResolver implements UserRoleResolver {
+        private String userId;
+        private ExecutionContext context;
+        private Collection<String> resolvedRoles;
+        private int count;
+
+        @Override
+        public Collection<String> resolve(String userId, ExecutionContext context) {
+            this.count++;
+            this.userId = userId;
+            this.context = context;
+            return resolvedRoles;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package nablarch.common.authorization.role;
+
+import nablarch.fw.ExecutionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link CachingUserRoleResolver}の単体テスト。
+ */
+public class CachingUserRoleResolverTest {
+    private final ManualClockCachingUserRoleResolver sut = new ManualClockCachingUserRoleResolver();
+    private final CountingUserRoleResolver delegate = new CountingUserRoleResolver();
+    private final ExecutionContext context = new ExecutionContext();
+
+    @Before
+    public void setUp() {
+        sut.setUserRoleResolver(delegate);
+        sut.setExpireAfterWriteMillis(1000L);
+    }
+
+    /**
+     * 2回目以降は委譲先を呼び出さずにキャッシュしたロールの一覧を返すこと。
+     */
+    @Test
+    public void testReturnCachedRoles() {
+        Collection<String> first = sut.resolve("user1", context);
+        Collection<String> second = sut.resolve("user1", context);
+
+        assertThat(first, contains("user1-ROLE"));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(delegate.count, is(1));
+        assertThat(delegate.context, is(sameInstance(context)));
+    }
+
+    /**
+     * 委譲先が返したコレクションを変更しても、キャッシュしたロールの一覧に影響しないこと。
+     */
+    @Test
+    public void testCachedRolesAreCopied() {
+        final Collection<String> roles = sut.resolve("user1", context);
+        delegate.lastResolved.add("ADDED");
+
+        assertThat(sut.resolve("user1", context), contains("user1-ROLE"));
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                roles.add("ADDED");
+            }
+        });
+    }
+
+    /**
+     * 有効期間を過ぎた場合は委譲先から再度解決すること。
+     */
+    @Test
+    public void testResolveAgainAfterExpiration() {
+        sut.resolve("user1", context);
+        sut.now = 999L;
+        sut.resolve("user1", context);
+        assertThat(delegate.count, is(1));
+
+        sut.now = 1000L;
+        sut.resolve("user1", context);
+        assertThat(delegate.count, is(2));
+    }
+
+    /**
+     * 有効期間に0以下を指定した場合は、有効期間による破棄を行わないこと。
+     */
+    @Test
+    public void testNoExpiration() {
+        sut.setExpireAfterWriteMillis(0L);
+        sut.resolve("user1", context);
+        sut.now = Long.MAX_VALUE;
+        sut.resolve("user1", context);
+
+        assertThat(delegate.count, is(1));
+    }
+
+    /**
+     * 上限を超えた場合は、最も長い間参照されていないユーザから破棄すること。
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        sut.setMaxEntries(2);
+        sut.resolve("user1", context);
+        sut.resolve("user2", context);
+        sut.resolve("user1", context);
+        sut.resolve("user3", context);
+        assertThat(delegate.count, is(3));
+
+        sut.resolve("user1", context);
+        assertThat(delegate.count, is(3));
+        sut.resolve("user2", context);
+        assertThat(delegate.count, is(4));
+    }
+
+    /**
+     * 指定したユーザのキャッシュのみ破棄できること。
+     */
+    @Test
+    public void testInvalidate() {
+        sut.resolve("user1", context);
+        sut.resolve("user2", context);
+
+        sut.invalidate("user1");
+        sut.resolve("user1", context);
+        sut.resolve("user2", context);
+
+        assertThat(delegate.count, is(3));
+    }
+
+    /**
+     * 全てのユーザのキャッシュを破棄できること。
+     */
+    @Test
+    public void testInvalidateAll() {
+        sut.resolve("user1", context);
+        sut.resolve("user2", context);
+
+        sut.invalidateAll();
+        sut.resolve("user1", context);
+        sut.resolve("user2", context);
+
+        assertThat(delegate.count, is(4));
+    }
+
+    /**
+     * 解決中にキャッシュが破棄された場合は、解決した結果をキャッシュしないこと。
+     */
+    @Test
+    public void testNotCacheIfInvalidatedWhileResolving() {
+        delegate.onResolve = new Runnable() {
+            @Override
+            public void run() {
+                sut.invalidate("user1");
+            }
+        };
+        sut.resolve("user1", context);
+        delegate.onResolve = null;
+        sut.resolve("user1", context);
+
+        assertThat(delegate.count, is(2));
+    }
+
+    /**
+     * 委譲先が{@code null}を返した場合は空のコレクションを返すこと。
+     */
+    @Test
+    public void testReturnEmptyIfDelegateReturnsNull() {
+        sut.setUserRoleResolver(new UserRoleResolver() {
+            @Override
+            public Collection<String> resolve(String userId, ExecutionContext context) {
+                return null;
+            }
+        });
+
+        assertThat(sut.resolve("user1", context).isEmpty(), is(true));
+    }
+
+    /**
+     * {@link UserRoleResolver}が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfUserRoleResolverIsNull() {
+        sut.setUserRoleResolver(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user1", context);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("UserRoleResolver is null."));
+    }
+
+    /**
+     * 上限に0以下を指定した場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfMaxEntriesIsNotPositive() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.setMaxEntries(0);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("maxEntries must be greater than 0. maxEntries = [0]"));
+    }
+
+    /**
+     * 時刻を任意に設定できる{@link CachingUserRoleResolver}。
+     */
+    private static class ManualClockCachingUserRoleResolver extends CachingUserRoleResolver {
+        private volatile long now = 0L;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * 呼び出し回数を記録する{@link UserRoleResolver}。
+     */
+    private static class CountingUserRoleResolver implements UserRoleResolver {
+        private int count;
+        private ExecutionContext context;
+        private List<String> lastResolved;
+        private Runnable onResolve;
+
+        @Override
+        public Collection<String> resolve(String userId, ExecutionContext context) {
+            count++;
+            this.context = context;
+            if (onResolve != null) {
+                onResolve.run();
+            }
+            lastResolved = new ArrayList<String>(Arrays.asList(userId + "-ROLE"));
+            return lastResolved;
+        }
+    }
+}
@@ -11,9 +11,12 @@ import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -176,6 +179,245 @@ public class CheckRoleImplTest {
         assertThat(mockHandler.param, is(nullValue()));
     }
 
+    /**
+     * 重複したロールは除いて{@link RoleEvaluator}に渡されること。
+     */
+    @Test
+    public void testDuplicateRolesAreRemoved() {
+        class TestAction {
+            @CheckRole({"FOO", "BAR", "FOO"})
+            public void method() {}
+        }
+
+        mockRoleEvaluator.returnValue = false;
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+
+        Forbidden exception = assertThrows(Forbidden.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.handle(param, context);
+            }
+        });
+        assertThat(mockRoleEvaluator.roles, is(contains("FOO", "BAR")));
+        assertThat(exception.getMessage(),
+                is("User has no role. userId=[test-user], roles=[FOO, BAR]"));
+    }
+
+    /**
+     * 同じアノテーションに対しては、インターセプタのインスタンスが異なっても同じロールの条件が使用されること。
+     */
+    @Test
+    public void testRequirementIsCachedPerAnnotation() {
+        class TestAction {
+            @CheckRole({"FOO", "BAR"})
+            public void method() {}
+        }
+
+        mockRoleEvaluator.returnValue = true;
+        CheckRole checkRole = findAnnotation(TestAction.class);
+
+        sut.setInterceptor(checkRole);
+        sut.handle(param, context);
+        Collection<String> first = mockRoleEvaluator.roles;
+
+        CheckRole.Impl other = new CheckRole.Impl();
+        other.setOriginalHandler(mockHandler);
+        other.setInterceptor(checkRole);
+        other.handle(param, context);
+
+        assertThat(mockRoleEvaluator.roles, is(sameInstance(first)));
+    }
+
+    /**
+     * ロールの条件のキャッシュは、アノテーションの{@code equals}と{@code hashCode}を使用せずに参照されること。
+     * また、メソッドから取得し直したアノテーションでもキャッシュが使用されること。
+     */
+    @Test
+    public void testRequirementIsCachedByIdentity() {
+        class TestAction {
+            @CheckRole({"FOO", "BAR"})
+            public void method() {}
+        }
+
+        mockRoleEvaluator.returnValue = true;
+        final CheckRole annotation = findAnnotation(TestAction.class);
+        final CheckRole checkRole = new CheckRole() {
+            @Override
+            public String[] value() {
+                return annotation.value();
+            }
+
+            @Override
+            public boolean anyOf() {
+                return annotation.anyOf();
+            }
+
+            @Override
+            public String expression() {
+                return annotation.expression();
+            }
+
+            @Override
+            public Class<CheckRole> annotationType() {
+                return CheckRole.class;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                throw new UnsupportedOperationException("equals must not be called.");
+            }
+
+            @Override
+            public int hashCode() {
+                throw new UnsupportedOperationException("hashCode must not be called.");
+            }
+        };
+
+        sut.setInterceptor(checkRole);
+        sut.handle(param, context);
+        Collection<String> first = mockRoleEvaluator.roles;
+        sut.handle(param, context);
+        assertThat(mockRoleEvaluator.roles, is(sameInstance(first)));
+
+        sut.setInterceptor(annotation);
+        sut.handle(param, context);
+        Collection<String> cached = mockRoleEvaluator.roles;
+        sut.setInterceptor(findAnnotation(TestAction.class));
+        sut.handle(param, context);
+        assertThat(mockRoleEvaluator.roles, is(sameInstance(cached)));
+    }
+
+    /**
+     * {@link BitmaskRoleEvaluator}を使用した場合も判定できること。
+     * また、システムリポジトリが再読み込みされて{@link BitmaskRoleEvaluator}が変わった場合は、再読み込み後の設定で判定すること。
+     */
+    @Test
+    public void testBitmaskRoleEvaluator() {
+        class TestAction {
+            @CheckRole({"FOO", "BAR"})
+            public void method() {}
+        }
+
+        final UserRoleResolver resolver = new UserRoleResolver() {
+            @Override
+            public Collection<String> resolve(String userId, ExecutionContext context) {
+                return Arrays.asList("BAR", "FOO");
+            }
+        };
+        BitmaskRoleEvaluator evaluator = new BitmaskRoleEvaluator();
+        evaluator.setUserRoleResolver(resolver);
+        evaluator.setRoles(Arrays.asList("FOO", "BAR"));
+        evaluator.initialize();
+        registerComponent("roleEvaluator", evaluator);
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+        assertThat(sut.handle(param, context), is((Object) "test"));
+
+        BitmaskRoleEvaluator reloaded = new BitmaskRoleEvaluator();
+        reloaded.setUserRoleResolver(resolver);
+        reloaded.setRoles(Arrays.asList("BAR"));
+        reloaded.initialize();
+        SystemRepository.clear();
+        registerComponent("roleEvaluator", reloaded);
+
+        assertThrows(Forbidden.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.handle(param, context);
+            }
+        });
+    }
+
+    /**
+     * 条件式を指定した場合、条件式に含まれるロールをまとめて判定した結果で条件式を評価すること。
+     */
+    @Test
+    public void testExpression() {
+        class TestAction {
+            @CheckRole(expression = "ADMIN or (MANAGER and AUDITOR)")
+            public void method() {}
+        }
+
+        final GrantingRoleEvaluator evaluator = new GrantingRoleEvaluator("MANAGER", "AUDITOR");
+        registerComponent("roleEvaluator", evaluator);
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+
+        assertThat(sut.handle(param, context), is((Object) "test"));
+        assertThat(evaluator.candidates, is(contains("ADMIN", "MANAGER", "AUDITOR")));
+        assertThat(evaluator.userId, is("test-user"));
+    }
+
+    /**
+     * 条件式を満たさない場合は{@link Forbidden}がスローされ、メッセージに正規化した条件式が含まれること。
+     */
+    @Test
+    public void testExpressionWhenDenied() {
+        class TestAction {
+            @CheckRole(expression = "ADMIN OR (MANAGER AND AUDITOR)")
+            public void method() {}
+        }
+
+        registerComponent("roleEvaluator", new GrantingRoleEvaluator("MANAGER"));
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+
+        Forbidden exception = assertThrows(Forbidden.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.handle(param, context);
+            }
+        });
+        assertThat(exception.getMessage(),
+                is("User has no role. userId=[test-user], expression=[ADMIN or MANAGER and AUDITOR]"));
+        assertThat(mockHandler.param, is(nullValue()));
+    }
+
+    /**
+     * valueとexpressionの両方を指定した場合は例外がスローされること。
+     */
+    @Test
+    public void testThrownExceptionWhenBothValueAndExpressionAreSpecified() {
+        class TestAction {
+            @CheckRole(value = "FOO", expression = "BAR")
+            public void method() {}
+        }
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.handle(param, context);
+            }
+        });
+        assertThat(exception.getMessage(), is(
+                "either value or expression of CheckRole must be specified. value = [FOO], expression = [BAR]"));
+    }
+
+    /**
+     * expressionとanyOfを同時に指定した場合は例外がスローされること。
+     */
+    @Test
+    public void testThrownExceptionWhenAnyOfIsSpecifiedWithExpression() {
+        class TestAction {
+            @CheckRole(expression = "FOO or BAR", anyOf = true)
+            public void method() {}
+        }
+
+        sut.setInterceptor(findAnnotation(TestAction.class));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.handle(param, context);
+            }
+        });
+        assertThat(exception.getMessage(), is(
+                "anyOf of CheckRole cannot be specified with expression. expression = [FOO or BAR]"));
+    }
+
     /**
      * {@link RoleEvaluator}がシステムリポジトリに登録されていない場合は例外がスローされること。
      */
@@ -225,6 +467,27 @@ public class CheckRoleImplTest {
         throw new RuntimeException("CheckRole annotation is not found.");
     }
 
+    /**
+     * 指定されたロールのみを有すると判定する{@link RoleEvaluator}。
+     */
+    private static class GrantingRoleEvaluator extends MockRoleEvaluator {
+        private final Set<String> grantedRoles;
+        private Collection<String> candidates;
+
+        private GrantingRoleEvaluator(String... grantedRoles) {
+            this.grantedRoles = new HashSet<String>(Arrays.asList(grantedRoles));
+        }
+
+        @Override
+        public Set<String> evaluateGrantedRoles(String userId, Collection<String> roles, ExecutionContext context) {
+            this.userId = userId;
+            this.candidates = roles;
+            Set<String> granted = new HashSet<String>(roles);
+            granted.retainAll(grantedRoles);
+            return granted;
+        }
+    }
+
     /**
      * {@link Handler}のモック。
      */
@@ -137,6 +137,38 @@ public class CheckRoleLoggerTest {
         ));
     }
 
+    /**
+     * expressionを指定した場合のテスト。
+     * <p>
+     * ロールの列に条件式が出力され、anyOfの列は空となること。
+     * </p>
+     */
+    @Test
+    public void testExpression() {
+        sut.setTargetPackage("nablarch.common.authorization.role.expression");
+        sut.setTargetClassPattern("^.*\\.ValidExpressionAction$");
+
+        sut.initialize();
+
+        List<String> logs = OnMemoryLogWriter.getMessages("writer.onMemory");
+        String log = logs.get(logs.size() - 1);
+
+        assertThat(log, is(
+            "DEBUG CheckRole Annotation Settings" + LINE_SEP +
+            format("class", "signature", "role", "anyOf") + LINE_SEP +
+            format(
+                "nablarch.common.authorization.role.expression.ValidExpressionAction",
+                "expression()",
+                "ADMIN OR (MANAGER AND AUDITOR)",
+                "") + LINE_SEP +
+            format(
+                "nablarch.common.authorization.role.expression.ValidExpressionAction",
+                "value()",
+                "FOO",
+                "false") + LINE_SEP
+        ));
+    }
+
     /**
      * デバッグレベルでない場合、ログは出力されないことを確認。
      */
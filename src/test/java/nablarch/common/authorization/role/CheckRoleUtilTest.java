@@ -6,15 +6,19 @@ import nablarch.core.repository.SystemRepository;
 import nablarch.fw.ExecutionContext;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
 
 /**
  * {@link CheckRoleUtil}の単体テスト。
@@ -115,4 +119,70 @@ public class CheckRoleUtilTest {
         mockRoleEvaluator.returnValue = false;
         assertThat(CheckRoleUtil.checkRoleAnyOf(Arrays.asList("FOO", "BAR"), context), is(false));
     }
+
+    /**
+     * getGrantedRolesメソッドのテスト({@link RoleEvaluator}のデフォルトの実装で、ロール毎に判定した結果を返すこと)。
+     */
+    @Test
+    public void testGetGrantedRoles() {
+        registerRoleEvaluator(new MockRoleEvaluator() {
+            @Override
+            public boolean evaluateAllOf(String userId, Collection<String> roles, ExecutionContext context) {
+                return "test-user".equals(userId) && !roles.contains("BAR");
+            }
+        });
+
+        Set<String> actual = CheckRoleUtil.getGrantedRoles(Arrays.asList("FOO", "BAR", "BUZZ"), context);
+
+        assertThat(actual, contains("FOO", "BUZZ"));
+    }
+
+    /**
+     * システムリポジトリが再読み込みされた場合は、同じ実行コンテキストでも再読み込み後の{@link RoleEvaluator}を使用すること。
+     */
+    @Test
+    public void testRoleEvaluatorIsObtainedAfterReload() {
+        mockRoleEvaluator.returnValue = true;
+        assertThat(CheckRoleUtil.checkRole("FOO", context), is(true));
+
+        final MockRoleEvaluator reloaded = new MockRoleEvaluator();
+        reloaded.returnValue = false;
+        SystemRepository.clear();
+        registerRoleEvaluator(reloaded);
+
+        assertThat(CheckRoleUtil.checkRole("FOO", context), is(false));
+        assertThat(reloaded.calledMethodName, is("evaluateAllOf"));
+    }
+
+    /**
+     * {@link RoleEvaluator}がシステムリポジトリに登録されていない場合は例外がスローされること。
+     */
+    @Test
+    public void testThrowExceptionIfRoleEvaluatorIsNotRegistered() {
+        SystemRepository.clear();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                CheckRoleUtil.checkRole("FOO", new ExecutionContext());
+            }
+        });
+
+        assertThat(exception.getMessage(), is("The component of \"roleEvaluator\" is not found."));
+    }
+
+    /**
+     * システムリポジトリに{@link RoleEvaluator}を登録する。
+     * @param roleEvaluator {@link RoleEvaluator}
+     */
+    private void registerRoleEvaluator(final RoleEvaluator roleEvaluator) {
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> objects = new HashMap<String, Object>();
+                objects.put("roleEvaluator", roleEvaluator);
+                return objects;
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package nablarch.common.authorization.role;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link CheckRoleValidator}の単体テスト。
+ */
+public class CheckRoleValidatorTest {
+    private static final String LINE_SEP = System.getProperty("line.separator");
+    private final CheckRoleValidator sut = new CheckRoleValidator();
+
+    @Before
+    public void setUp() {
+        sut.setTargetPackage("nablarch.common.authorization.role.expression");
+    }
+
+    /**
+     * 設定に誤りが無い場合は例外をスローしないこと。
+     */
+    @Test
+    public void testValid() {
+        sut.setTargetClassPattern("^.*\\.ValidExpressionAction$");
+
+        sut.initialize();
+    }
+
+    /**
+     * 設定に誤りがある場合は、該当する全てのメソッドを含む例外をスローすること。
+     */
+    @Test
+    public void testInvalid() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+
+        assertThat(exception.getMessage(), is(
+            "invalid CheckRole annotation settings were found." + LINE_SEP +
+            "nablarch.common.authorization.role.expression.InvalidExpressionAction#anyOfWithExpression: " +
+                "anyOf of CheckRole cannot be specified with expression. expression = [ADMIN]" + LINE_SEP +
+            "nablarch.common.authorization.role.expression.InvalidExpressionAction#bothSpecified: " +
+                "either value or expression of CheckRole must be specified. value = [FOO], expression = [BAR]" + LINE_SEP +
+            "nablarch.common.authorization.role.expression.InvalidExpressionAction#invalidExpression: " +
+                "invalid role expression. unexpected end of expression. expression = [ADMIN or (MANAGER and]"
+        ));
+    }
+}
@@ -0,0 +1,140 @@
+package nablarch.common.authorization.role;
+
+import nablarch.fw.ExecutionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link HierarchicalUserRoleResolver}の単体テスト。
+ */
+public class HierarchicalUserRoleResolverTest {
+    private final HierarchicalUserRoleResolver sut = new HierarchicalUserRoleResolver();
+    private final MockUserRoleResolver mockUserRoleResolver = new MockUserRoleResolver();
+    private final ExecutionContext context = new ExecutionContext();
+
+    @Before
+    public void setUp() {
+        Map<String, String> hierarchy = new HashMap<String, String>();
+        hierarchy.put("ADMIN", "MANAGER");
+        hierarchy.put("MANAGER", "STAFF, GUEST");
+        hierarchy.put("AUDITOR", "GUEST");
+        sut.setHierarchy(hierarchy);
+        sut.setUserRoleResolver(mockUserRoleResolver);
+        sut.initialize();
+    }
+
+    /**
+     * 上位のロールを持つユーザは、包含する全ての下位のロールを持つものとして解決されること。
+     */
+    @Test
+    public void testResolveImpliedRolesTransitively() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("ADMIN", "OTHER");
+
+        assertThat(sut.resolve("user", context),
+                containsInAnyOrder("ADMIN", "OTHER", "MANAGER", "STAFF", "GUEST"));
+        assertThat(mockUserRoleResolver.userId, is("user"));
+        assertThat(mockUserRoleResolver.context, is(sameInstance(context)));
+    }
+
+    /**
+     * 複数のロールが同じ下位のロールを包含する場合も、重複せずに解決されること。
+     */
+    @Test
+    public void testResolveWithoutDuplicates() {
+        mockUserRoleResolver.resolvedRoles = Arrays.asList("MANAGER", "AUDITOR");
+
+        assertThat(sut.resolve("user", context), containsInAnyOrder("MANAGER", "AUDITOR", "STAFF", "GUEST"));
+    }
+
+    /**
+     * 下位のロールを包含しないロールのみの場合は、委譲先の結果をそのまま返すこと。
+     */
+    @Test
+    public void testReturnDelegateResultIfNoRoleImpliesOthers() {
+        List<String> roles = Arrays.asList("STAFF", "OTHER");
+        mockUserRoleResolver.resolvedRoles = roles;
+
+        assertThat(sut.resolve("user", context), is(sameInstance((Collection<String>) roles)));
+    }
+
+    /**
+     * 循環した定義の場合は、循環に含まれるロールを互いに包含するものとして解決すること。
+     */
+    @Test
+    public void testCyclicHierarchy() {
+        Map<String, String> hierarchy = new HashMap<String, String>();
+        hierarchy.put("A", "B");
+        hierarchy.put("B", "C");
+        hierarchy.put("C", "A");
+        sut.setHierarchy(hierarchy);
+        sut.initialize();
+        mockUserRoleResolver.resolvedRoles = Collections.singletonList("B");
+
+        assertThat(sut.resolve("user", context), containsInAnyOrder("A", "B", "C"));
+    }
+
+    /**
+     * 初期化していない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfNotInitialized() {
+        final HierarchicalUserRoleResolver notInitialized = new HierarchicalUserRoleResolver();
+        notInitialized.setUserRoleResolver(mockUserRoleResolver);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                notInitialized.resolve("user", context);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("HierarchicalUserRoleResolver is not initialized."));
+    }
+
+    /**
+     * {@link UserRoleResolver}が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfUserRoleResolverIsNull() {
+        sut.setUserRoleResolver(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user", context);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("UserRoleResolver is null."));
+    }
+
+    /**
+     * {@link UserRoleResolver}のモック。
+     */
+    private static class MockUserRoleResolver implements UserRoleResolver {
+        private String userId;
+        private ExecutionContext context;
+        private Collection<String> resolvedRoles = Collections.emptyList();
+
+        @Override
+        public Collection<String> resolve(String userId, ExecutionContext context) {
+            this.userId = userId;
+            this.context = context;
+            return resolvedRoles;
+        }
+    }
+}
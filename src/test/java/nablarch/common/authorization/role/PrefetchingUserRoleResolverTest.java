@@ -0,0 +1,222 @@
+package nablarch.common.authorization.role;
+
+import nablarch.fw.ExecutionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link PrefetchingUserRoleResolver}の単体テスト。
+ */
+public class PrefetchingUserRoleResolverTest {
+    private final PrefetchingUserRoleResolver sut = new PrefetchingUserRoleResolver();
+    private final MockAsyncUserRoleResolver mockAsyncUserRoleResolver = new MockAsyncUserRoleResolver();
+    private final ExecutionContext context = new ExecutionContext();
+
+    @Before
+    public void setUp() {
+        sut.setAsyncUserRoleResolver(mockAsyncUserRoleResolver);
+    }
+
+    /**
+     * 先行して開始した解決の結果を返し、解決を再度開始しないこと。
+     */
+    @Test
+    public void testResolvePrefetchedRoles() {
+        sut.prefetch("user", context);
+        sut.prefetch("user", context);
+        assertThat(mockAsyncUserRoleResolver.userIds, is(Arrays.asList("user")));
+        assertThat(mockAsyncUserRoleResolver.contexts.get(0), is(sameInstance(context)));
+
+        mockAsyncUserRoleResolver.futures.get(0).complete(Arrays.asList("ADMIN"));
+
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("ADMIN")));
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("ADMIN")));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(1));
+    }
+
+    /**
+     * 解決を開始していない場合は、その場で解決を開始して結果を返すこと。
+     */
+    @Test
+    public void testResolveWithoutPrefetch() {
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("STAFF");
+
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("STAFF")));
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("STAFF")));
+        assertThat(mockAsyncUserRoleResolver.userIds, is(Arrays.asList("user")));
+    }
+
+    /**
+     * 解決を開始したユーザと異なるユーザのロールを要求された場合は、解決を開始し直すこと。
+     */
+    @Test
+    public void testResolveOtherUser() {
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("STAFF");
+        sut.prefetch("user", context);
+
+        assertThat(sut.resolve("other", context), is((Collection<String>) Arrays.asList("STAFF")));
+        assertThat(mockAsyncUserRoleResolver.userIds, is(Arrays.asList("user", "other")));
+    }
+
+    /**
+     * 実行コンテキストが{@code null}の場合は、先行して開始せずにその場で解決すること。
+     */
+    @Test
+    public void testResolveWithoutContext() {
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("STAFF");
+        sut.prefetch("user", null);
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(0));
+
+        assertThat(sut.resolve("user", null), is((Collection<String>) Arrays.asList("STAFF")));
+        assertThat(sut.resolve("user", null), is((Collection<String>) Arrays.asList("STAFF")));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(2));
+    }
+
+    /**
+     * 解決結果が{@code null}の場合は空のコレクションを返すこと。
+     */
+    @Test
+    public void testResolveNull() {
+        sut.prefetch("user", context);
+        mockAsyncUserRoleResolver.futures.get(0).complete(null);
+
+        assertThat(sut.resolve("user", context).isEmpty(), is(true));
+    }
+
+    /**
+     * 解決の開始に失敗した場合は例外をスローせず、ロールを要求された時点で改めて解決を開始すること。
+     */
+    @Test
+    public void testPrefetchFailure() {
+        mockAsyncUserRoleResolver.failure = new IllegalStateException("failed to start.");
+        sut.prefetch("user", context);
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(1));
+
+        mockAsyncUserRoleResolver.failure = null;
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("ADMIN");
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("ADMIN")));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(2));
+    }
+
+    /**
+     * 時間内に解決できなかった場合は、解決をキャンセルして例外をスローすること。
+     * また、再度要求された場合は改めて解決を開始すること。
+     */
+    @Test
+    public void testTimeout() {
+        sut.setTimeoutMillis(10L);
+        sut.prefetch("user", context);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user", context);
+            }
+        });
+        assertThat(e.getMessage(),
+                is("failed to resolve user roles within the timeout. userId = [user], timeoutMillis = [10]"));
+        assertThat(mockAsyncUserRoleResolver.futures.get(0).isCancelled(), is(true));
+
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("ADMIN");
+        assertThat(sut.resolve("user", context), is((Collection<String>) Arrays.asList("ADMIN")));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(2));
+    }
+
+    /**
+     * 解決に失敗した場合は、失敗した原因の例外をスローすること。
+     */
+    @Test
+    public void testResolveFailure() {
+        final IllegalArgumentException cause = new IllegalArgumentException("failure");
+        sut.prefetch("user", context);
+        mockAsyncUserRoleResolver.futures.get(0).completeExceptionally(cause);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user", context);
+            }
+        });
+        assertThat(e, is(sameInstance(cause)));
+    }
+
+    /**
+     * 検査例外で解決に失敗した場合は、{@link IllegalStateException}でラップしてスローすること。
+     */
+    @Test
+    public void testResolveCheckedFailure() {
+        final Exception cause = new Exception("failure");
+        sut.prefetch("user", context);
+        mockAsyncUserRoleResolver.futures.get(0).completeExceptionally(cause);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user", context);
+            }
+        });
+        assertThat(e.getMessage(), is("failed to resolve user roles. userId = [user]"));
+        assertThat(e.getCause(), is(sameInstance((Throwable) cause)));
+    }
+
+    /**
+     * {@link AsyncUserRoleResolver}が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testAsyncUserRoleResolverIsNull() {
+        final PrefetchingUserRoleResolver sut = new PrefetchingUserRoleResolver();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.resolve("user", context);
+            }
+        });
+        assertThat(e.getMessage(), is("AsyncUserRoleResolver is null."));
+    }
+
+    /**
+     * テスト用の{@link AsyncUserRoleResolver}。
+     * <p>
+     * {@link #completedRoles}が設定されている場合は完了済みの結果を、
+     * 設定されていない場合は未完了の結果を返す。
+     * {@link #failure}が設定されている場合は、解決を開始せずに例外をスローする。
+     * </p>
+     */
+    public static class MockAsyncUserRoleResolver implements AsyncUserRoleResolver {
+        final List<String> userIds = new ArrayList<String>();
+        final List<ExecutionContext> contexts = new ArrayList<ExecutionContext>();
+        final List<CompletableFuture<Collection<String>>> futures =
+                new ArrayList<CompletableFuture<Collection<String>>>();
+        Collection<String> completedRoles;
+        RuntimeException failure;
+
+        @Override
+        public CompletionStage<Collection<String>> resolveAsync(String userId, ExecutionContext context) {
+            userIds.add(userId);
+            contexts.add(context);
+            if (failure != null) {
+                throw failure;
+            }
+            final CompletableFuture<Collection<String>> future = new CompletableFuture<Collection<String>>();
+            if (completedRoles != null) {
+                future.complete(completedRoles);
+            }
+            futures.add(future);
+            return future;
+        }
+    }
+}
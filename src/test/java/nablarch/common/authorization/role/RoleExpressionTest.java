@@ -0,0 +1,105 @@
+package nablarch.common.authorization.role;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link RoleExpression}の単体テスト。
+ */
+public class RoleExpressionTest {
+
+    /**
+     * {@code and}、{@code or}、括弧を組み合わせた条件式を評価できること。
+     */
+    @Test
+    public void testEvaluate() {
+        RoleExpression sut = RoleExpression.parse("ADMIN or (MANAGER and AUDITOR)");
+
+        assertThat(sut.evaluate(roles("ADMIN")), is(true));
+        assertThat(sut.evaluate(roles("MANAGER", "AUDITOR")), is(true));
+        assertThat(sut.evaluate(roles("MANAGER")), is(false));
+        assertThat(sut.evaluate(roles()), is(false));
+    }
+
+    /**
+     * 優先順位が{@code not}、{@code and}、{@code or}の順に高いこと。
+     */
+    @Test
+    public void testPrecedence() {
+        RoleExpression sut = RoleExpression.parse("A or B and not C");
+
+        assertThat(sut.evaluate(roles("A", "C")), is(true));
+        assertThat(sut.evaluate(roles("B")), is(true));
+        assertThat(sut.evaluate(roles("B", "C")), is(false));
+        assertThat(sut.toString(), is("A or B and not C"));
+    }
+
+    /**
+     * 演算子の大文字と小文字を区別しないこと。また、正規化した条件式を取得できること。
+     */
+    @Test
+    public void testKeywordsAreCaseInsensitive() {
+        RoleExpression sut = RoleExpression.parse("  (A  OR B)And NOT(C and D) ");
+
+        assertThat(sut.evaluate(roles("A", "C")), is(true));
+        assertThat(sut.evaluate(roles("B", "C", "D")), is(false));
+        assertThat(sut.toString(), is("(A or B) and not (C and D)"));
+    }
+
+    /**
+     * 条件式に含まれるロールを、出現順に重複を除いて取得できること。
+     */
+    @Test
+    public void testGetRoles() {
+        RoleExpression sut = RoleExpression.parse("B or (A and B) or not C");
+
+        assertThat(sut.getRoles(), contains("B", "A", "C"));
+    }
+
+    /**
+     * 条件式に誤りがある場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfExpressionIsInvalid() {
+        assertInvalid("", "invalid role expression. expression is empty. expression = []");
+        assertInvalid("A and", "invalid role expression. unexpected end of expression. expression = [A and]");
+        assertInvalid("(A or B", "invalid role expression. ')' is expected. expression = [(A or B]");
+        assertInvalid("A B", "invalid role expression. unexpected token [B]. expression = [A B]");
+        assertInvalid("A or )", "invalid role expression. unexpected token [)]. expression = [A or )]");
+        assertInvalid("and A", "invalid role expression. unexpected token [and]. expression = [and A]");
+    }
+
+    /**
+     * 条件式の解析に失敗し、指定されたメッセージの例外がスローされることを検証する。
+     * @param expression 条件式
+     * @param expectedMessage 例外のメッセージ
+     */
+    private static void assertInvalid(final String expression, String expectedMessage) {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                RoleExpression.parse(expression);
+            }
+        });
+        assertThat(exception.getMessage(), is(expectedMessage));
+    }
+
+    /**
+     * ロールの一覧を生成する。
+     * @param roles ロール
+     * @return ロールの一覧
+     */
+    private static Set<String> roles(String... roles) {
+        return roles.length == 0 ? Collections.<String>emptySet() : new HashSet<String>(Arrays.asList(roles));
+    }
+}
@@ -0,0 +1,75 @@
+package nablarch.common.authorization.role;
+
+import nablarch.common.authorization.role.PrefetchingUserRoleResolverTest.MockAsyncUserRoleResolver;
+import nablarch.core.ThreadContext;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link UserRolePrefetchHandler}の単体テスト。
+ */
+public class UserRolePrefetchHandlerTest {
+    private final UserRolePrefetchHandler sut = new UserRolePrefetchHandler();
+    private final PrefetchingUserRoleResolver prefetchingUserRoleResolver = new PrefetchingUserRoleResolver();
+    private final MockAsyncUserRoleResolver mockAsyncUserRoleResolver = new MockAsyncUserRoleResolver();
+
+    @Before
+    public void setUp() {
+        ThreadContext.clear();
+        prefetchingUserRoleResolver.setAsyncUserRoleResolver(mockAsyncUserRoleResolver);
+        sut.setPrefetchingUserRoleResolver(prefetchingUserRoleResolver);
+    }
+
+    @After
+    public void tearDown() {
+        ThreadContext.clear();
+    }
+
+    /**
+     * 後続のハンドラを実行する前にロールの解決を開始し、後続のハンドラではその結果を参照できること。
+     */
+    @Test
+    public void testPrefetchBeforeHandleNext() {
+        ThreadContext.setUserId("user");
+        mockAsyncUserRoleResolver.completedRoles = Arrays.asList("ADMIN");
+
+        final ExecutionContext context = new ExecutionContext();
+        context.addHandler(sut);
+        context.addHandler(new Handler<Object, Object>() {
+            @Override
+            public Object handle(Object data, ExecutionContext context) {
+                assertThat(mockAsyncUserRoleResolver.userIds, is(Arrays.asList("user")));
+                return prefetchingUserRoleResolver.resolve("user", context);
+            }
+        });
+
+        assertThat(context.handleNext("input"), is((Object) Arrays.asList("ADMIN")));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(1));
+    }
+
+    /**
+     * ユーザIDが設定されていない場合は、ロールの解決を開始せずに後続のハンドラに処理を委譲すること。
+     */
+    @Test
+    public void testNoUserId() {
+        final ExecutionContext context = new ExecutionContext();
+        context.addHandler(sut);
+        context.addHandler(new Handler<Object, Object>() {
+            @Override
+            public Object handle(Object data, ExecutionContext context) {
+                return data;
+            }
+        });
+
+        assertThat(context.handleNext("input"), is((Object) "input"));
+        assertThat(mockAsyncUserRoleResolver.userIds.size(), is(0));
+    }
+}
@@ -0,0 +1,26 @@
+package nablarch.common.authorization.role.expression;
+
+import nablarch.common.authorization.role.CheckRole;
+
+public class InvalidExpressionAction {
+
+    @CheckRole(expression = "ADMIN or (MANAGER and")
+    public void invalidExpression() {
+        // 条件式に誤りがある
+    }
+
+    @CheckRole(value = "FOO", expression = "BAR")
+    public void bothSpecified() {
+        // value と expression の両方を指定している
+    }
+
+    @CheckRole(expression = "ADMIN", anyOf = true)
+    public void anyOfWithExpression() {
+        // expression と anyOf を同時に指定している
+    }
+
+    @CheckRole(expression = "ADMIN")
+    public void validExpression() {
+        // 対象
+    }
+}
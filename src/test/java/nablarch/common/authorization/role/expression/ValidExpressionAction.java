@@ -0,0 +1,16 @@
+package nablarch.common.authorization.role.expression;
+
+import nablarch.common.authorization.role.CheckRole;
+
+public class ValidExpressionAction {
+
+    @CheckRole(expression = "ADMIN OR (MANAGER AND AUDITOR)")
+    public void expression() {
+        // 対象
+    }
+
+    @CheckRole("FOO")
+    public void value() {
+        // 対象
+    }
+}
@@ -0,0 +1,159 @@
+package nablarch.common.availability;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link FileServiceAvailabilityChangeDetector}のテスト。
+ */
+public class FileServiceAvailabilityChangeDetectorTest {
+
+    private final FileServiceAvailabilityChangeDetector sut = new FileServiceAvailabilityChangeDetector();
+
+    private Path directory;
+
+    private Path file;
+
+    /** 変更が検知されるまで待ち合わせる時間の上限(ミリ秒) */
+    private static final long CHANGE_TIMEOUT_MILLIS = 20000L;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("availability");
+        file = directory.resolve("availability.version");
+        Files.write(file, "1".getBytes(StandardCharsets.UTF_8));
+        sut.setFilePath(file.toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.dispose();
+        for (File child : directory.toFile().listFiles()) {
+            Files.delete(child.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * ファイルが更新された場合は変更を検知し、検知した変更を再度通知しないこと。
+     */
+    @Test(timeout = 30000L)
+    public void testDetectModification() throws Exception {
+        sut.initialize();
+        assertThat(sut.hasChanged(), is(false));
+
+        Files.write(file, "2".getBytes(StandardCharsets.UTF_8));
+        assertThat(awaitChange(CHANGE_TIMEOUT_MILLIS), is(true));
+        assertThat(sut.hasChanged(), is(false));
+    }
+
+    /**
+     * ファイルが削除された場合、および作成された場合に変更を検知すること。
+     */
+    @Test(timeout = 30000L)
+    public void testDetectDeletionAndCreation() throws Exception {
+        sut.initialize();
+
+        Files.delete(file);
+        assertThat(awaitChange(CHANGE_TIMEOUT_MILLIS), is(true));
+
+        Files.write(file, "3".getBytes(StandardCharsets.UTF_8));
+        assertThat(awaitChange(CHANGE_TIMEOUT_MILLIS), is(true));
+    }
+
+    /**
+     * 同じディレクトリの他のファイルが更新されても、変更として検知しないこと。
+     */
+    @Test(timeout = 30000L)
+    public void testIgnoreOtherFiles() throws Exception {
+        sut.initialize();
+
+        Files.write(directory.resolve("other.txt"), "other".getBytes(StandardCharsets.UTF_8));
+        Files.write(file, "2".getBytes(StandardCharsets.UTF_8));
+        assertThat(awaitChange(CHANGE_TIMEOUT_MILLIS), is(true));
+        // 1回の更新で複数のイベントが通知される場合があるため、通知が止むまで読み捨てる
+        while (awaitChange(200L)) {
+            continue;
+        }
+
+        Files.write(directory.resolve("other.txt"), "other2".getBytes(StandardCharsets.UTF_8));
+        assertThat(awaitChange(500L), is(false));
+    }
+
+    /**
+     * 初期化前または廃棄後に判定した場合は、例外をスローすること。
+     */
+    @Test
+    public void testNotInitialized() {
+        ThrowingRunnable hasChanged = new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.hasChanged();
+            }
+        };
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, hasChanged);
+        assertThat(e.getMessage(), is("FileServiceAvailabilityChangeDetector is not initialized."));
+
+        sut.initialize();
+        sut.dispose();
+        e = assertThrows(IllegalStateException.class, hasChanged);
+        assertThat(e.getMessage(), is("FileServiceAvailabilityChangeDetector is not initialized."));
+    }
+
+    /**
+     * ファイルのパスが設定されていない場合、またはディレクトリが存在しない場合は、例外をスローすること。
+     */
+    @Test
+    public void testInvalidFilePath() {
+        final FileServiceAvailabilityChangeDetector sut = new FileServiceAvailabilityChangeDetector();
+        ThrowingRunnable initialize = new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        };
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, initialize);
+        assertThat(e.getMessage(), is("filePath is null."));
+
+        final Path notExist = directory.resolve("notExist").resolve("availability.version").toAbsolutePath();
+        sut.setFilePath(notExist.toString());
+        e = assertThrows(IllegalStateException.class, initialize);
+        assertThat(e.getMessage(), is("failed to watch file. file = [" + notExist + "]"));
+    }
+
+    /**
+     * 変更が検知されるまで、指定された時間を上限として待ち合わせる。
+     * <br>
+     * {@link java.nio.file.WatchService}はイベントの通知を待ち合わせる手段を提供しないため、
+     * 上限までの間、短い間隔で確認する。
+     *
+     * @param timeoutMillis 待ち合わせる時間の上限(ミリ秒)
+     * @return 上限までに変更が検知された場合は {@code true}
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private boolean awaitChange(long timeoutMillis) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!sut.hasChanged()) {
+            if (System.nanoTime() - deadline >= 0L) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,288 @@
+package nablarch.common.availability;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link MaintenanceWindowServiceAvailability}のテスト。
+ */
+public class MaintenanceWindowServiceAvailabilityTest {
+
+    private final ManualClockMaintenanceWindowServiceAvailability sut =
+            new ManualClockMaintenanceWindowServiceAvailability();
+
+    private final MockServiceAvailability delegate = new MockServiceAvailability();
+
+    private final List<MaintenanceWindow> windows = new ArrayList<MaintenanceWindow>();
+
+    @Before
+    public void setUp() {
+        sut.setServiceAvailability(delegate);
+        sut.setMaintenanceWindows(windows);
+        sut.setZoneId("UTC");
+    }
+
+    /**
+     * 開始日時と終了日時を指定した時間帯は、その期間のみパターンに一致するリクエストIDを提供不可とすること。
+     */
+    @Test
+    public void testFixedWindow() {
+        windows.add(fixedWindow("RW2*", "2026-10-17T02:00", "2026-10-17T04:00"));
+        sut.setNow("2026-10-17T01:59:59");
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW2001"), is(true));
+
+        sut.setNow("2026-10-17T02:00");
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW2"), is(false));
+        assertThat(sut.isAvailable("RW1001"), is(true));
+
+        sut.now = sut.now + 2 * 60 * 60 * 1000L - 1L;
+        assertThat(sut.isAvailable("RW2001"), is(false));
+
+        sut.setNow("2026-10-17T04:00");
+        assertThat(sut.isAvailable("RW2001"), is(true));
+
+        sut.setNow("2027-01-01T00:00");
+        assertThat(sut.isAvailable("RW2001"), is(true));
+    }
+
+    /**
+     * 時間帯以外は委譲先で判定し、時間帯であっても一致しないリクエストIDは委譲先で判定すること。
+     */
+    @Test
+    public void testDelegate() {
+        windows.add(fixedWindow("RW2001", "2026-10-17T02:00", "2026-10-17T04:00"));
+        delegate.unavailableRequestIds.add("RW1001");
+        sut.setNow("2026-10-17T03:00");
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW20011"), is(true));
+        assertThat(sut.isAvailable("RW1001"), is(false));
+        assertThat(sut.isAvailable(null), is(true));
+
+        sut.setNow("2026-10-17T05:00");
+        assertThat(sut.isAvailable("RW1001"), is(false));
+        assertThat(sut.isAvailable("RW2001"), is(true));
+    }
+
+    /**
+     * 時刻を指定した時間帯は毎日繰り返し、終了時刻が開始時刻以前の場合は翌日の終了時刻までとすること。
+     */
+    @Test
+    public void testRecurringWindow() {
+        windows.add(recurringWindow("*", "23:00", "01:00", null));
+        sut.setNow("2026-10-17T22:59:59");
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW1001"), is(true));
+
+        sut.setNow("2026-10-17T23:00");
+        assertThat(sut.isAvailable("RW1001"), is(false));
+
+        sut.setNow("2026-10-18T00:30");
+        assertThat(sut.isAvailable("RW1001"), is(false));
+
+        sut.setNow("2026-10-18T01:00");
+        assertThat(sut.isAvailable("RW1001"), is(true));
+
+        sut.setNow("2026-10-18T23:30");
+        assertThat(sut.isAvailable("RW1001"), is(false));
+    }
+
+    /**
+     * 曜日を指定した場合は、その曜日に開始する時間帯のみ提供不可とすること。
+     * (2026-10-17は土曜日)
+     */
+    @Test
+    public void testRecurringWindowWithDaysOfWeek() {
+        windows.add(recurringWindow("RW2*", "02:00", "04:00", "sun, Wednesday"));
+        windows.add(recurringWindow("RW3*", "23:00", "01:00", "SAT"));
+        sut.setNow("2026-10-17T03:00");
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW2001"), is(true));
+        assertThat(sut.isAvailable("RW3001"), is(true));
+
+        sut.setNow("2026-10-17T23:30");
+        assertThat(sut.isAvailable("RW2001"), is(true));
+        assertThat(sut.isAvailable("RW3001"), is(false));
+
+        sut.setNow("2026-10-18T00:30");
+        assertThat(sut.isAvailable("RW3001"), is(false));
+
+        sut.setNow("2026-10-18T03:00");
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW3001"), is(true));
+
+        sut.setNow("2026-10-18T23:30");
+        assertThat(sut.isAvailable("RW3001"), is(true));
+
+        sut.setNow("2026-10-20T03:00");
+        assertThat(sut.isAvailable("RW2001"), is(true));
+
+        sut.setNow("2026-10-21T03:00");
+        assertThat(sut.isAvailable("RW2001"), is(false));
+    }
+
+    /**
+     * 複数の時間帯が重なる場合は、いずれかの時間帯に含まれるリクエストIDを提供不可とすること。
+     */
+    @Test
+    public void testOverlappingWindows() {
+        windows.add(fixedWindow("RW2*", "2026-10-17T02:00", "2026-10-17T04:00"));
+        windows.add(fixedWindow("RW3001", "2026-10-17T03:00", "2026-10-17T05:00"));
+        sut.setNow("2026-10-17T00:00");
+        sut.initialize();
+
+        sut.setNow("2026-10-17T03:30");
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW3001"), is(false));
+        assertThat(sut.isAvailable("RW3002"), is(true));
+
+        sut.setNow("2026-10-17T04:30");
+        assertThat(sut.isAvailable("RW2001"), is(true));
+        assertThat(sut.isAvailable("RW3001"), is(false));
+    }
+
+    /**
+     * 時間帯の定義が不正な場合は、例外をスローすること。
+     */
+    @Test
+    public void testInvalidWindow() {
+        assertInvalid(fixedWindow(null, "2026-10-17T02:00", "2026-10-17T04:00"),
+                "requestIdPattern of maintenance window must be specified.");
+        assertInvalid(fixedWindow("RW*1", "2026-10-17T02:00", "2026-10-17T04:00"),
+                "wildcard '*' is only allowed at the end of pattern. pattern = [RW*1]");
+
+        final String message =
+                "invalid maintenance window. either start/end or startTime/endTime must be specified correctly.";
+        assertInvalid(fixedWindow("RW2*", "2026-10-17T04:00", "2026-10-17T02:00"), message
+                + " requestIdPattern = [RW2*], start = [2026-10-17T04:00], end = [2026-10-17T02:00]"
+                + ", startTime = [null], endTime = [null], daysOfWeek = [null]");
+        assertInvalid(fixedWindow("RW2*", "2026-10-17T02:00", null), message
+                + " requestIdPattern = [RW2*], start = [2026-10-17T02:00], end = [null]"
+                + ", startTime = [null], endTime = [null], daysOfWeek = [null]");
+        assertInvalid(fixedWindow("RW2*", "2026/10/17 02:00", "2026-10-17T04:00"), message
+                + " requestIdPattern = [RW2*], start = [2026/10/17 02:00], end = [2026-10-17T04:00]"
+                + ", startTime = [null], endTime = [null], daysOfWeek = [null]");
+        assertInvalid(recurringWindow("RW2*", "02:00", null, null), message
+                + " requestIdPattern = [RW2*], start = [null], end = [null]"
+                + ", startTime = [02:00], endTime = [null], daysOfWeek = [null]");
+        assertInvalid(recurringWindow("RW2*", "02:00", "04:00", "SU"), message
+                + " requestIdPattern = [RW2*], start = [null], end = [null]"
+                + ", startTime = [02:00], endTime = [04:00], daysOfWeek = [SU]");
+        assertInvalid(recurringWindow("RW2*", null, null, null), message
+                + " requestIdPattern = [RW2*], start = [null], end = [null]"
+                + ", startTime = [null], endTime = [null], daysOfWeek = [null]");
+
+        MaintenanceWindow both = fixedWindow("RW2*", "2026-10-17T02:00", "2026-10-17T04:00");
+        both.setStartTime("02:00");
+        both.setEndTime("04:00");
+        assertInvalid(both, message
+                + " requestIdPattern = [RW2*], start = [2026-10-17T02:00], end = [2026-10-17T04:00]"
+                + ", startTime = [02:00], endTime = [04:00], daysOfWeek = [null]");
+    }
+
+    /**
+     * 初期化前に判定した場合、または委譲先が設定されていない場合は、例外をスローすること。
+     */
+    @Test
+    public void testNotInitialized() {
+        final MaintenanceWindowServiceAvailability sut = new MaintenanceWindowServiceAvailability();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.isAvailable("RW1001");
+            }
+        });
+        assertThat(e.getMessage(), is("MaintenanceWindowServiceAvailability is not initialized."));
+
+        e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("ServiceAvailability is null."));
+    }
+
+    /**
+     * 時間帯の定義が不正な場合に、初期化時に例外がスローされることを検証する。
+     * @param window 時間帯の定義
+     * @param expectedMessage 例外のメッセージ
+     */
+    private void assertInvalid(MaintenanceWindow window, String expectedMessage) {
+        windows.clear();
+        windows.add(window);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is(expectedMessage));
+    }
+
+    private static MaintenanceWindow fixedWindow(String pattern, String start, String end) {
+        MaintenanceWindow window = new MaintenanceWindow();
+        window.setRequestIdPattern(pattern);
+        window.setStart(start);
+        window.setEnd(end);
+        return window;
+    }
+
+    private static MaintenanceWindow recurringWindow(
+            String pattern, String startTime, String endTime, String daysOfWeek) {
+        MaintenanceWindow window = new MaintenanceWindow();
+        window.setRequestIdPattern(pattern);
+        window.setStartTime(startTime);
+        window.setEndTime(endTime);
+        window.setDaysOfWeek(daysOfWeek);
+        return window;
+    }
+
+    /**
+     * 現在時刻を任意に設定できる{@link MaintenanceWindowServiceAvailability}。
+     */
+    private static class ManualClockMaintenanceWindowServiceAvailability extends MaintenanceWindowServiceAvailability {
+        private long now = 0L;
+
+        private void setNow(String dateTime) {
+            now = LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * テスト用の{@link ServiceAvailability}。
+     */
+    private static class MockServiceAvailability implements ServiceAvailability {
+        private final Set<String> unavailableRequestIds = new HashSet<String>();
+
+        @Override
+        public boolean isAvailable(String requestId) {
+            return !unavailableRequestIds.contains(requestId);
+        }
+    }
+}
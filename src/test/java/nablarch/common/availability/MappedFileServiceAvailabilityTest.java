@@ -0,0 +1,252 @@
+package nablarch.common.availability;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link MappedFileServiceAvailability}のテスト。
+ */
+public class MappedFileServiceAvailabilityTest {
+
+    private final MappedFileServiceAvailability sut = new MappedFileServiceAvailability();
+
+    private Path directory;
+
+    private String filePath;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("availability");
+        filePath = directory.resolve("availability.dat").toString();
+
+        Map<String, Boolean> states = new HashMap<String, Boolean>();
+        states.put("R0001", true);
+        states.put("R0002", false);
+        states.put("リクエスト", true);
+        MappedFileServiceAvailabilityWriter.write(filePath, states);
+
+        sut.setFilePath(filePath);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (File child : directory.toFile().listFiles()) {
+            Files.delete(child.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * ファイルに書き込んだサービス提供可否状態で判定すること。
+     */
+    @Test
+    public void testIsAvailable() {
+        sut.initialize();
+
+        assertThat(sut.isAvailable("R0001"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+        assertThat(sut.isAvailable("リクエスト"), is(true));
+    }
+
+    /**
+     * ファイルに存在しないリクエストIDは、{@code defaultAvailable}に従って判定すること。
+     */
+    @Test
+    public void testDefaultAvailable() {
+        sut.initialize();
+        assertThat(sut.isAvailable("UNKNOWN"), is(false));
+        assertThat(sut.isAvailable(null), is(false));
+
+        sut.setDefaultAvailable(true);
+        assertThat(sut.isAvailable("UNKNOWN"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+    }
+
+    /**
+     * ファイルを直接更新した場合は、マップし直さずに更新後の状態で判定すること。
+     */
+    @Test
+    public void testSetAvailable() {
+        sut.initialize();
+
+        assertThat(MappedFileServiceAvailabilityWriter.setAvailable(filePath, "R0001", false), is(true));
+        assertThat(MappedFileServiceAvailabilityWriter.setAvailable(filePath, "R0002", true), is(true));
+        assertThat(sut.isAvailable("R0001"), is(false));
+        assertThat(sut.isAvailable("R0002"), is(true));
+
+        assertThat(MappedFileServiceAvailabilityWriter.setAvailable(filePath, "UNKNOWN", true), is(false));
+        assertThat(sut.isAvailable("UNKNOWN"), is(false));
+    }
+
+    /**
+     * ファイルが作成し直された場合は、新しいファイルをマップし直して判定すること。
+     * 一時ファイルは残さないこと。
+     */
+    @Test
+    public void testRewrite() {
+        sut.initialize();
+        assertThat(sut.isAvailable("R0003"), is(false));
+
+        Map<String, Boolean> states = new HashMap<String, Boolean>();
+        states.put("R0001", false);
+        states.put("R0003", true);
+        MappedFileServiceAvailabilityWriter.write(filePath, states);
+
+        assertThat(sut.isAvailable("R0001"), is(false));
+        assertThat(sut.isAvailable("R0002"), is(false));
+        assertThat(sut.isAvailable("R0003"), is(true));
+        assertThat(directory.toFile().list().length, is(1));
+
+        MappedFileServiceAvailabilityWriter.setAvailable(filePath, "R0003", false);
+        assertThat(sut.isAvailable("R0003"), is(false));
+    }
+
+    /**
+     * 作成し直されたファイルをマップできなかった場合は、置き換えられる前のファイルで判定を続け、
+     * 再度マップし直すまでの間隔が経過した後にマップし直すこと。
+     */
+    @Test
+    public void testRemapFailure() throws IOException {
+        final ManualClockMappedFileServiceAvailability sut = new ManualClockMappedFileServiceAvailability();
+        sut.setFilePath(filePath);
+        sut.setRemapRetryIntervalMillis(1000L);
+        sut.initialize();
+
+        Map<String, Boolean> states = new HashMap<String, Boolean>();
+        states.put("R0001", false);
+        MappedFileServiceAvailabilityWriter.write(filePath, states);
+        Files.write(directory.resolve("availability.dat"), "invalid file".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(sut.isAvailable("R0001"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+
+        MappedFileServiceAvailabilityWriter.write(filePath, states);
+        sut.now = 999L;
+        assertThat("間隔が経過するまではマップし直さないこと", sut.isAvailable("R0001"), is(true));
+
+        sut.now = 1000L;
+        assertThat(sut.isAvailable("R0001"), is(false));
+    }
+
+    /**
+     * 廃棄した後に判定した場合は、例外をスローすること。
+     */
+    @Test
+    public void testDispose() {
+        sut.initialize();
+        sut.dispose();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.isAvailable("R0001");
+            }
+        });
+        assertThat(e.getMessage(), is("MappedFileServiceAvailability is not initialized."));
+    }
+
+    /**
+     * 形式が不正なファイルを指定した場合は、例外をスローすること。
+     */
+    @Test
+    public void testInvalidFile() throws IOException {
+        Files.write(directory.resolve("availability.dat"), "invalid file".getBytes(StandardCharsets.UTF_8));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("invalid service availability file. file = [" + filePath + "]"));
+    }
+
+    /**
+     * リクエストIDの数がファイルの大きさと矛盾する場合は、例外をスローすること。
+     */
+    @Test
+    public void testInvalidCount() throws IOException {
+        for (int count : new int[] {-1, Integer.MAX_VALUE, 1}) {
+            ByteBuffer header = ByteBuffer.allocate(18);
+            header.putInt(0x4E41564C).putInt(1).putInt(0).putInt(count);
+            Files.write(directory.resolve("availability.dat"), header.array());
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+                @Override
+                public void run() {
+                    sut.initialize();
+                }
+            });
+            assertThat(e.getMessage(), is("invalid request id count in service availability file. "
+                    + "file = [" + filePath + "], count = [" + count + "]"));
+        }
+    }
+
+    /**
+     * ファイルが存在しない場合は、例外をスローすること。
+     */
+    @Test
+    public void testFileNotFound() {
+        final String notExist = directory.resolve("notExist.dat").toString();
+        sut.setFilePath(notExist);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("failed to map service availability file. file = [" + notExist + "]"));
+    }
+
+    /**
+     * 初期化前に判定した場合、またはファイルのパスが設定されていない場合は、例外をスローすること。
+     */
+    @Test
+    public void testNotInitialized() {
+        final MappedFileServiceAvailability sut = new MappedFileServiceAvailability();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.isAvailable("R0001");
+            }
+        });
+        assertThat(e.getMessage(), is("MappedFileServiceAvailability is not initialized."));
+
+        e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("filePath is null."));
+    }
+
+    /**
+     * 現在時刻を任意に設定できる{@link MappedFileServiceAvailability}。
+     */
+    private static class ManualClockMappedFileServiceAvailability extends MappedFileServiceAvailability {
+        private long now = 0L;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
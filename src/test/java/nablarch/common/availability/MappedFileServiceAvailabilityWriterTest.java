@@ -0,0 +1,131 @@
+package nablarch.common.availability;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link MappedFileServiceAvailabilityWriter}のテスト。
+ */
+public class MappedFileServiceAvailabilityWriterTest {
+
+    private Path directory;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("availability");
+        file = directory.resolve("availability.dat");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (File child : directory.toFile().listFiles()) {
+            Files.delete(child.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * 定められた形式でファイルを作成すること。
+     * 状態が{@code null}のリクエストIDは書き込まないこと。
+     */
+    @Test
+    public void testWrite() throws IOException {
+        Map<String, Boolean> states = new LinkedHashMap<String, Boolean>();
+        states.put("R1", true);
+        states.put("R22", false);
+        states.put("R333", null);
+        MappedFileServiceAvailabilityWriter.write(file.toString(), states);
+
+        ByteBuffer expected = ByteBuffer.allocate(16 + 2 + 2 + 2 + 2 + 3);
+        expected.putInt(0x4E41564C).putInt(1).putInt(0).putInt(2);
+        expected.put((byte) 1).put((byte) 0);
+        expected.putShort((short) 2).put("R1".getBytes("UTF-8"));
+        expected.putShort((short) 3).put("R22".getBytes("UTF-8"));
+        assertThat(Arrays.equals(Files.readAllBytes(file), expected.array()), is(true));
+    }
+
+    /**
+     * ファイルを作成し直した場合は、古いファイルを置き換え済みとすること。
+     */
+    @Test
+    public void testMarkObsolete() throws IOException {
+        MappedFileServiceAvailabilityWriter.write(file.toString(), Collections.singletonMap("R1", true));
+        Path old = directory.resolve("old.dat");
+        Files.createLink(old, file);
+
+        MappedFileServiceAvailabilityWriter.write(file.toString(), Collections.singletonMap("R2", true));
+
+        assertThat(ByteBuffer.wrap(Files.readAllBytes(old)).getInt(8), is(1));
+        assertThat(ByteBuffer.wrap(Files.readAllBytes(file)).getInt(8), is(0));
+    }
+
+    /**
+     * ファイルを作成し直した場合は、既存のファイルのパーミッションを引き継ぐこと。
+     * 既存のファイルが無い場合は、全てのユーザが読み込めるパーミッションで作成すること。
+     */
+    @Test
+    public void testKeepPermissions() throws IOException {
+        assumeTrue(Files.getFileAttributeView(directory, PosixFileAttributeView.class) != null);
+
+        MappedFileServiceAvailabilityWriter.write(file.toString(), Collections.singletonMap("R1", true));
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), is("rw-r--r--"));
+
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-r--"));
+        MappedFileServiceAvailabilityWriter.write(file.toString(), Collections.singletonMap("R2", true));
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), is("rw-rw-r--"));
+    }
+
+    /**
+     * バイト数が上限を超えるリクエストIDは書き込めないこと。
+     */
+    @Test
+    public void testTooLongRequestId() {
+        char[] chars = new char[0x10000];
+        Arrays.fill(chars, 'A');
+        final String requestId = new String(chars);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                MappedFileServiceAvailabilityWriter.write(file.toString(), Collections.singletonMap(requestId, true));
+            }
+        });
+        assertThat(e.getMessage(), is("request id is too long. requestId = [" + requestId + "]"));
+        assertThat(file.toFile().exists(), is(false));
+    }
+
+    /**
+     * 存在しないファイルを更新した場合は、例外をスローすること。
+     */
+    @Test
+    public void testSetAvailableFileNotFound() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                MappedFileServiceAvailabilityWriter.setAvailable(file.toString(), "R1", true);
+            }
+        });
+        assertThat(e.getMessage(), is("failed to update service availability file. file = [" + file + "]"));
+    }
+}
@@ -0,0 +1,480 @@
+package nablarch.common.availability;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link SnapshotServiceAvailability}のテスト。
+ */
+public class SnapshotServiceAvailabilityTest {
+
+    private final ManualClockSnapshotServiceAvailability sut = new ManualClockSnapshotServiceAvailability();
+
+    private final MockServiceAvailabilityLoader loader = new MockServiceAvailabilityLoader();
+
+    @Before
+    public void setUp() {
+        loader.states.put("R0001", true);
+        loader.states.put("R0002", false);
+        sut.setServiceAvailabilityLoader(loader);
+        sut.setRefreshIntervalMillis(0L);
+    }
+
+    @After
+    public void tearDown() {
+        sut.dispose();
+    }
+
+    /**
+     * 初期化時に読み込んだスナップショットを参照して判定すること。
+     */
+    @Test
+    public void testIsAvailable() {
+        sut.initialize();
+
+        assertThat(sut.isAvailable("R0001"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+        assertThat(loader.count, is(1));
+    }
+
+    /**
+     * スナップショットに存在しないリクエストIDは、{@code defaultAvailable}に従って判定すること。
+     */
+    @Test
+    public void testDefaultAvailable() {
+        loader.states.put("R0003", null);
+        sut.initialize();
+        assertThat(sut.isAvailable("R0003"), is(false));
+        assertThat(sut.isAvailable("UNKNOWN"), is(false));
+        assertThat(sut.isAvailable(null), is(false));
+
+        sut.setDefaultAvailable(true);
+        assertThat(sut.isAvailable("R0003"), is(true));
+        assertThat(sut.isAvailable("UNKNOWN"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+    }
+
+    /**
+     * 前方一致のパターンを指定した場合は、リクエストIDそのものを指定したものを優先し、
+     * 次に最も長いパターンを優先して判定すること。
+     */
+    @Test
+    public void testPrefixRules() {
+        loader.states.put("*", true);
+        loader.states.put("RW2*", false);
+        loader.states.put("RW21*", true);
+        loader.states.put("RW2100", false);
+        loader.states.put("RW3*", null);
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW1001"), is(true));
+        assertThat(sut.isAvailable("RW2"), is(false));
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW21"), is(true));
+        assertThat(sut.isAvailable("RW2101"), is(true));
+        assertThat(sut.isAvailable("RW2100"), is(false));
+        assertThat(sut.isAvailable("RW21001"), is(true));
+        assertThat(sut.isAvailable("RW3001"), is(true));
+        assertThat(sut.isAvailable("R0002"), is(false));
+        assertThat(sut.isAvailable(""), is(true));
+        assertThat(sut.isAvailable(null), is(false));
+    }
+
+    /**
+     * 前方一致のパターンのみの場合は、一致しないリクエストIDを{@code defaultAvailable}に従って判定すること。
+     */
+    @Test
+    public void testPrefixRulesWithoutMatch() {
+        loader.states.clear();
+        loader.states.put("RW2*", false);
+        sut.setDefaultAvailable(true);
+        sut.initialize();
+
+        assertThat(sut.isAvailable("RW2001"), is(false));
+        assertThat(sut.isAvailable("RW"), is(true));
+        assertThat(sut.isAvailable("RW1001"), is(true));
+    }
+
+    /**
+     * 末尾以外にワイルドカードを含むパターンを読み込んだ場合は、例外をスローしてスナップショットを差し替えないこと。
+     */
+    @Test
+    public void testInvalidPattern() {
+        sut.initialize();
+        loader.states.put("RW*1", false);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.refresh();
+            }
+        });
+        assertThat(e.getMessage(), is("wildcard '*' is only allowed at the end of pattern. pattern = [RW*1]"));
+        assertThat(sut.isAvailable("R0001"), is(true));
+    }
+
+    /**
+     * 読み込み直した後は、新しいスナップショットを参照して判定すること。
+     * 読み込み元のマップを変更しても、スナップショットには影響しないこと。
+     */
+    @Test
+    public void testRefresh() {
+        sut.initialize();
+
+        loader.states.put("R0001", false);
+        assertThat(sut.isAvailable("R0001"), is(true));
+
+        sut.refresh();
+        assertThat(sut.isAvailable("R0001"), is(false));
+        assertThat(loader.count, is(2));
+    }
+
+    /**
+     * 読み込みに失敗した場合は例外をスローし、現在のスナップショットを使用し続けること。
+     */
+    @Test
+    public void testRefreshFailure() {
+        sut.initialize();
+        loader.failure = new IllegalStateException("load error.");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.refresh();
+            }
+        });
+        assertThat(e.getMessage(), is("load error."));
+        assertThat(sut.isAvailable("R0001"), is(true));
+    }
+
+    /**
+     * スナップショットを読み込んでからの経過時間を取得できること。
+     */
+    @Test
+    public void testGetSnapshotAgeMillis() {
+        sut.now = 1000L;
+        sut.initialize();
+        assertThat(sut.getSnapshotAgeMillis(), is(0L));
+
+        sut.now = 3500L;
+        assertThat(sut.getSnapshotAgeMillis(), is(2500L));
+
+        sut.refresh();
+        assertThat(sut.getSnapshotAgeMillis(), is(0L));
+    }
+
+    /**
+     * 指定した間隔でスナップショットを読み込み直すこと。
+     * 読み込みに失敗しても、定期的な読み込みは継続すること。
+     */
+    @Test(timeout = 10000L)
+    public void testScheduledRefresh() throws Exception {
+        sut.setRefreshIntervalMillis(10L);
+        sut.initialize();
+
+        loader.failure = new IllegalStateException("load error.");
+        loader.latch = new CountDownLatch(2);
+        await(loader.latch);
+        assertThat(sut.isAvailable("R0001"), is(true));
+
+        loader.states.put("R0001", false);
+        sut.refreshed = new CountDownLatch(1);
+        loader.failure = null;
+        await(sut.refreshed);
+        assertThat(sut.isAvailable("R0001"), is(false));
+
+        sut.dispose();
+        // 廃棄時点で実行中の読み込みを除き、読み込みが行われないこと
+        loader.latch = new CountDownLatch(2);
+        assertThat(loader.latch.await(100L, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    /**
+     * 変更を検知する{@link ServiceAvailabilityChangeDetector}を設定した場合は、
+     * 変更が検知された場合のみ読み込み直すこと。
+     */
+    @Test(timeout = 10000L)
+    public void testRefreshOnlyWhenChanged() throws Exception {
+        final MockChangeDetector changeDetector = new MockChangeDetector();
+        changeDetector.changed = true;
+        sut.setChangeDetector(changeDetector);
+        sut.setRefreshIntervalMillis(10L);
+        changeDetector.latch = new CountDownLatch(10);
+        sut.initialize();
+        assertThat("初期化前の変更は破棄されること", changeDetector.changed, is(false));
+
+        await(changeDetector.latch);
+        assertThat(loader.count, is(1));
+
+        loader.states.put("R0001", false);
+        sut.refreshed = new CountDownLatch(1);
+        changeDetector.changed = true;
+        await(sut.refreshed);
+        assertThat(sut.isAvailable("R0001"), is(false));
+        assertThat(loader.count, is(2));
+    }
+
+    /**
+     * {@link ServiceAvailabilityChangeDetector}が初期化されていない場合は、
+     * {@link ServiceAvailabilityChangeDetector}がスローした例外をそのままスローすること。
+     */
+    @Test
+    public void testChangeDetectorIsNotInitialized() {
+        final MockChangeDetector changeDetector = new MockChangeDetector();
+        changeDetector.failure = new IllegalStateException("change detector is not initialized.");
+        sut.setChangeDetector(changeDetector);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+
+        assertThat(e, is(changeDetector.failure));
+        assertThat(loader.count, is(0));
+    }
+
+    /**
+     * 読み込みが同時に要求された場合は順に読み込み、後から開始した読み込みの結果が使用されること。
+     */
+    @Test(timeout = 10000L)
+    public void testRefreshIsSerialized() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        sut.setServiceAvailabilityLoader(new ServiceAvailabilityLoader() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Map<String, Boolean> load() {
+                if (inFlight.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                try {
+                    final Map<String, Boolean> states = new HashMap<String, Boolean>();
+                    if (count.incrementAndGet() == 2) {
+                        started.countDown();
+                        release.await();
+                        states.put("R0001", false);
+                    } else {
+                        states.put("R0001", true);
+                    }
+                    return states;
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        sut.initialize();
+
+        final Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sut.refresh();
+            }
+        });
+        first.start();
+        await(started);
+        final Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sut.refresh();
+            }
+        });
+        second.start();
+        // 後から開始した読み込みは、先に開始した読み込みの完了を待ち合わせること
+        while (second.getState() != Thread.State.BLOCKED) {
+            assertThat(second.isAlive(), is(true));
+            Thread.yield();
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertThat("読み込みが同時に行われないこと", overlapped.get(), is(false));
+        assertThat(sut.isAvailable("R0001"), is(true));
+    }
+
+    /**
+     * 変更を検知した後の読み込みに失敗した場合は、次の確認のタイミングで再度読み込むこと。
+     */
+    @Test(timeout = 10000L)
+    public void testRetryRefreshAfterFailure() throws Exception {
+        final MockChangeDetector changeDetector = new MockChangeDetector();
+        sut.setChangeDetector(changeDetector);
+        sut.setRefreshIntervalMillis(10L);
+        sut.initialize();
+
+        loader.states.put("R0001", false);
+        loader.failure = new IllegalStateException("load error.");
+        loader.latch = new CountDownLatch(1);
+        changeDetector.changed = true;
+        assertThat(loader.latch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(sut.isAvailable("R0001"), is(true));
+
+        sut.refreshed = new CountDownLatch(1);
+        loader.failure = null;
+        await(sut.refreshed);
+        assertThat(sut.isAvailable("R0001"), is(false));
+    }
+
+    /**
+     * 読み込み直すよう要求された場合は、変更が検知されなくても読み込み直すこと。
+     */
+    @Test(timeout = 10000L)
+    public void testRequestRefresh() throws Exception {
+        final MockChangeDetector changeDetector = new MockChangeDetector();
+        sut.setChangeDetector(changeDetector);
+        sut.initialize();
+
+        loader.states.put("R0001", false);
+        sut.requestRefresh();
+        assertThat("定期的な読み込みを行わない場合は、呼び出し元のスレッドで読み込むこと",
+                sut.isAvailable("R0001"), is(false));
+
+        sut.dispose();
+        sut.setRefreshIntervalMillis(60000L);
+        sut.initialize();
+        loader.states.put("R0001", true);
+        sut.refreshed = new CountDownLatch(1);
+        sut.requestRefresh();
+        await(sut.refreshed);
+        assertThat(sut.isAvailable("R0001"), is(true));
+        assertThat(loader.count, is(4));
+    }
+
+    /**
+     * 初期化時に読み込みに失敗した場合は、例外をスローすること。
+     */
+    @Test
+    public void testInitializeFailure() {
+        loader.failure = new IllegalStateException("load error.");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("load error."));
+    }
+
+    /**
+     * 初期化前に判定した場合は、例外をスローすること。
+     */
+    @Test
+    public void testNotInitialized() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.isAvailable("R0001");
+            }
+        });
+        assertThat(e.getMessage(), is("SnapshotServiceAvailability is not initialized."));
+    }
+
+    /**
+     * {@link ServiceAvailabilityLoader}が設定されていない場合は、例外をスローすること。
+     */
+    @Test
+    public void testLoaderIsNull() {
+        final SnapshotServiceAvailability sut = new SnapshotServiceAvailability();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+        assertThat(e.getMessage(), is("ServiceAvailabilityLoader is null."));
+    }
+
+    /**
+     * ラッチがカウントダウンされるまで、一定時間待ち合わせる。
+     * @param latch ラッチ
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    /**
+     * 現在時刻を任意に設定でき、スナップショットの差し替えを待ち合わせられる{@link SnapshotServiceAvailability}。
+     */
+    private static class ManualClockSnapshotServiceAvailability extends SnapshotServiceAvailability {
+        private long now = 0L;
+        private volatile CountDownLatch refreshed = new CountDownLatch(0);
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void refresh() {
+            super.refresh();
+            refreshed.countDown();
+        }
+    }
+
+    /**
+     * テスト用の{@link ServiceAvailabilityChangeDetector}。
+     */
+    private static class MockChangeDetector implements ServiceAvailabilityChangeDetector {
+        private volatile boolean changed;
+        private volatile CountDownLatch latch;
+        private volatile RuntimeException failure;
+
+        @Override
+        public synchronized boolean hasChanged() {
+            if (latch != null) {
+                latch.countDown();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            final boolean result = changed;
+            changed = false;
+            return result;
+        }
+    }
+
+    /**
+     * テスト用の{@link ServiceAvailabilityLoader}。
+     */
+    private static class MockServiceAvailabilityLoader implements ServiceAvailabilityLoader {
+        private final Map<String, Boolean> states = new HashMap<String, Boolean>();
+        private volatile RuntimeException failure;
+        private volatile CountDownLatch latch;
+        private volatile int count;
+
+        @Override
+        public synchronized Map<String, Boolean> load() {
+            count++;
+            if (latch != null) {
+                latch.countDown();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new HashMap<String, Boolean>(states);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link BitSetPermission}のテストクラス。
+ */
+public class BitSetPermissionTest {
+
+    private final RequestIdDictionary dictionary = new RequestIdDictionary(createRequestIds(200));
+
+    /**
+     * 許可されたリクエストIDのみ認可に成功すること。
+     */
+    @Test
+    public void testPermit() {
+        Permission sut = dictionary.createPermission(Arrays.asList("REQ000", "REQ063", "REQ064", "REQ150"));
+
+        assertThat(sut.permit("REQ000"), is(true));
+        assertThat(sut.permit("REQ063"), is(true));
+        assertThat(sut.permit("REQ064"), is(true));
+        assertThat(sut.permit("REQ150"), is(true));
+        assertThat(sut.permit("REQ001"), is(false));
+        assertThat(sut.permit("REQ199"), is(false));
+        assertThat(sut.permit("unknown"), is(false));
+        assertThat(sut.permit(null), is(false));
+    }
+
+    /**
+     * 許可されたリクエストIDが無い場合は全て認可に失敗すること。
+     */
+    @Test
+    public void testPermitWithEmptyRequestIds() {
+        Permission sut = dictionary.createPermission(Collections.<String>emptyList());
+
+        assertThat(sut.permit("REQ000"), is(false));
+        assertThat(sut.permit("REQ199"), is(false));
+        assertThat(sut.getRequestIds().isEmpty(), is(true));
+    }
+
+    /**
+     * 許可されたリクエストIDを昇順で取得できること。
+     */
+    @Test
+    public void testGetRequestIds() {
+        Permission sut = dictionary.createPermission(Arrays.asList("REQ150", "REQ000", "REQ064", "REQ063"));
+
+        assertThat(sut.getRequestIds(), contains("REQ000", "REQ063", "REQ064", "REQ150"));
+    }
+
+    /**
+     * 取得したリクエストIDは変更できないこと。
+     */
+    @Test
+    public void testGetRequestIdsIsUnmodifiable() {
+        final SortedSet<String> requestIds = dictionary.createPermission(Arrays.asList("REQ000")).getRequestIds();
+
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                requestIds.add("REQ001");
+            }
+        });
+    }
+
+    /**
+     * "REQ000"から始まる連番のリクエストIDを生成する。
+     * @param count 生成する数
+     * @return リクエストID
+     */
+    private static List<String> createRequestIds(int count) {
+        List<String> requestIds = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            requestIds.add(String.format("REQ%03d", i));
+        }
+        return requestIds;
+    }
+}
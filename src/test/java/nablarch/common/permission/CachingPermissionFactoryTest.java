@@ -0,0 +1,478 @@
+package nablarch.common.permission;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link CachingPermissionFactory}のテストクラス。
+ */
+public class CachingPermissionFactoryTest {
+
+    private final MockPermissionFactory mockPermissionFactory = new MockPermissionFactory();
+    private final ManualClockCachingPermissionFactory sut = new ManualClockCachingPermissionFactory();
+
+    @Before
+    public void setUp() {
+        sut.setPermissionFactory(mockPermissionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        sut.dispose();
+    }
+
+    /**
+     * 2回目以降の取得では委譲先を呼び出さず、キャッシュした{@link Permission}を返すこと。
+     */
+    @Test
+    public void testReturnCachedPermission() {
+        Permission first = sut.getPermission("user1");
+        Permission second = sut.getPermission("user1");
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1"));
+    }
+
+    /**
+     * ユーザ毎にキャッシュされること。
+     */
+    @Test
+    public void testCachePerUser() {
+        Permission user1 = sut.getPermission("user1");
+        Permission user2 = sut.getPermission("user2");
+
+        assertThat(user2, is(not(sameInstance(user1))));
+        assertThat(sut.getPermission("user1"), is(sameInstance(user1)));
+        assertThat(sut.getPermission("user2"), is(sameInstance(user2)));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2"));
+    }
+
+    /**
+     * 有効期間を過ぎた場合は委譲先から再取得すること。
+     */
+    @Test
+    public void testReloadAfterExpiration() {
+        sut.setExpireAfterWriteMillis(1000L);
+
+        Permission first = sut.getPermission("user1");
+        sut.now = 999L;
+        assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+
+        sut.now = 1000L;
+        Permission reloaded = sut.getPermission("user1");
+        assertThat(reloaded, is(not(sameInstance(first))));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * 有効期間に0以下を指定した場合は、期間による破棄を行わないこと。
+     */
+    @Test
+    public void testNeverExpireIfExpirationIsNotPositive() {
+        sut.setExpireAfterWriteMillis(0L);
+
+        Permission first = sut.getPermission("user1");
+        sut.now = Long.MAX_VALUE / 2;
+
+        assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+    }
+
+    /**
+     * 上限を超えた場合は、最も長い間参照されていないユーザから破棄されること。
+     */
+    @Test
+    public void testEvictLeastRecentlyUsedUser() {
+        sut.setMaxEntries(2);
+
+        Permission user1 = sut.getPermission("user1");
+        sut.getPermission("user2");
+        // user1 を参照し、user2 を最も長い間参照されていない状態にする
+        sut.getPermission("user1");
+        sut.getPermission("user3");
+
+        assertThat(sut.getPermission("user1"), is(sameInstance(user1)));
+        sut.getPermission("user2");
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2", "user3", "user2"));
+    }
+
+    /**
+     * 再取得期間を過ぎた場合は委譲先から再取得すること。
+     */
+    @Test
+    public void testRefreshAfterWrite() {
+        sut.setRefreshAfterWriteMillis(100L);
+
+        Permission first = sut.getPermission("user1");
+        sut.now = 100L;
+        Permission refreshed = sut.getPermission("user1");
+
+        assertThat(refreshed, is(not(sameInstance(first))));
+        assertThat(sut.getPermission("user1"), is(sameInstance(refreshed)));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * 再取得に失敗した場合は、有効期間内であればキャッシュ済みの{@link Permission}を返すこと。
+     */
+    @Test
+    public void testReturnCachedPermissionIfRefreshFailed() {
+        sut.setRefreshAfterWriteMillis(100L);
+        sut.setExpireAfterWriteMillis(1000L);
+
+        final Permission first = sut.getPermission("user1");
+        sut.now = 100L;
+        mockPermissionFactory.exception = new IllegalStateException("db error");
+
+        assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+
+        sut.now = 1000L;
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.getPermission("user1");
+            }
+        });
+    }
+
+    /**
+     * バックグラウンドで再取得する場合、再取得中もキャッシュ済みの{@link Permission}を返し、
+     * 同一ユーザの再取得は1回のみ行われること。
+     */
+    @Test
+    public void testAsyncRefreshReturnsStalePermission() throws Exception {
+        sut.setRefreshAfterWriteMillis(100L);
+        sut.setAsyncRefresh(true);
+
+        final Permission first = sut.getPermission("user1");
+        sut.now = 100L;
+        final CountDownLatch release = new CountDownLatch(1);
+        mockPermissionFactory.latch = release;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+        }
+        release.countDown();
+
+        Permission refreshed = first;
+        for (int i = 0; i < 100 && refreshed == first; i++) {
+            TimeUnit.MILLISECONDS.sleep(10L);
+            refreshed = sut.getPermission("user1");
+        }
+        assertThat(refreshed, is(not(sameInstance(first))));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * バックグラウンドでの再取得に失敗した場合も、キャッシュ済みの{@link Permission}を返し続けること。
+     */
+    @Test
+    public void testAsyncRefreshFailure() throws Exception {
+        sut.setRefreshAfterWriteMillis(100L);
+        sut.setAsyncRefresh(true);
+
+        final Permission first = sut.getPermission("user1");
+        sut.now = 100L;
+        mockPermissionFactory.exception = new IllegalStateException("db error");
+
+        assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+        for (int i = 0; i < 100 && mockPermissionFactory.calledUserIds.size() < 3; i++) {
+            TimeUnit.MILLISECONDS.sleep(10L);
+            assertThat(sut.getPermission("user1"), is(sameInstance(first)));
+        }
+    }
+
+    /**
+     * キャッシュが無いユーザの取得が同時に要求された場合、委譲先の呼び出しは1回のみ行われること。
+     */
+    @Test
+    public void testSingleFlightLoad() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        mockPermissionFactory.latch = release;
+
+        final List<Permission> results = Collections.synchronizedList(new ArrayList<Permission>());
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.add(sut.getPermission("user1"));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (int i = 0; i < 100 && mockPermissionFactory.calledUserIds.isEmpty(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10L);
+        }
+        // 後続のスレッドが待ち合わせに入るまで待つ
+        TimeUnit.MILLISECONDS.sleep(100L);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000L);
+        }
+
+        assertThat(results.size(), is(5));
+        for (Permission permission : results) {
+            assertThat(permission, is(sameInstance(results.get(0))));
+        }
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1"));
+    }
+
+    /**
+     * {@link CachingPermissionFactory#preload(java.util.Collection)}でユーザ毎に取得し、キャッシュに格納すること。
+     */
+    @Test
+    public void testPreload() {
+        sut.preload(Arrays.asList("user1", "user2"));
+        sut.getPermission("user1");
+        sut.getPermission("user2");
+
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2"));
+    }
+
+    /**
+     * {@link CachingPermissionFactory#preload(java.util.Collection)}で取得に失敗したユーザがいても、
+     * 残りのユーザの取得を続けること。
+     */
+    @Test
+    public void testPreloadContinuesIfLoadFailed() {
+        mockPermissionFactory.onLoad = new Runnable() {
+            @Override
+            public void run() {
+                if (mockPermissionFactory.calledUserIds.size() == 2) {
+                    throw new IllegalStateException("load failed.");
+                }
+            }
+        };
+
+        sut.preload(Arrays.asList("user1", "user2", "user3"));
+        mockPermissionFactory.onLoad = null;
+        sut.getPermission("user1");
+        sut.getPermission("user2");
+        sut.getPermission("user3");
+
+        // 取得に失敗したユーザのみ改めて取得されること
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2", "user3", "user2"));
+    }
+
+    /**
+     * 委譲先が{@link BatchPermissionFactory}の場合、
+     * {@link CachingPermissionFactory#preload(java.util.Collection)}で一括して取得し、キャッシュに格納すること。
+     */
+    @Test
+    public void testPreloadWithBatchPermissionFactory() {
+        final List<String> batchUserIds = new ArrayList<String>();
+        sut.setPermissionFactory(new BatchPermissionFactory() {
+            @Override
+            public Map<String, Permission> getPermissions(Collection<String> userIds) {
+                batchUserIds.addAll(userIds);
+                Map<String, Permission> permissions = new HashMap<String, Permission>();
+                permissions.put("user1", new BasicPermission(new TreeSet<String>()));
+                return permissions;
+            }
+
+            @Override
+            public Permission getPermission(String userId) {
+                return mockPermissionFactory.getPermission(userId);
+            }
+        });
+
+        sut.preload(Arrays.asList("user1", "user2"));
+        sut.getPermission("user1");
+        sut.getPermission("user2");
+
+        assertThat(batchUserIds, contains("user1", "user2"));
+        // 一括取得の結果に含まれないユーザのみ個別に取得されること
+        assertThat(mockPermissionFactory.calledUserIds, contains("user2"));
+    }
+
+    /**
+     * {@link CachingPermissionFactory#invalidate(String)}で指定したユーザのキャッシュのみ破棄されること。
+     */
+    @Test
+    public void testInvalidate() {
+        Permission user1 = sut.getPermission("user1");
+        Permission user2 = sut.getPermission("user2");
+
+        sut.invalidate("user1");
+
+        assertThat(sut.getPermission("user1"), is(not(sameInstance(user1))));
+        assertThat(sut.getPermission("user2"), is(sameInstance(user2)));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2", "user1"));
+    }
+
+    /**
+     * {@link CachingPermissionFactory#invalidateAll()}で全てのキャッシュが破棄されること。
+     */
+    @Test
+    public void testInvalidateAll() {
+        sut.getPermission("user1");
+        sut.getPermission("user2");
+
+        sut.invalidateAll();
+
+        sut.getPermission("user1");
+        sut.getPermission("user2");
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user2", "user1", "user2"));
+    }
+
+    /**
+     * 取得中にキャッシュが破棄された場合は、取得結果をキャッシュしないこと。
+     */
+    @Test
+    public void testNotCacheIfInvalidatedWhileLoading() {
+        mockPermissionFactory.onLoad = new Runnable() {
+            @Override
+            public void run() {
+                sut.invalidateAll();
+            }
+        };
+        sut.getPermission("user1");
+
+        mockPermissionFactory.onLoad = null;
+        sut.getPermission("user1");
+
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * 取得中にキャッシュが破棄された場合、破棄後に要求された取得は破棄前の取得を待ち合わせず、改めて委譲先から取得すること。
+     */
+    @Test
+    public void testNotJoinLoadStartedBeforeInvalidation() throws Exception {
+        final List<Permission> results = Collections.synchronizedList(new ArrayList<Permission>());
+        mockPermissionFactory.onLoad = new Runnable() {
+            @Override
+            public void run() {
+                mockPermissionFactory.onLoad = null;
+                sut.invalidate("user1");
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        results.add(sut.getPermission("user1"));
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join(5000L);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        Permission stale = sut.getPermission("user1");
+
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0), is(not(sameInstance(stale))));
+        assertThat(sut.getPermission("user1"), is(sameInstance(results.get(0))));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * 委譲先が{@code null}を返した場合はキャッシュせず、{@code null}を返すこと。
+     */
+    @Test
+    public void testNotCacheNull() {
+        mockPermissionFactory.returnsNull = true;
+
+        assertThat(sut.getPermission("user1"), is(nullValue()));
+        assertThat(sut.getPermission("user1"), is(nullValue()));
+        assertThat(mockPermissionFactory.calledUserIds, contains("user1", "user1"));
+    }
+
+    /**
+     * 委譲先が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfPermissionFactoryIsNull() {
+        sut.setPermissionFactory(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.getPermission("user1");
+            }
+        });
+
+        assertThat(exception.getMessage(), is("PermissionFactory is null."));
+    }
+
+    /**
+     * キャッシュするユーザ数の上限に0以下を指定した場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfMaxEntriesIsNotPositive() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.setMaxEntries(0);
+            }
+        });
+
+        assertThat(exception.getMessage(), is("maxEntries must be greater than 0. maxEntries = [0]"));
+    }
+
+    /**
+     * 現在時刻を任意に変更できる{@link CachingPermissionFactory}。
+     */
+    private static class ManualClockCachingPermissionFactory extends CachingPermissionFactory {
+        private volatile long now = 0L;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * 呼び出し毎に新しい{@link Permission}を返す{@link PermissionFactory}のモック。
+     */
+    private static class MockPermissionFactory implements PermissionFactory {
+        private final List<String> calledUserIds = Collections.synchronizedList(new ArrayList<String>());
+        private volatile RuntimeException exception;
+        private volatile Runnable onLoad;
+        private volatile boolean returnsNull;
+        private volatile CountDownLatch latch;
+
+        @Override
+        public Permission getPermission(String userId) {
+            calledUserIds.add(userId);
+            if (latch != null) {
+                try {
+                    latch.await(5L, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (onLoad != null) {
+                onLoad.run();
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            return returnsNull ? null : new BasicPermission(new TreeSet<String>());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link DenialCache}のテストクラス。
+ */
+public class DenialCacheTest {
+
+    private final DenialCache sut = new DenialCache(1000L, 2);
+
+    /**
+     * 保持期間内は格納したメッセージを取得でき、保持期間を過ぎると取得できないこと。
+     */
+    @Test
+    public void testExpiration() {
+        sut.put("user1", "req1", "denied", 0L);
+
+        assertThat(sut.get("user1", "req1", 999L), is("denied"));
+        assertThat(sut.get("user1", "req1", 1000L), is(nullValue()));
+        assertThat(sut.get("user1", "req1", 0L), is(nullValue()));
+    }
+
+    /**
+     * ユーザIDとリクエストIDの組み合わせ毎に保持されること。
+     */
+    @Test
+    public void testKeyedByUserIdAndRequestId() {
+        sut.put("user1", "req1", "denied", 0L);
+
+        assertThat(sut.get("user1", "req2", 0L), is(nullValue()));
+        assertThat(sut.get("user2", "req1", 0L), is(nullValue()));
+        assertThat(sut.get(null, null, 0L), is(nullValue()));
+
+        sut.put(null, null, "denied", 0L);
+        assertThat(sut.get(null, null, 0L), is("denied"));
+    }
+
+    /**
+     * 上限を超えた場合は、最も長い間参照されていない組み合わせから破棄すること。
+     */
+    @Test
+    public void testEvictLeastRecentlyUsedWhenMaxEntriesExceeded() {
+        sut.put("user1", "req1", "denied1", 0L);
+        sut.put("user2", "req1", "denied2", 0L);
+        assertThat(sut.get("user1", "req1", 0L), is("denied1"));
+        sut.put("user3", "req1", "denied3", 0L);
+
+        assertThat(sut.get("user1", "req1", 0L), is("denied1"));
+        assertThat(sut.get("user2", "req1", 0L), is(nullValue()));
+        assertThat(sut.get("user3", "req1", 0L), is("denied3"));
+    }
+}
@@ -0,0 +1,34 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link DenialLogLimiter}のテストクラス。
+ */
+public class DenialLogLimiterTest {
+
+    /**
+     * 1秒あたりの上限を超えたログは抑止され、抑止した件数が次の区間で最初に出力するログで報告されること。
+     */
+    @Test
+    public void testTryAcquire() {
+        DenialLogLimiter sut = new DenialLogLimiter(2);
+
+        assertThat(sut.tryAcquire(0L), is(0L));
+        assertThat(sut.tryAcquire(10L), is(0L));
+        assertThat(sut.tryAcquire(20L), is(-1L));
+        assertThat(sut.tryAcquire(999L), is(-1L));
+
+        // 次の区間
+        assertThat(sut.tryAcquire(1000L), is(2L));
+        assertThat(sut.tryAcquire(1001L), is(0L));
+        assertThat(sut.tryAcquire(1002L), is(-1L));
+
+        // 抑止したログが無い区間を挟んでも件数は引き継がれること
+        assertThat(sut.tryAcquire(5000L), is(1L));
+        assertThat(sut.tryAcquire(5001L), is(0L));
+    }
+}
@@ -0,0 +1,110 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link HashPermission}のテストクラス。
+ */
+public class HashPermissionTest {
+
+    /**
+     * 許可されたリクエストIDのみ認可に成功すること。
+     */
+    @Test
+    public void testPermit() {
+        Permission sut = new HashPermission(Arrays.asList("req1", "req2"));
+
+        assertThat(sut.permit("req1"), is(true));
+        assertThat(sut.permit("req2"), is(true));
+        assertThat(sut.permit("req3"), is(false));
+        assertThat(sut.permit(null), is(false));
+    }
+
+    /**
+     * 許可されたリクエストIDが{@code null}または空の場合は、全て認可に失敗すること。
+     */
+    @Test
+    public void testPermitWithNullOrEmptyRequestIds() {
+        Permission nullRequestIds = new HashPermission(null);
+        assertThat(nullRequestIds.permit("req1"), is(false));
+        assertThat(nullRequestIds.getRequestIds().isEmpty(), is(true));
+
+        Permission emptyRequestIds = new HashPermission(Collections.<String>emptyList());
+        assertThat(emptyRequestIds.permit("req1"), is(false));
+        assertThat(emptyRequestIds.getRequestIds().isEmpty(), is(true));
+    }
+
+    /**
+     * ハッシュ値が衝突するリクエストIDも正しく認可判定できること。
+     */
+    @Test
+    public void testPermitWithHashCollision() {
+        // "Aa" と "BB" は同じハッシュ値となる
+        Permission sut = new HashPermission(Arrays.asList("Aa", "AaAa"));
+
+        assertThat(sut.permit("Aa"), is(true));
+        assertThat(sut.permit("AaAa"), is(true));
+        assertThat(sut.permit("BB"), is(false));
+        assertThat(sut.permit("BBBB"), is(false));
+    }
+
+    /**
+     * 多数のリクエストIDを許可した場合も、{@link BasicPermission}と同じ結果となること。
+     */
+    @Test
+    public void testSameResultAsBasicPermission() {
+        List<String> granted = new ArrayList<String>();
+        for (int i = 0; i < 3000; i += 3) {
+            granted.add("RW" + i);
+        }
+        Permission sut = new HashPermission(granted);
+        Permission basic = new BasicPermission(new TreeSet<String>(granted));
+
+        for (int i = 0; i < 3000; i++) {
+            assertThat(sut.permit("RW" + i), is(basic.permit("RW" + i)));
+        }
+        assertThat(sut.getRequestIds(), is(basic.getRequestIds()));
+    }
+
+    /**
+     * 許可されたリクエストIDを昇順で取得でき、2回目以降は同じインスタンスが返されること。
+     */
+    @Test
+    public void testGetRequestIds() {
+        Permission sut = new HashPermission(Arrays.asList("req3", "req1", "req2", "req1"));
+
+        SortedSet<String> requestIds = sut.getRequestIds();
+
+        assertThat(requestIds, contains("req1", "req2", "req3"));
+        assertThat(sut.getRequestIds(), is(sameInstance(requestIds)));
+    }
+
+    /**
+     * 取得したリクエストIDは変更できないこと。
+     */
+    @Test
+    public void testGetRequestIdsIsUnmodifiable() {
+        final SortedSet<String> requestIds = new HashPermission(Arrays.asList("req1")).getRequestIds();
+
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                requestIds.add("req2");
+            }
+        });
+    }
+}
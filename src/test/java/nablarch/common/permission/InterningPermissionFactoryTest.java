@@ -0,0 +1,199 @@
+package nablarch.common.permission;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link InterningPermissionFactory}のテストクラス。
+ */
+public class InterningPermissionFactoryTest {
+
+    private final MockPermissionFactory mockPermissionFactory = new MockPermissionFactory();
+    private final InterningPermissionFactory sut = new InterningPermissionFactory();
+
+    @Before
+    public void setUp() {
+        sut.setPermissionFactory(mockPermissionFactory);
+        mockPermissionFactory.put("user1", "req1", "req2");
+        mockPermissionFactory.put("user2", "req2", "req1");
+        mockPermissionFactory.put("user3", "req1", "req3");
+    }
+
+    /**
+     * 許可されたリクエストIDが同一のユーザには、同じインスタンスが返されること。
+     */
+    @Test
+    public void testShareSamePermission() {
+        Permission user1 = sut.getPermission("user1");
+        Permission user2 = sut.getPermission("user2");
+        Permission user3 = sut.getPermission("user3");
+
+        assertThat(user2, is(sameInstance(user1)));
+        assertThat(user3, is(not(sameInstance(user1))));
+        assertThat(user1.getRequestIds(), contains("req1", "req2"));
+        assertThat(user3.getRequestIds(), contains("req1", "req3"));
+        assertThat(user1.permit("req2"), is(true));
+        assertThat(user1.permit("req3"), is(false));
+    }
+
+    /**
+     * 共有する{@link Permission}の許可されたリクエストIDは変更できないこと。
+     */
+    @Test
+    public void testSharedPermissionIsUnmodifiable() {
+        final Permission permission = sut.getPermission("user1");
+
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                permission.getRequestIds().add("req3");
+            }
+        });
+    }
+
+    /**
+     * 委譲先の結果を変更しても、共有する{@link Permission}に影響しないこと。
+     */
+    @Test
+    public void testNotAffectedByDelegateModification() {
+        Permission permission = sut.getPermission("user1");
+
+        mockPermissionFactory.permissions.get("user1").getRequestIds().add("req3");
+
+        assertThat(permission.permit("req3"), is(false));
+    }
+
+    /**
+     * 上限を超えた場合は、最も長い間参照されていない権限パターンから破棄すること。
+     */
+    @Test
+    public void testEvictLeastRecentlyUsedWhenMaxProfilesExceeded() {
+        mockPermissionFactory.put("user4", "req4");
+        sut.setMaxProfiles(2);
+
+        Permission user1 = sut.getPermission("user1");
+        Permission user3 = sut.getPermission("user3");
+        assertThat(sut.getPermission("user2"), is(sameInstance(user1)));
+        sut.getPermission("user4");
+
+        assertThat(sut.getPermission("user2"), is(sameInstance(user1)));
+        Permission reloaded = sut.getPermission("user3");
+        assertThat(reloaded, is(not(sameInstance(user3))));
+        assertThat(reloaded.getRequestIds(), contains("req1", "req3"));
+    }
+
+    /**
+     * {@link BasicPermission}以外の{@link Permission}は、判定方法を維持したまま、クラス毎に共有すること。
+     */
+    @Test
+    public void testShareOtherPermissionWithItsOwnLogic() {
+        final Permission wildcard1 = new WildcardPermission(new TreeSet<String>(Arrays.asList("RW11*")));
+        final Permission wildcard2 = new WildcardPermission(new TreeSet<String>(Arrays.asList("RW11*")));
+        mockPermissionFactory.permissions.put("wildcard1", wildcard1);
+        mockPermissionFactory.permissions.put("wildcard2", wildcard2);
+        mockPermissionFactory.put("basic", "RW11*");
+
+        Permission shared = sut.getPermission("wildcard1");
+
+        assertThat(shared, is(sameInstance(wildcard1)));
+        assertThat(sut.getPermission("wildcard2"), is(sameInstance(wildcard1)));
+        assertThat(shared.permit("RW1101"), is(true));
+
+        Permission basic = sut.getPermission("basic");
+        assertThat(basic, is(instanceOf(BasicPermission.class)));
+        assertThat(basic.permit("RW1101"), is(false));
+    }
+
+    /**
+     * {@link InterningPermissionFactory#clear()}で保持している権限パターンが破棄されること。
+     */
+    @Test
+    public void testClear() {
+        Permission first = sut.getPermission("user1");
+
+        sut.clear();
+
+        assertThat(sut.getPermission("user1"), is(not(sameInstance(first))));
+    }
+
+    /**
+     * 委譲先が{@code null}を返した場合、または許可されたリクエストIDが{@code null}の場合は、委譲先の結果をそのまま返すこと。
+     */
+    @Test
+    public void testReturnDelegateResultIfNull() {
+        Permission nullRequestIds = new BasicPermission(null);
+        mockPermissionFactory.permissions.put("user4", nullRequestIds);
+
+        assertThat(sut.getPermission("unknown"), is(nullValue()));
+        assertThat(sut.getPermission("user4"), is(sameInstance(nullRequestIds)));
+    }
+
+    /**
+     * {@link InterningPermissionFactory#createPermission(SortedSet)}で生成する{@link Permission}を変更できること。
+     */
+    @Test
+    public void testOverrideCreatePermission() {
+        final RequestIdDictionary dictionary = new RequestIdDictionary(Arrays.asList("req1", "req2", "req3"));
+        InterningPermissionFactory sut = new InterningPermissionFactory() {
+            @Override
+            protected Permission createPermission(SortedSet<String> requestIds) {
+                return dictionary.createPermission(requestIds);
+            }
+        };
+        sut.setPermissionFactory(mockPermissionFactory);
+
+        Permission permission = sut.getPermission("user1");
+
+        assertThat(permission, is(instanceOf(BitSetPermission.class)));
+        assertThat(sut.getPermission("user2"), is(sameInstance(permission)));
+    }
+
+    /**
+     * 委譲先が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfPermissionFactoryIsNull() {
+        sut.setPermissionFactory(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.getPermission("user1");
+            }
+        });
+
+        assertThat(exception.getMessage(), is("PermissionFactory is null."));
+    }
+
+    /**
+     * ユーザ毎に{@link BasicPermission}を生成する{@link PermissionFactory}のモック。
+     */
+    private static class MockPermissionFactory implements PermissionFactory {
+        private final Map<String, Permission> permissions = new HashMap<String, Permission>();
+
+        private void put(String userId, String... requestIds) {
+            permissions.put(userId, new BasicPermission(new TreeSet<String>(Arrays.asList(requestIds))));
+        }
+
+        @Override
+        public Permission getPermission(String userId) {
+            return permissions.get(userId);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package nablarch.common.permission;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link PermissionCacheWarmer}のテストクラス。
+ */
+public class PermissionCacheWarmerTest {
+
+    private final MockBatchPermissionFactory mockPermissionFactory = new MockBatchPermissionFactory();
+    private final CachingPermissionFactory cachingPermissionFactory = new CachingPermissionFactory();
+    private final PermissionCacheWarmer sut = new PermissionCacheWarmer();
+
+    @Before
+    public void setUp() {
+        cachingPermissionFactory.setPermissionFactory(mockPermissionFactory);
+        sut.setCachingPermissionFactory(cachingPermissionFactory);
+    }
+
+    /**
+     * 指定したユーザがバッチ単位で一括取得され、キャッシュに格納されること。
+     */
+    @Test
+    public void testPreloadInBatches() {
+        sut.setUserIds(Arrays.asList("user1", "user2", "user3", "user4", "user5"));
+        sut.setBatchSize(2);
+        sut.setThreadCount(2);
+
+        sut.initialize();
+
+        assertThat(mockPermissionFactory.batches.size(), is(3));
+        List<String> loaded = new ArrayList<String>();
+        for (Collection<String> batch : mockPermissionFactory.batches) {
+            assertThat(batch.size() <= 2, is(true));
+            loaded.addAll(batch);
+        }
+        assertThat(loaded, containsInAnyOrder("user1", "user2", "user3", "user4", "user5"));
+
+        // キャッシュから取得できること
+        cachingPermissionFactory.getPermission("user1");
+        cachingPermissionFactory.getPermission("user5");
+        assertThat(mockPermissionFactory.singleCount, is(0));
+    }
+
+    /**
+     * 取得に失敗したバッチがあっても、他のバッチは格納され、例外はスローされないこと。
+     */
+    @Test
+    public void testContinueIfBatchFailed() {
+        mockPermissionFactory.failingUserId = "user1";
+        sut.setUserIds(Arrays.asList("user1", "user2"));
+        sut.setBatchSize(1);
+
+        sut.initialize();
+
+        cachingPermissionFactory.getPermission("user2");
+        assertThat(mockPermissionFactory.singleCount, is(0));
+    }
+
+    /**
+     * ユーザIDが指定されていない場合は何もしないこと。
+     */
+    @Test
+    public void testDoNothingIfUserIdsIsEmpty() {
+        sut.setUserIds(Collections.<String>emptyList());
+
+        sut.initialize();
+
+        assertThat(mockPermissionFactory.batches.isEmpty(), is(true));
+    }
+
+    /**
+     * {@link CachingPermissionFactory}が設定されていない場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfCachingPermissionFactoryIsNull() {
+        sut.setCachingPermissionFactory(null);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sut.initialize();
+            }
+        });
+
+        assertThat(exception.getMessage(), is("CachingPermissionFactory is null."));
+    }
+
+    /**
+     * {@link BatchPermissionFactory}のモック。
+     */
+    private static class MockBatchPermissionFactory implements BatchPermissionFactory {
+        private final List<Collection<String>> batches =
+                Collections.synchronizedList(new ArrayList<Collection<String>>());
+        private volatile int singleCount;
+        private volatile String failingUserId;
+
+        @Override
+        public Map<String, Permission> getPermissions(Collection<String> userIds) {
+            batches.add(new ArrayList<String>(userIds));
+            if (userIds.contains(failingUserId)) {
+                throw new IllegalStateException("db error");
+            }
+            Map<String, Permission> permissions = new HashMap<String, Permission>();
+            for (String userId : userIds) {
+                permissions.put(userId, new BasicPermission(new TreeSet<String>()));
+            }
+            return permissions;
+        }
+
+        @Override
+        public Permission getPermission(String userId) {
+            singleCount++;
+            return new BasicPermission(new TreeSet<String>());
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package nablarch.common.permission;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -10,6 +12,7 @@ import nablarch.core.ThreadContext;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
 import nablarch.fw.results.Forbidden;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -52,6 +55,47 @@ public class PermissionCheckHandlerTest {
     }
 
 
+    /**
+     * 前方一致のパターンで指定した、認可判定を行わないリクエストIDの場合。
+     */
+    @Test
+    public void testHandleForIgnoreRequestPattern() {
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setIgnoreRequestIds("aaa", "PUBLIC*")
+                .setIgnoreRequestIds("STATIC*")
+                .setPermissionFactory(new FixedPermissionFactory(new TreeSet<String>()));
+
+        ThreadContext.setUserId("dummy");
+        for (String requestId : new String[] {"aaa", "PUBLIC", "PUBLIC001", "STATIC_CSS"}) {
+            ThreadContext.setRequestId(requestId);
+            final String res = new ExecutionContext()
+                    .addHandler(handler)
+                    .addHandler(new Handler<Object, Object>() {
+                        @Override
+                        public Object handle(final Object o, final ExecutionContext context) {
+                            return "ok";
+                        }
+                    })
+                    .handleNext("param");
+            assertThat(res, is("ok"));
+        }
+
+        ThreadContext.setRequestId("PUBLI");
+        expectedException.expect(Forbidden.class);
+        new ExecutionContext()
+                .addHandler(handler)
+                .handleNext("param");
+    }
+
+    /**
+     * 末尾以外に"*"を含む、認可判定を行わないリクエストIDを指定した場合。
+     */
+    @Test
+    public void testSetIgnoreRequestIdsWithInvalidPattern() {
+        expectedException.expect(IllegalArgumentException.class);
+        new PermissionCheckHandler().setIgnoreRequestIds("PUB*LIC");
+    }
+
     /**
      * リクエストIDが取得できない場合。
      */
@@ -144,6 +188,227 @@ public class PermissionCheckHandlerTest {
         assertThat(permission.permit("aab"), is(false));
     }
 
+    /**
+     * {@link Permission}の再利用を有効にした場合、同一リクエスト内で同じユーザに対して再度実行されても
+     * {@link PermissionFactory}から取得しないこと。
+     */
+    @Test
+    public void testReusePermissionForSameUser() {
+        ThreadContext.clear();
+        final CountingPermissionFactory factory = new CountingPermissionFactory("aaa", "bbb");
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(factory)
+                .setReusesPermission(true);
+
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("aaa");
+        assertThat(handleWith(handler), is("ok"));
+        final Permission first = PermissionUtil.getPermission();
+
+        // 内部フォワード
+        ThreadContext.setRequestId("bbb");
+        assertThat(handleWith(handler), is("ok"));
+        assertThat(PermissionUtil.getPermission(), is(sameInstance(first)));
+        assertThat(factory.count, is(1));
+
+        // 再利用した Permission でも認可判定は行われること
+        ThreadContext.setRequestId("ccc");
+        expectedException.expect(Forbidden.class);
+        handleWith(handler);
+    }
+
+    /**
+     * {@link Permission}の再利用を有効にした場合でも、ユーザが異なる場合は{@link PermissionFactory}から取得すること。
+     */
+    @Test
+    public void testNotReusePermissionForDifferentUser() {
+        ThreadContext.clear();
+        final CountingPermissionFactory factory = new CountingPermissionFactory("aaa");
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(factory)
+                .setReusesPermission(true);
+
+        ThreadContext.setRequestId("aaa");
+        ThreadContext.setUserId("user1");
+        handleWith(handler);
+        ThreadContext.setUserId("user2");
+        handleWith(handler);
+
+        assertThat(factory.count, is(2));
+    }
+
+    /**
+     * {@link Permission}の再利用を有効にした場合でも、{@link PermissionUtil}に別の{@link Permission}が
+     * 設定されている場合は{@link PermissionFactory}から取得すること。
+     */
+    @Test
+    public void testNotReusePermissionIfReplaced() {
+        ThreadContext.clear();
+        final CountingPermissionFactory factory = new CountingPermissionFactory("aaa");
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(factory)
+                .setReusesPermission(true);
+
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("aaa");
+        handleWith(handler);
+        PermissionUtil.setPermission(new BasicPermission(new TreeSet<String>()));
+        handleWith(handler);
+
+        assertThat(factory.count, is(2));
+    }
+
+    /**
+     * {@link Permission}の再利用がデフォルトでは無効であること。
+     */
+    @Test
+    public void testNotReusePermissionByDefault() {
+        ThreadContext.clear();
+        final CountingPermissionFactory factory = new CountingPermissionFactory("aaa");
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(factory);
+
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("aaa");
+        handleWith(handler);
+        handleWith(handler);
+
+        assertThat(factory.count, is(2));
+    }
+
+    /**
+     * 認可判定に失敗した組み合わせを保持する場合、保持期間内は{@link PermissionFactory}から取得せずに認可判定の失敗とすること。
+     */
+    @Test
+    public void testDenialCache() {
+        final CountingPermissionFactory factory = new CountingPermissionFactory("aaa");
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(factory)
+                .setDenialCacheExpirationMillis(60000L);
+
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("bbb");
+        final Forbidden first = handleAndCatchForbidden(handler);
+        final Forbidden second = handleAndCatchForbidden(handler);
+
+        assertThat(factory.count, is(1));
+        assertThat(second.getMessage(), is(first.getMessage()));
+        assertThat(second == first, is(false));
+
+        // 認可判定に成功するリクエストIDには影響しないこと
+        ThreadContext.setRequestId("aaa");
+        assertThat(handleWith(handler), is("ok"));
+        assertThat(factory.count, is(2));
+    }
+
+    /**
+     * スタックトレースを取得しない{@link Forbidden}をスローできること。
+     * また、認可判定に失敗した組み合わせを保持する場合も、スローする度に別のインスタンスが生成されること。
+     */
+    @Test
+    public void testLightweightForbidden() {
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(new CountingPermissionFactory("aaa"))
+                .setUsesLightweightForbidden(true)
+                .setDenialCacheExpirationMillis(60000L);
+
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("bbb");
+        final Forbidden first = handleAndCatchForbidden(handler);
+        final Forbidden second = handleAndCatchForbidden(handler);
+
+        assertThat(first.getStackTrace().length, is(0));
+        assertThat(first.getMessage(), is("permission denied. userId = [dummy], requestId = [bbb]"));
+        assertThat(second == first, is(false));
+        assertThat(second.getStackTrace().length, is(0));
+        assertThat(second.getMessage(), is(first.getMessage()));
+
+        // 前回スローした例外に追加された例外が引き継がれないこと
+        first.addSuppressed(new IllegalStateException("suppressed"));
+        assertThat(handleAndCatchForbidden(handler).getSuppressed().length, is(0));
+    }
+
+    /**
+     * ログの件数を制限した場合、上限を超えたログは出力されないこと。
+     */
+    @Test
+    public void testMaxDenialLogsPerSecond() {
+        final PermissionCheckHandler handler = new PermissionCheckHandler()
+                .setPermissionFactory(new CountingPermissionFactory("aaa"))
+                .setMaxDenialLogsPerSecond(1);
+
+        OnMemoryLogWriter.clear();
+        ThreadContext.setUserId("dummy");
+        ThreadContext.setRequestId("bbb");
+        handleAndCatchForbidden(handler);
+        handleAndCatchForbidden(handler);
+        handleAndCatchForbidden(handler);
+
+        int count = 0;
+        for (String message : OnMemoryLogWriter.getMessages("writer.onMemory")) {
+            if (message.contains("permission denied. userId = [dummy], requestId = [bbb]")) {
+                count++;
+            }
+        }
+        assertThat(count, is(1));
+    }
+
+    /**
+     * 認可判定に失敗した組み合わせを保持する数の上限に0以下を指定した場合。
+     */
+    @Test
+    public void testSetDenialCacheMaxEntriesWithInvalidValue() {
+        expectedException.expect(IllegalArgumentException.class);
+        new PermissionCheckHandler().setDenialCacheMaxEntries(0);
+    }
+
+    /**
+     * 指定されたハンドラでリクエストを処理し、スローされた{@link Forbidden}を返す。
+     * @param handler テスト対象のハンドラ
+     * @return スローされた{@link Forbidden}
+     */
+    private static Forbidden handleAndCatchForbidden(PermissionCheckHandler handler) {
+        try {
+            handleWith(handler);
+        } catch (Forbidden e) {
+            return e;
+        }
+        throw new AssertionError("Forbidden is not thrown.");
+    }
+
+    /**
+     * 指定されたハンドラと、"ok"を返すハンドラでリクエストを処理する。
+     * @param handler テスト対象のハンドラ
+     * @return 処理結果
+     */
+    private static String handleWith(PermissionCheckHandler handler) {
+        return new ExecutionContext()
+                .addHandler(handler)
+                .addHandler(new Handler<Object, Object>() {
+                    @Override
+                    public Object handle(final Object o, final ExecutionContext context) {
+                        return "ok";
+                    }
+                })
+                .handleNext("param");
+    }
+
+    private static class CountingPermissionFactory implements PermissionFactory {
+
+        private final SortedSet<String> requestIds;
+
+        private int count;
+
+        public CountingPermissionFactory(String... requestIds) {
+            this.requestIds = new TreeSet<String>(Arrays.asList(requestIds));
+        }
+
+        public Permission getPermission(String userId) {
+            count++;
+            return new BasicPermission(requestIds);
+        }
+    }
+
     private static class FixedPermissionFactory implements PermissionFactory {
 
         private Permission permission;
@@ -0,0 +1,54 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * {@link RequestIdDictionary}のテストクラス。
+ */
+public class RequestIdDictionaryTest {
+
+    /**
+     * リクエストIDの昇順に連番が割り当てられ、重複と{@code null}は除外されること。
+     */
+    @Test
+    public void testIndexOf() {
+        RequestIdDictionary sut = new RequestIdDictionary(Arrays.asList("req3", "req1", null, "req2", "req1"));
+
+        assertThat(sut.size(), is(3));
+        assertThat(sut.indexOf("req1"), is(0));
+        assertThat(sut.indexOf("req2"), is(1));
+        assertThat(sut.indexOf("req3"), is(2));
+        assertThat(sut.getRequestId(0), is("req1"));
+        assertThat(sut.getRequestId(2), is("req3"));
+    }
+
+    /**
+     * 辞書に存在しないリクエストIDと{@code null}の場合は-1を返すこと。
+     */
+    @Test
+    public void testIndexOfUnknownRequestId() {
+        RequestIdDictionary sut = new RequestIdDictionary(Arrays.asList("req1"));
+
+        assertThat(sut.indexOf("unknown"), is(-1));
+        assertThat(sut.indexOf(null), is(-1));
+    }
+
+    /**
+     * 辞書に存在しないリクエストIDは無視して{@link BitSetPermission}を生成すること。
+     */
+    @Test
+    public void testCreatePermissionIgnoresUnknownRequestId() {
+        RequestIdDictionary sut = new RequestIdDictionary(Arrays.asList("req1", "req2"));
+
+        Permission permission = sut.createPermission(Arrays.asList("req2", "unknown"));
+
+        assertThat(permission.permit("req2"), is(true));
+        assertThat(permission.permit("unknown"), is(false));
+        assertThat(permission.getRequestIds().size(), is(1));
+    }
+}
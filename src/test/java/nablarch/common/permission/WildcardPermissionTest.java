@@ -0,0 +1,106 @@
+package nablarch.common.permission;
+
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link WildcardPermission}のテストクラス。
+ */
+public class WildcardPermissionTest {
+
+    /**
+     * 完全一致のパターンで認可判定できること。
+     */
+    @Test
+    public void testPermitExactMatch() {
+        Permission sut = new WildcardPermission(Arrays.asList("RW1101", "RW1102"));
+
+        assertThat(sut.permit("RW1101"), is(true));
+        assertThat(sut.permit("RW1102"), is(true));
+        assertThat(sut.permit("RW110"), is(false));
+        assertThat(sut.permit("RW11011"), is(false));
+        assertThat(sut.permit(null), is(false));
+    }
+
+    /**
+     * 前方一致のパターンで認可判定できること。
+     */
+    @Test
+    public void testPermitPrefixMatch() {
+        Permission sut = new WildcardPermission(Arrays.asList("RW11*", "RW2101"));
+
+        assertThat(sut.permit("RW11"), is(true));
+        assertThat(sut.permit("RW1101"), is(true));
+        assertThat(sut.permit("RW119999"), is(true));
+        assertThat(sut.permit("RW2101"), is(true));
+        assertThat(sut.permit("RW1"), is(false));
+        assertThat(sut.permit("RW1201"), is(false));
+        assertThat(sut.permit("RW2102"), is(false));
+    }
+
+    /**
+     * 完全一致と前方一致のパターンが重なっていても認可判定できること。
+     */
+    @Test
+    public void testPermitOverlappingPatterns() {
+        Permission sut = new WildcardPermission(Arrays.asList("RW1101", "RW1101*", "RW1*"));
+
+        assertThat(sut.permit("RW1"), is(true));
+        assertThat(sut.permit("RW1101"), is(true));
+        assertThat(sut.permit("RW2"), is(false));
+    }
+
+    /**
+     * {@code "*"}のみのパターンは全てのリクエストIDを許可すること。
+     */
+    @Test
+    public void testPermitAll() {
+        Permission sut = new WildcardPermission(Arrays.asList("*"));
+
+        assertThat(sut.permit("RW1101"), is(true));
+        assertThat(sut.permit(""), is(true));
+        assertThat(sut.permit(null), is(false));
+    }
+
+    /**
+     * パターンが無い場合は全て認可に失敗すること。
+     */
+    @Test
+    public void testPermitWithEmptyPatterns() {
+        assertThat(new WildcardPermission(Collections.<String>emptyList()).permit("RW1101"), is(false));
+        assertThat(new WildcardPermission(null).permit("RW1101"), is(false));
+    }
+
+    /**
+     * 許可されたリクエストIDのパターンを、展開せずに昇順で取得できること。
+     */
+    @Test
+    public void testGetRequestIds() {
+        Permission sut = new WildcardPermission(Arrays.asList("RW2101", "RW11*", "RW1001"));
+
+        assertThat(sut.getRequestIds(), contains("RW1001", "RW11*", "RW2101"));
+    }
+
+    /**
+     * 末尾以外に{@code "*"}を含むパターンを指定した場合は例外をスローすること。
+     */
+    @Test
+    public void testThrowExceptionIfWildcardIsNotAtEnd() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new WildcardPermission(Arrays.asList("RW*01"));
+            }
+        });
+
+        assertThat(exception.getMessage(), is("wildcard '*' is only allowed at the end of pattern. pattern = [RW*01]"));
+    }
+}